@@ -34,6 +34,16 @@ public final class Defs {
      */
     public static final class Credentials {
         public static final int CREDENTIALS_AMOUNT = 4;
+        public static final long INSTAGRAM_REQUESTS_PER_HOUR = 5000;
+        public static final long FOURSQUARE_REQUESTS_PER_HOUR = 5000;
+        public static final long MAX_WAIT = 250; // millis, to wait for a key when all keys are exhausted
+    }
+
+    /**
+     * Continuation tokens constants
+     */
+    public static final class Tokens {
+        public static final int SIGNATURE_LENGTH = 8; // bytes, of the truncated HMAC
     }
 
     /**
@@ -42,6 +52,16 @@ public final class Defs {
     public static final class Foursquare {
         // TODO: manage foursquare categories...
         public static final String VENUE_CATEGORY = "4d4b7105d754a06374d81259";
+
+        // nearby venues cache
+        public static final long NEARBY_CACHE_FRESH_PERIOD = 10 * 60 * 1000; // millis
+        public static final long NEARBY_CACHE_STALE_PERIOD = 60 * 60 * 1000; // millis, served while refreshed
+        public static final int NEARBY_CACHE_LOCAL_SIZE = 256;
+        public static final double NEARBY_CACHE_CELL_RATIO = 0.5; // maximal cell width relative to radius
+        public static final int NEARBY_CACHE_MIN_PRECISION = 5;
+        public static final int NEARBY_CACHE_MAX_PRECISION = 8;
+        public static final int NEARBY_SEARCH_LIMIT = 50; // venues, the maximum - cells are searched beyond the radius
+        public static final double MAX_SEARCH_RADIUS = 100000; // meters
     }
 
     /**
@@ -51,9 +71,30 @@ public final class Defs {
         public static final int REQUESTS_CONNECT_TIMEOUT = 5; // 5 secs
         public static final int REQUESTS_READ_TIMEOUT = 10; // 10 secs
         public static final TimeUnit REQUESTS_TIMEOUT_UNIT = TimeUnit.SECONDS;
+        public static final String RATE_LIMIT_REMAINING_HEADER = "X-Ratelimit-Remaining";
         public static final int FRONTEND_ACCESS_WORKERS_AMOUNT = 15;
         public static final int BACKEND_ACCESS_WORKERS_AMOUNT = 15;
 
+        // hedged requests - the hedge is sent only after the primary request
+        // is slower than the observed latency percentile
+        public static final double HEDGE_LATENCY_PERCENTILE = 0.95;
+        public static final int HEDGE_LATENCY_SAMPLES = 128;
+        public static final int HEDGE_MIN_LATENCY_SAMPLES = 16;
+        public static final long HEDGE_DEFAULT_DELAY = 800; // millis, used until enough samples are gathered
+        public static final long HEDGE_MIN_DELAY = 50; // millis
+        public static final TimeUnit HEDGE_DELAY_UNIT = TimeUnit.MILLISECONDS;
+
+        // helper workers balancing
+        public static final double HELPER_SCORE_DECAY = 0.2; // weight of the newest sample
+        public static final double HELPER_ERROR_PENALTY = 4.0;
+        public static final long HELPER_EJECTION_PERIOD = 10000; // millis, doubled on each consecutive failure
+        public static final long HELPER_MAX_EJECTION_PERIOD = 300000; // millis
+
+        // foursquare venue to instagram location mapping
+        public static final int LOCATIONS_CACHE_LOCAL_SIZE = 1024;
+        public static final long LOCATIONS_REFRESH_PERIOD = TimeUnit.DAYS.toMillis(7); // refreshed in the background
+        public static final long LOCATIONS_NEGATIVE_PERIOD = TimeUnit.HOURS.toMillis(1); // venues with no location
+
         public static enum RequestType
         {
             GetLocation("get-location"),
@@ -72,11 +113,76 @@ public final class Defs {
         }
     }
 
+    /**
+     * Photos filters constants
+     */
+    public static final class Filters {
+        public static final double APPROVAL_SCORE = 1.0; // summed weights of the matching tags
+        public static final long DICTIONARY_REFRESH_PERIOD = 10 * 60 * 1000; // millis
+        public static final long PIPELINE_LIKES_THRESHOLD = 50; // likes, of a photo approved by popularity
+        public static final int PIPELINE_REORDER_INTERVAL = 1000; // photos between stages reordering
+    }
+
+    /**
+     * Yummies counter constants
+     */
+    public static final class Yummies {
+        public static final int SHARDS_COUNT = 4; // a fold's XG transaction spans them and the photo, at most 5 groups
+        public static final int FOLD_BATCH_SIZE = 200; // dirty shards per fold
+    }
+
+    /**
+     * Photos cache (data store) constants
+     */
+    public static final class PhotosCache {
+        public static final int EXISTENCE_CACHE_SIZE = 4096; // photo ids, per instance
+        public static final long MISSING_PHOTO_PERIOD = 30 * 1000; // millis, until a missing photo is re-checked
+    }
+
+    /**
+     * Favorites index constants
+     */
+    public static final class Favorites {
+        public static final int MAX_INDEXED_FAVORITES = 1000; // larger accounts are looked up per page
+        public static final int INDEX_EXPIRATION = 60 * 60; // secs
+    }
+
+    /**
+     * Filter queues payloads constants
+     */
+    public static final class TaskPayloads {
+        public static final int OUTGOING_VERSION = 1; // binary, the worker reads both
+        public static final int DEFLATE_THRESHOLD = 512; // bytes, smaller bodies are not worth deflating
+        public static final int MAX_INFLATED_SIZE = 1024 * 1024; // bytes, a task's payload limit
+    }
+
+    /**
+     * Request tracing constants
+     */
+    public static final class Tracing {
+        public static final double SAMPLE_RATE = 0.05; // of the traces started here, propagated traces keep theirs
+        public static final int BATCH_SIZE = 40; // spans per written batch, keeps a batch within a log line
+        public static final long FLUSH_PERIOD = 10 * 1000; // millis, a partial batch is written after it
+        public static final int MAX_PENDING_SPANS = 1000; // per instance, newer spans are dropped beyond it
+    }
+
     /**
      * Filter rules constants
      */
     public static final class FilterRulesQueue {
-        public static final int LEASE_COUNT = 1;
+        public static final int MIN_LEASE_COUNT = 1;
+        public static final int MAX_LEASE_COUNT = 100; // grows while the queue is backed up
+        public static final int MAX_LEASES_PER_REQUEST = 10;
         public static final int LEASE_PERIOD = 120; //secs
+        public static final int PHOTO_FETCH_THREADS = 10;
+    }
+
+    /**
+     * Cache refresh (push) queue constants
+     */
+    public static final class RefreshQueue {
+        public static final String NAME = "refresh-queue";
+        public static final String URL = "/tasks/refresh";
+        public static final String CACHE_PARAM = "cache";
     }
-}
\ No newline at end of file
+}
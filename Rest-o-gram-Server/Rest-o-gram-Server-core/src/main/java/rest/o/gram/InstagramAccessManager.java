@@ -1,17 +1,21 @@
 package rest.o.gram;
 
+import com.google.appengine.api.urlfetch.HTTPHeader;
 import com.google.appengine.api.urlfetch.HTTPRequest;
 import com.google.appengine.api.urlfetch.HTTPResponse;
 import com.google.appengine.api.urlfetch.URLFetchService;
 import com.google.appengine.api.urlfetch.URLFetchServiceFactory;
-import com.google.gson.Gson;
-import rest.o.gram.service.InstagramServices.IInstagramRequestFactory;
+import com.google.gson.JsonParseException;
+import rest.o.gram.hedging.HedgedRequestExecutor;
+import rest.o.gram.hedging.HedgingStats;
+import rest.o.gram.json.JsonCodecs;
+import rest.o.gram.metrics.Metrics;
 import rest.o.gram.service.InstagramServices.InstagramDistributedRequestFactory;
+import rest.o.gram.tracing.Span;
+import rest.o.gram.tracing.TracedFuture;
+import rest.o.gram.tracing.Tracer;
 
-import javax.servlet.http.HttpServletResponse;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
 
 /**
@@ -46,64 +50,63 @@ public final class InstagramAccessManager {
         }
         else {
             workersCount = Defs.Instagram.BACKEND_ACCESS_WORKERS_AMOUNT;
-            workersCount = Defs.Instagram.FRONTEND_ACCESS_WORKERS_AMOUNT + 1;
+            workersOffset = Defs.Instagram.FRONTEND_ACCESS_WORKERS_AMOUNT + 1;
         }
 
-        final IInstagramRequestFactory requestFactory =
+        final InstagramDistributedRequestFactory requestFactory =
                 new InstagramDistributedRequestFactory(workersCount, workersOffset);
 
-        final Future<HTTPResponse> firstRequest = sendRequest(requestType, prepareRequest, requestFactory);
-        log.info("instagram first request sent");
-
-        final Future<HTTPResponse> secondRequest = sendRequest(requestType, prepareRequest, requestFactory);
-        log.info("instagram second request sent");
-
-        while (!firstRequest.isDone() && !secondRequest.isDone()) { }
-        log.info("one of the requests is done!");
-        Future<HTTPResponse> done = null;
-        Future<HTTPResponse> other = null;
-        if (firstRequest.isDone())
+        final Span span = Tracer.startSpan(getMetricName(requestType));
+        try
         {
-            log.info("first operation is done");
-            done = firstRequest;
-            other = secondRequest;
+            return doParallelInstagramRequest(requestType, prepareRequest, resultType, requestFactory);
+        } finally
+        {
+            span.finish();
         }
-        else // if (secondRequest.isDone())
+    }
+
+    private static <T> T doParallelInstagramRequest(final Defs.Instagram.RequestType requestType,
+                                                    final PrepareRequest prepareRequest,
+                                                    final java.lang.Class<T> resultType,
+                                                    final InstagramDistributedRequestFactory requestFactory) {
+        final byte[] payload = prepareRequest.getPayload();
+        final long start = System.nanoTime();
+        final HTTPResponse resp = hedgedExecutor.execute(requestType, new HedgedRequestExecutor.Request() {
+            @Override
+            public Future<HTTPResponse> send() {
+                return sendRequest(requestType, payload, requestFactory);
+            }
+        });
+        // includes the hedges, as seen by the caller
+        Metrics.histogram(getMetricName(requestType) + ".latency").recordSince(start);
+        if (resp == null)
         {
-            log.info("second operation is done");
-            done = secondRequest;
-            other = firstRequest;
+            Metrics.counter(getMetricName(requestType) + ".failures").increment();
+            log.warning(String.format("instagram request has failed - %s", getHedgingStats(requestType)));
+            return null;
         }
 
-        HTTPResponse resp = null;
+        log.info("getting instagram result");
+        final Span span = Tracer.startSpan("deserialize");
         try
         {
-            if (done.isCancelled())
-            {
-                log.info("request has been cacncelled");
-                resp = other.get(Defs.Instagram.REQUESTS_READ_TIMEOUT, Defs.Instagram.REQUESTS_TIMEOUT_UNIT);
-            }
-            else
-            {
-                log.info("request has been successful");
-                resp = done.get(Defs.Instagram.REQUESTS_READ_TIMEOUT, Defs.Instagram.REQUESTS_TIMEOUT_UNIT);
-                other.cancel(false);
-                log.info("got instagram response");
-            }
-            if (resp.getResponseCode() != HttpServletResponse.SC_OK)
-            {
-                log.warning("error while executing an instagarm request : " + resp.getResponseCode());
-                return null;
-            }
-        }
-        catch (ExecutionException|InterruptedException|TimeoutException e)
+            return JsonCodecs.fromJson(resp.getContent(), resultType);
+        } catch (JsonParseException e)
         {
-            log.severe(String.format("instagram request has failed - error: %s", e.getMessage()));
+            log.warning(String.format("cannot parse instagram result, error: %s", e.getMessage()));
             return null;
+        } finally
+        {
+            span.finish();
         }
+    }
 
-        log.info("getting instagram result");
-        return new Gson().fromJson(new String(resp.getContent()), resultType);
+    /**
+     * @return hedging stats (hedge rate, hedge win rate) for the given request type
+     */
+    public static HedgingStats getHedgingStats(final Defs.Instagram.RequestType requestType) {
+        return hedgedExecutor.getStats(requestType);
     }
 
     public  abstract static class PrepareRequest {
@@ -111,14 +114,28 @@ public final class InstagramAccessManager {
     }
 
     private static Future<HTTPResponse> sendRequest(final Defs.Instagram.RequestType requestType,
-                                                    final PrepareRequest prepareRequest,
-                                                    final IInstagramRequestFactory requestFactory) {
+                                                    final byte[] payload,
+                                                    final InstagramDistributedRequestFactory requestFactory) {
         final HTTPRequest req = requestFactory.createInstagramRequest(requestType);
-        req.setPayload(prepareRequest.getPayload());
+        if (req == null)
+            return null;
+        req.setPayload(payload);
+        // finished when the response is awaited, so a cancelled loser of a hedge is traced as well
+        final Span span = Tracer.startClientSpan("helper." + requestType.getType())
+                                .tag("helper", req.getURL().getHost());
+        req.setHeader(new HTTPHeader(Tracer.HEADER, span.getContext().encode()));
         log.info(String.format("sending request to: %s", req.getURL().toString()));
-        return fetchService.fetchAsync(req);
+        return new TracedFuture<>(span, requestFactory.trackResponse(req, fetchService.fetchAsync(req)));
+    }
+
+    /**
+     * @return the name of the span and the metrics of the given request type, e.g. instagram.get-photo
+     */
+    public static String getMetricName(final Defs.Instagram.RequestType requestType) {
+        return "instagram." + requestType.getType();
     }
 
     private static final Logger log = Logger.getLogger(InstagramAccessManager.class.getName());
     private static final URLFetchService fetchService = URLFetchServiceFactory.getURLFetchService();
+    private static final HedgedRequestExecutor hedgedExecutor = new HedgedRequestExecutor();
 }
\ No newline at end of file
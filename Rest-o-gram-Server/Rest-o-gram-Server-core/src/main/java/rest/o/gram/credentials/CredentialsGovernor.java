@@ -0,0 +1,120 @@
+package rest.o.gram.credentials;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Hands out the API key with the most remaining quota. Every key has a token bucket that refills
+ * at the API's hourly rate and is aligned with the rate-limit the API reports.
+ */
+public final class CredentialsGovernor {
+
+    /**
+     * Creates a new {@link CredentialsGovernor}
+     * @param name the governed API's name, for logging
+     * @param keys pairs of client id and client secret
+     * @param requestsPerHour the API's hourly limit of a single key
+     * @param maxWait maximal time (millis) to wait for a key when all keys are exhausted
+     */
+    public CredentialsGovernor(final String name, final String[][] keys,
+                               final long requestsPerHour, final long maxWait) {
+        m_name = name;
+        m_maxWait = maxWait;
+        for (int i = 0; i < keys.length; ++i)
+        {
+            final String clientId = keys[i][0];
+            if (m_buckets.containsKey(clientId))
+                continue; // the same key listed twice shares its quota
+
+            m_credentials.add(new Credentials(i, clientId, keys[i][1]));
+            m_buckets.put(clientId, new TokenBucket(requestsPerHour, TimeUnit.HOURS.toMillis(1)));
+        }
+    }
+
+    /**
+     * Gets the credentials with the most remaining quota, waiting briefly if all are exhausted
+     * @return credentials to use or null if all keys are exhausted
+     */
+    public Credentials acquire() {
+        final long deadline = System.currentTimeMillis() + m_maxWait;
+        while (true)
+        {
+            Credentials best = null;
+            double bestAvailable = 0;
+            long minWait = Long.MAX_VALUE;
+            for (final Credentials currCredentials : m_credentials)
+            {
+                final TokenBucket currBucket = m_buckets.get(currCredentials.getClientId());
+                final double currAvailable = currBucket.getAvailable();
+                if (currAvailable >= 1 && currAvailable > bestAvailable)
+                {
+                    best = currCredentials;
+                    bestAvailable = currAvailable;
+                }
+                minWait = Math.min(minWait, currBucket.getWaitTime());
+            }
+
+            if (best != null)
+            {
+                if (m_buckets.get(best.getClientId()).tryAcquire())
+                    return best;
+                continue; // taken by a concurrent request
+            }
+
+            final long remaining = deadline - System.currentTimeMillis();
+            if (minWait > remaining)
+            {
+                log.warning(String.format("all %s keys are exhausted", m_name));
+                return null;
+            }
+
+            try
+            {
+                Thread.sleep(Math.max(1, minWait));
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Aligns the given key's quota with the remaining quota reported by the API
+     * @param credentials the credentials used
+     * @param remaining the reported remaining requests
+     */
+    public void onRemainingQuota(final Credentials credentials, final long remaining) {
+        final TokenBucket bucket = getBucket(credentials);
+        if (bucket != null && remaining >= 0)
+            bucket.sync(remaining);
+    }
+
+    /**
+     * Marks the given key as exhausted
+     * @param credentials the credentials that have been rate limited
+     */
+    public void onRateLimited(final Credentials credentials) {
+        final TokenBucket bucket = getBucket(credentials);
+        if (bucket != null)
+        {
+            log.warning(String.format("%s key %d has been rate limited", m_name, credentials.getType()));
+            bucket.drain();
+        }
+    }
+
+    private TokenBucket getBucket(final Credentials credentials) {
+        return credentials == null ? null : m_buckets.get(credentials.getClientId());
+    }
+
+    private static final Logger log = Logger.getLogger(CredentialsGovernor.class.getName());
+    private final String m_name;
+    private final long m_maxWait;
+    private final List<Credentials> m_credentials = new ArrayList<>();
+    private final Map<String, TokenBucket> m_buckets = new HashMap<>();
+}
@@ -0,0 +1,37 @@
+package rest.o.gram.credentials;
+
+import rest.o.gram.Defs;
+
+public class GovernedCredentialsFactory implements ICredentialsFactory {
+
+    /**
+     * Returns foursquare credentials with the most remaining quota or null if all are exhausted
+     */
+    @Override
+    public Credentials createFoursquareCredentials() {
+        return foursquareGovernor.acquire();
+    }
+
+    /**
+     * Returns instagram credentials with the most remaining quota or null if all are exhausted
+     */
+    @Override
+    public Credentials createInstagramCredentials() {
+        return instagramGovernor.acquire();
+    }
+
+    public static CredentialsGovernor getFoursquareGovernor() {
+        return foursquareGovernor;
+    }
+
+    public static CredentialsGovernor getInstagramGovernor() {
+        return instagramGovernor;
+    }
+
+    private static final CredentialsGovernor foursquareGovernor =
+            new CredentialsGovernor("foursquare", CredentialsKeys.FOURSQUARE,
+                                    Defs.Credentials.FOURSQUARE_REQUESTS_PER_HOUR, Defs.Credentials.MAX_WAIT);
+    private static final CredentialsGovernor instagramGovernor =
+            new CredentialsGovernor("instagram", CredentialsKeys.INSTAGRAM,
+                                    Defs.Credentials.INSTAGRAM_REQUESTS_PER_HOUR, Defs.Credentials.MAX_WAIT);
+}
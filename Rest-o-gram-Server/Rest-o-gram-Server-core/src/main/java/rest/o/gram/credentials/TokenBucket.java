@@ -0,0 +1,74 @@
+package rest.o.gram.credentials;
+
+public final class TokenBucket {
+
+    /**
+     * Creates a new full {@link TokenBucket}
+     * @param capacity maximal amount of tokens
+     * @param refillPeriod the period (millis) in which an empty bucket is refilled
+     */
+    public TokenBucket(final long capacity, final long refillPeriod) {
+        m_capacity = capacity;
+        m_refillRate = (double)capacity / refillPeriod;
+        m_tokens = capacity;
+        m_lastRefill = System.currentTimeMillis();
+    }
+
+    /**
+     * Takes a single token if available
+     * @return true if a token was taken, false otherwise
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (m_tokens < 1)
+            return false;
+        --m_tokens;
+        return true;
+    }
+
+    /**
+     * @return the amount of currently available tokens
+     */
+    public synchronized double getAvailable() {
+        refill();
+        return m_tokens;
+    }
+
+    /**
+     * @return millis until a token becomes available
+     */
+    public synchronized long getWaitTime() {
+        refill();
+        if (m_tokens >= 1)
+            return 0;
+        return (long)Math.ceil((1 - m_tokens) / m_refillRate);
+    }
+
+    /**
+     * Aligns the bucket with the remaining quota reported by the remote side
+     * @param remaining remaining requests reported
+     */
+    public synchronized void sync(final long remaining) {
+        refill();
+        m_tokens = Math.min(m_tokens, Math.max(0, remaining));
+    }
+
+    /**
+     * Empties the bucket
+     */
+    public synchronized void drain() {
+        refill();
+        m_tokens = 0;
+    }
+
+    private void refill() {
+        final long now = System.currentTimeMillis();
+        m_tokens = Math.min(m_capacity, m_tokens + (now - m_lastRefill) * m_refillRate);
+        m_lastRefill = now;
+    }
+
+    private final long m_capacity;
+    private final double m_refillRate; // tokens per milli
+    private double m_tokens;
+    private long m_lastRefill;
+}
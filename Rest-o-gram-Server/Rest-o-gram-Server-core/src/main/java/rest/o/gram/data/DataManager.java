@@ -23,6 +23,8 @@ public interface DataManager {
 
     PhotosResult fetchPhotosFromCache(String venueId, String token);
 
+    PendingResult<PhotosResult> fetchPhotosFromCacheAsync(String venueId, String token);
+
     Map<String,RestogramVenue> fetchVenuesFromCache(String[] ids);
 
     boolean cacheVenue(RestogramVenue venue);
@@ -33,7 +35,9 @@ public interface DataManager {
 
     boolean changePhotoYummiesCount(String photoId, int delta);
 
-    Set<String> fetchFavoritePhotoIds();
+    int foldPhotosYummies();
+
+    Set<String> fetchFavoritePhotoIds(Collection<String> photoIds);
 
     PhotosResult queryFavoritePhotos(String token);
 
@@ -41,10 +45,16 @@ public interface DataManager {
 
     boolean isPhotoInCache(String photoId);
 
+    Set<String> filterCachedPhotoIds(Collection<String> photoIds);
+
+    boolean upsertPhotoYummies(RestogramPhoto photo, int delta);
+
     boolean isPhotoPending(String photoId);
 
     RestogramPhoto getPendingPhoto(String photoId);
 
+    Map<String, RestogramPhoto> getPendingPhotos(Collection<String> photoIds);
+
     void addPendingPhotos(Map<String, RestogramPhoto> pendingPhotos);
 
     void removePendingPhotos(Collection<String> photoIds);
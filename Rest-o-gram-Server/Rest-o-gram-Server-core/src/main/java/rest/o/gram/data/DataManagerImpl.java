@@ -2,13 +2,13 @@ package rest.o.gram.data;
 
 import com.google.appengine.api.datastore.Cursor;
 import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.api.datastore.Transaction;
 import com.google.appengine.api.memcache.ErrorHandlers;
 import com.google.appengine.api.memcache.MemcacheService;
 import com.google.appengine.api.memcache.MemcacheServiceFactory;
 import com.leanengine.server.LeanDefs;
 import com.leanengine.server.LeanException;
+import com.leanengine.server.appengine.DatastoreFuture;
 import com.leanengine.server.appengine.DatastoreUtils;
 import com.leanengine.server.appengine.datastore.PutBatchOperation;
 import com.leanengine.server.appengine.datastore.PutUpdateStrategy;
@@ -120,29 +120,47 @@ public final class DataManagerImpl implements DataManager {
                     Props.Photo.USER, currPhoto.getUser());
             putOp.addEntityProperty(currName, Props.Photo.YUMMIES, 0);
         }
-        return putOp.execute(new PutUpdateStrategy());
+        if (!putOp.execute(new PutUpdateStrategy()))
+            return false;
+
+        final List<String> photoIds = new ArrayList<>(photos.size());
+        for (final RestogramPhoto currPhoto : photos)
+            photoIds.add(currPhoto.getInstagram_id());
+        m_existenceCache.markExisting(photoIds);
+        return true;
     }
 
     @Override
     public PhotosResult fetchPhotosFromCache(final String venueId, final String token) {
+        return fetchPhotosFromCacheAsync(venueId, token).get();
+    }
+
+    @Override
+    public PendingResult<PhotosResult> fetchPhotosFromCacheAsync(final String venueId, final String token) {
         final LeanQuery query = new LeanQuery(Kinds.PHOTO);
         query.addFilter(Props.Photo.ORIGIN_VENUE_ID, QueryFilter.FilterOperator.EQUAL, venueId);
         query.addFilter(Props.Photo.APPROVED, QueryFilter.FilterOperator.EQUAL, true);
         query.addSort(Props.Photo.YUMMIES, QuerySort.SortDirection.DESCENDING);
         if (StringUtils.isNotBlank(token))
             query.setCursor(Cursor.fromWebSafeString(token));
-        QueryResult result = null;
-        try
-        {
-            result = DatastoreUtils.queryEntityPublic(query);
-        } catch (LeanException e)
-        {
-            log.severe(String.format("fetching photos from cache has failed. venue:%s, code:%d", venueId, e.getErrorCode()));
-        }
+        final DatastoreFuture<QueryResult> future = DatastoreUtils.queryEntityPublicAsync(query);
 
-        return createPhotosResultFromQueryResult(result);
-    }
+        return new PendingResult<PhotosResult>() {
+            @Override
+            public PhotosResult get() {
+                QueryResult result = null;
+                try
+                {
+                    result = future.get();
+                } catch (LeanException e)
+                {
+                    log.severe(String.format("fetching photos from cache has failed. venue:%s, code:%d", venueId, e.getErrorCode()));
+                }
 
+                return createPhotosResultFromQueryResult(result);
+            }
+        };
+    }
 
     @Override
     public Map<String,RestogramVenue> fetchVenuesFromCache(final String[] ids) {
@@ -219,93 +237,23 @@ public final class DataManagerImpl implements DataManager {
             log.severe("cannot add a photo to favorites. code:" + e.getErrorCode());
             return false;
         }
+        m_favoritesIndex.invalidate();
         return true;
     }
 
     @Override
     public boolean changePhotoYummiesCount(final String photoId, final int delta) {
-        int retries = 2;
-        while (true)
-        {
-            final Transaction transaction = DatastoreUtils.buildTransaction();
-            try
-            {
-                Entity photo  = null;
-                try
-                {
-                    photo = DatastoreUtils.getPublicEntity(Kinds.PHOTO, photoId);
-                } catch (LeanException e)
-                {
-                    if (e.getErrorCode() != LeanException.Error.RecoverableDataStoreError.errorCode)
-                    {
-                        log.warning("cannot get photo from DS");
-                        transaction.rollback();
-                        return false;
-                    }
-                    throw e;
-                }
-
-                long yummies = 0;
-                if (photo.hasProperty(Props.Photo.YUMMIES))
-                    yummies = (Long)photo.getProperty(Props.Photo.YUMMIES);
-                yummies += delta;
-                photo.setProperty(Props.Photo.YUMMIES, yummies);
-                try
-                {
-                    DatastoreUtils.putPublicEntity(photo);
-                } catch (LeanException e)
-                {
-                    if (e.getErrorCode() != LeanException.Error.RecoverableDataStoreError.errorCode)
-                    {
-                        log.severe("cannot put photo in DS");
-                        transaction.rollback();
-                        return false;
-                    }
-                    throw e;
-                }
-                transaction.commit();
-                break;
-            }
-            catch (LeanException e)
-            {
-                if (retries == 0)
-                {
-                    log.severe("exceeded the number of allowed retries for yummies count update transaction");
-                    return false;
-                }
-
-                --retries;
-            } finally
-            {
-                if (transaction.isActive())
-                    transaction.rollback();
-            }
-        }
-        return true;
+        return m_yummiesCounter.change(photoId, delta);
     }
 
     @Override
-    public Set<String> fetchFavoritePhotoIds() {
-        final LeanQuery query = new LeanQuery(Kinds.PHOTO_REFERENCE);
-        query.addFilter(Props.PhotoRef.IS_FAVORITE, QueryFilter.FilterOperator.EQUAL, true);
-        query.setLimit(0);
-        QueryResult result = null;
-        try
-        {
-            result = DatastoreUtils.queryEntityPrivate(query);
-        } catch (LeanException e)
-        {
-            log.severe("could not query for fav photos. code:" + e.getErrorCode());
-            return null;
-        }
+    public int foldPhotosYummies() {
+        return m_yummiesCounter.fold();
+    }
 
-        if (result == null || result.getResult() == null)
-            return null;
-        final List<Entity> resultEntities = result.getResult();
-        final Set<String> resultIds = new HashSet<>(resultEntities.size());
-        for (final Entity currEntity : resultEntities)
-            resultIds.add(currEntity.getKey().getName());
-        return resultIds;
+    @Override
+    public Set<String> fetchFavoritePhotoIds(final Collection<String> photoIds) {
+        return m_favoritesIndex.filterFavorites(photoIds);
     }
 
     @Override
@@ -380,6 +328,7 @@ public final class DataManagerImpl implements DataManager {
         log.severe("caching the photo in DS has failed. code: " + e.getErrorCode());
         return false;
     }
+    m_existenceCache.markExisting(Collections.singletonList(photo.getInstagram_id()));
     return true;
 }
 
@@ -389,21 +338,54 @@ public final class DataManagerImpl implements DataManager {
         if (StringUtils.isBlank(photoId))
             return false;
 
-        final LeanQuery query = new LeanQuery(Kinds.PHOTO);
-        query.addFilter(Entity.KEY_RESERVED_PROPERTY, QueryFilter.FilterOperator.EQUAL,
-                        KeyFactory.createKey(Kinds.PHOTO, photoId));
-        query.setKeysOnly();
-        QueryResult result = null;
+        final Set<String> cachedIds = filterCachedPhotoIds(Collections.singletonList(photoId));
+        return cachedIds != null && !cachedIds.isEmpty();
+    }
+
+    @Override
+    public Set<String> filterCachedPhotoIds(final Collection<String> photoIds) {
+        if (photoIds == null || photoIds.isEmpty())
+            return new HashSet<>();
+
+        return m_existenceCache.filterExisting(photoIds);
+    }
+
+    @Override
+    public boolean upsertPhotoYummies(final RestogramPhoto photo, final int delta) {
+
+        if (photo == null)
+            return false;
+
+        // a single read - the photo is either cached here with its yummies, or its count is changed
+        final String photoId = photo.getInstagram_id();
+        boolean isCached = false;
+        final Transaction transaction = DatastoreUtils.buildTransaction();
         try
         {
-            result = DatastoreUtils.queryEntityPublic(query);
-        } catch (LeanException e)
+            try
+            {
+                DatastoreUtils.getPublicEntity(Kinds.PHOTO, photoId, true);
+                isCached = true;
+            } catch (LeanException e)
+            {
+                if (e.getErrorCode() != LeanException.Error.EntityNotFound.errorCode)
+                    throw e;
+                photo.setYummies(delta);
+                DatastoreUtils.putPublicEntity(Kinds.PHOTO, photoId, DataStoreConverters.photoToProps(photo), true);
+            }
+            transaction.commit();
+        } catch (LeanException | ConcurrentModificationException e)
+        {
+            log.severe("caching the photo with its yummies has failed, photo: " + photoId);
+            return false;
+        } finally
         {
-            log.severe("cannot query for entity existence. code:" + e.getErrorCode());
+            if (transaction.isActive())
+                transaction.rollback();
         }
 
-        return result != null  && result.getResult() != null &&
-               !result.getResult().isEmpty();
+        m_existenceCache.markExisting(Collections.singletonList(photoId));
+        return !isCached || m_yummiesCounter.change(photoId, delta);
     }
 
     private PhotosResult createPhotosResultFromQueryResult(final QueryResult queryResult) {
@@ -453,6 +435,22 @@ public final class DataManagerImpl implements DataManager {
         return (RestogramPhoto)getMemcacheService().get(photoId);
     }
 
+    @Override
+    public Map<String, RestogramPhoto> getPendingPhotos(final Collection<String> photoIds) {
+        if (photoIds == null || photoIds.isEmpty())
+            return new HashMap<>();
+
+        // a single batch call, each id is looked up once
+        final Map<String, Object> cached = getMemcacheService().getAll(new HashSet<>(photoIds));
+        final Map<String, RestogramPhoto> pendingPhotos = new HashMap<>(cached.size());
+        for (final Map.Entry<String, Object> currEntry : cached.entrySet())
+        {
+            if (currEntry.getValue() != null)
+                pendingPhotos.put(currEntry.getKey(), (RestogramPhoto)currEntry.getValue());
+        }
+        return pendingPhotos;
+    }
+
     @Override
     public void addPendingPhotos(final Map<String, RestogramPhoto> pendingPhotos) {
         getMemcacheService().putAll(pendingPhotos);
@@ -464,10 +462,18 @@ public final class DataManagerImpl implements DataManager {
     }
 
     private MemcacheService getMemcacheService() {
-        MemcacheService cache = MemcacheServiceFactory.getMemcacheService();
+        return m_memcacheService;
+    }
+
+    private static MemcacheService createMemcacheService() {
+        final MemcacheService cache = MemcacheServiceFactory.getMemcacheService();
         cache.setErrorHandler(ErrorHandlers.getConsistentLogAndContinue(Level.WARNING));
-        return  cache;
+        return cache;
     }
 
     private final Logger log = Logger.getLogger(DataManagerImpl.class.getName());
+    private final MemcacheService m_memcacheService = createMemcacheService();
+    private final YummiesCounter m_yummiesCounter = new YummiesCounter();
+    private final PhotoExistenceCache m_existenceCache = new PhotoExistenceCache();
+    private final FavoritesIndex m_favoritesIndex = new FavoritesIndex(m_memcacheService);
 }
@@ -0,0 +1,140 @@
+package rest.o.gram.data;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.leanengine.server.LeanException;
+import com.leanengine.server.appengine.DatastoreUtils;
+import com.leanengine.server.auth.AuthService;
+import com.leanengine.server.entity.LeanQuery;
+import com.leanengine.server.entity.QueryFilter;
+import com.leanengine.server.entity.QueryResult;
+import rest.o.gram.Defs;
+import rest.o.gram.entities.Kinds;
+import rest.o.gram.entities.Props;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Per-account index of favorite photo ids - a sorted id array in memcache, keyed by the account's
+ * version stamp. Changing a favorite bumps the stamp, so a stale index is never read again.
+ * Accounts with too many favorites are not indexed, their favorites are looked up by the given ids only.
+ */
+final class FavoritesIndex {
+
+    FavoritesIndex(final MemcacheService memcacheService) {
+        m_memcacheService = memcacheService;
+    }
+
+    /**
+     * @return the ids of the current account's favorite photos, out of the given ids. null on failure
+     */
+    Set<String> filterFavorites(final Collection<String> photoIds) {
+        if (photoIds == null || photoIds.isEmpty())
+            return new HashSet<>();
+
+        final long accountId = AuthService.getCurrentAccount().id;
+        // initialized by time, so a stamp which was evicted never returns to an older version
+        final Long version = m_memcacheService.increment(getVersionKey(accountId), 0L, System.currentTimeMillis());
+        if (version == null) // memcache is unavailable
+            return fetchFavorites(photoIds);
+
+        final String indexKey = getIndexKey(accountId, version);
+        Object index = m_memcacheService.get(indexKey);
+        if (index == null)
+        {
+            index = buildIndex();
+            if (index == null)
+                return fetchFavorites(photoIds);
+            m_memcacheService.put(indexKey, index, Expiration.byDeltaSeconds(Defs.Favorites.INDEX_EXPIRATION));
+        }
+
+        if (!(index instanceof String[]))
+            return fetchFavorites(photoIds); // not indexed
+
+        final String[] favoriteIds = (String[])index;
+        final Set<String> result = new HashSet<>();
+        for (final String currId : photoIds)
+        {
+            if (Arrays.binarySearch(favoriteIds, currId) >= 0)
+                result.add(currId);
+        }
+        return result;
+    }
+
+    /**
+     * Invalidates the current account's index, to be called after its favorites have changed
+     */
+    void invalidate() {
+        m_memcacheService.increment(getVersionKey(AuthService.getCurrentAccount().id), 1L,
+                                    System.currentTimeMillis());
+    }
+
+    /**
+     * @return the sorted favorite ids, NOT_INDEXED if there are too many or null on failure
+     */
+    private Object buildIndex() {
+        final LeanQuery query = new LeanQuery(Kinds.PHOTO_REFERENCE);
+        query.addFilter(Props.PhotoRef.IS_FAVORITE, QueryFilter.FilterOperator.EQUAL, true);
+        query.setKeysOnly();
+        query.setLimit(Defs.Favorites.MAX_INDEXED_FAVORITES + 1);
+        final QueryResult result;
+        try
+        {
+            result = DatastoreUtils.queryEntityPrivate(query);
+        } catch (LeanException e)
+        {
+            log.severe("could not query for fav photos. code:" + e.getErrorCode());
+            return null;
+        }
+
+        final List<Entity> entities = result.getResult();
+        if (entities.size() > Defs.Favorites.MAX_INDEXED_FAVORITES)
+            return NOT_INDEXED;
+
+        final String[] favoriteIds = new String[entities.size()];
+        int i = 0;
+        for (final Entity currEntity : entities)
+            favoriteIds[i++] = currEntity.getKey().getName();
+        Arrays.sort(favoriteIds);
+        return favoriteIds;
+    }
+
+    /**
+     * Batch-gets the photo references of the given ids
+     * @return the favorite ids or null on failure
+     */
+    private Set<String> fetchFavorites(final Collection<String> photoIds) {
+        final Collection<Entity> references;
+        try
+        {
+            references = DatastoreUtils.getPrivateEntities(Kinds.PHOTO_REFERENCE,
+                                                           photoIds.toArray(new String[photoIds.size()]));
+        } catch (LeanException e)
+        {
+            log.severe("could not fetch photo references. code:" + e.getErrorCode());
+            return null;
+        }
+
+        final Set<String> result = new HashSet<>();
+        for (final Entity currReference : references)
+        {
+            if (Boolean.TRUE.equals(currReference.getProperty(Props.PhotoRef.IS_FAVORITE)))
+                result.add(currReference.getKey().getName());
+        }
+        return result;
+    }
+
+    private static String getVersionKey(final long accountId) {
+        return "favs-version:" + accountId;
+    }
+
+    private static String getIndexKey(final long accountId, final long version) {
+        return "favs:" + accountId + ':' + version;
+    }
+
+    private static final Logger log = Logger.getLogger(FavoritesIndex.class.getName());
+    private static final String NOT_INDEXED = "not-indexed";
+    private final MemcacheService m_memcacheService;
+}
@@ -0,0 +1,13 @@
+package rest.o.gram.data;
+
+/**
+ * The result of a data operation that is still in progress.
+ */
+public interface PendingResult<T> {
+
+    /**
+     * Waits for the operation to complete
+     * @return the operation's result, null if it has failed (as with the synchronous operations)
+     */
+    T get();
+}
@@ -0,0 +1,85 @@
+package rest.o.gram.data;
+
+import com.google.appengine.api.datastore.Entity;
+import com.leanengine.server.LeanException;
+import com.leanengine.server.appengine.DatastoreUtils;
+import rest.o.gram.Defs;
+import rest.o.gram.entities.Kinds;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Tells which photos are cached in the data store - an in-instance LRU in front of batch gets.
+ * Cached photos are never removed, so a known photo is known for good, while a missing photo
+ * is re-checked after a short period (it may be cached by another instance).
+ */
+final class PhotoExistenceCache {
+
+    /**
+     * @return the ids of the cached photos out of the given ids, or null on failure
+     */
+    Set<String> filterExisting(final Collection<String> photoIds) {
+        final Set<String> result = new HashSet<>();
+        final List<String> unknownIds = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+        synchronized (m_localCache)
+        {
+            for (final String currId : photoIds)
+            {
+                final Long expiration = m_localCache.get(currId);
+                if (expiration == null || expiration < now)
+                    unknownIds.add(currId);
+                else if (expiration == EXISTS)
+                    result.add(currId);
+            }
+        }
+
+        if (unknownIds.isEmpty())
+            return result;
+
+        final Collection<Entity> entities;
+        try
+        {
+            entities = DatastoreUtils.getPublicEntities(Kinds.PHOTO, unknownIds.toArray(new String[unknownIds.size()]));
+        } catch (LeanException e)
+        {
+            log.severe("cannot get photos for existence check. code:" + e.getErrorCode());
+            return null;
+        }
+
+        final Set<String> found = new HashSet<>(entities.size());
+        for (final Entity currEntity : entities)
+            found.add(currEntity.getKey().getName());
+        result.addAll(found);
+
+        final long missingExpiration = now + Defs.PhotosCache.MISSING_PHOTO_PERIOD;
+        synchronized (m_localCache)
+        {
+            for (final String currId : unknownIds)
+                m_localCache.put(currId, found.contains(currId) ? EXISTS : missingExpiration);
+        }
+        return result;
+    }
+
+    /**
+     * Records photos which were just cached
+     */
+    void markExisting(final Collection<String> photoIds) {
+        synchronized (m_localCache)
+        {
+            for (final String currId : photoIds)
+                m_localCache.put(currId, EXISTS);
+        }
+    }
+
+    private static final Logger log = Logger.getLogger(PhotoExistenceCache.class.getName());
+    private static final long EXISTS = Long.MAX_VALUE; // never expires
+    private final Map<String, Long> m_localCache =
+            new LinkedHashMap<String, Long>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Long> eldest) {
+                    return size() > Defs.PhotosCache.EXISTENCE_CACHE_SIZE;
+                }
+            };
+}
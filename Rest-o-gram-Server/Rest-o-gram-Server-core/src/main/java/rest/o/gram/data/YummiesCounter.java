@@ -0,0 +1,173 @@
+package rest.o.gram.data;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import com.leanengine.server.LeanException;
+import com.leanengine.server.appengine.DatastoreUtils;
+import com.leanengine.server.entity.LeanQuery;
+import com.leanengine.server.entity.QueryFilter;
+import com.leanengine.server.entity.QueryResult;
+import rest.o.gram.Defs;
+import rest.o.gram.entities.Kinds;
+import rest.o.gram.entities.Props;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Sharded yummies counter. Changes are written to a random shard of the photo (a small entity group
+ * of its own), so concurrent favorites of the same photo rarely contend. The shards are periodically
+ * folded into the photo's indexed yummies property, which photos are sorted by.
+ */
+final class YummiesCounter {
+
+    /**
+     * Adds the given delta to the photo's yummies, visible once folded
+     * @return true if the change was saved
+     */
+    boolean change(final String photoId, final int delta) {
+        // on contention - retries with another shard
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt)
+        {
+            final String shardName = getShardName(photoId, random.nextInt(Defs.Yummies.SHARDS_COUNT));
+            final Transaction transaction = DatastoreUtils.buildTransaction();
+            try
+            {
+                Entity shard;
+                try
+                {
+                    shard = DatastoreUtils.getPublicEntity(Kinds.YUMMIES_SHARD, shardName, true);
+                } catch (LeanException e)
+                {
+                    if (e.getErrorCode() != LeanException.Error.EntityNotFound.errorCode)
+                        throw e;
+                    shard = new Entity(Kinds.YUMMIES_SHARD, shardName);
+                }
+
+                shard.setUnindexedProperty(Props.YummiesShard.DELTA, getDelta(shard) + delta);
+                shard.setProperty(Props.YummiesShard.DIRTY, true);
+                DatastoreUtils.putPublicEntity(shard, true);
+                transaction.commit();
+                return true;
+            } catch (LeanException | ConcurrentModificationException e)
+            {
+                log.warning("yummies shard update has failed, photo: " + photoId);
+            } finally
+            {
+                if (transaction.isActive())
+                    transaction.rollback();
+            }
+        }
+
+        log.severe("exceeded the number of allowed retries for yummies count update, photo: " + photoId);
+        return false;
+    }
+
+    /**
+     * Folds the dirty shards into their photos' yummies
+     * @return the number of photos folded
+     */
+    int fold() {
+        final LeanQuery query = new LeanQuery(Kinds.YUMMIES_SHARD);
+        query.addFilter(Props.YummiesShard.DIRTY, QueryFilter.FilterOperator.EQUAL, true);
+        query.setKeysOnly();
+        query.setLimit(Defs.Yummies.FOLD_BATCH_SIZE);
+        final QueryResult result;
+        try
+        {
+            result = DatastoreUtils.queryEntityPublic(query);
+        } catch (LeanException e)
+        {
+            log.severe("cannot query for dirty yummies shards. code:" + e.getErrorCode());
+            return 0;
+        }
+
+        final Set<String> photoIds = new LinkedHashSet<>();
+        for (final Entity currShard : result.getResult())
+            photoIds.add(getPhotoId(currShard.getKey().getName()));
+
+        int folded = 0;
+        for (final String currPhotoId : photoIds)
+        {
+            if (foldPhoto(currPhotoId))
+                ++folded;
+        }
+        return folded;
+    }
+
+    private boolean foldPhoto(final String photoId) {
+        final String[] shardNames = new String[Defs.Yummies.SHARDS_COUNT];
+        for (int i = 0; i < shardNames.length; ++i)
+            shardNames[i] = getShardName(photoId, i);
+
+        // the shards and the photo change together, a concurrent change fails the fold until the next run
+        final Transaction transaction = DatastoreUtils.buildTransaction(TransactionOptions.Builder.withXG(true));
+        try
+        {
+            final List<Entity> entities =
+                    new ArrayList<>(DatastoreUtils.getPublicEntities(Kinds.YUMMIES_SHARD, shardNames, true));
+            long delta = 0;
+            for (final Entity currShard : entities)
+            {
+                delta += getDelta(currShard);
+                currShard.setUnindexedProperty(Props.YummiesShard.DELTA, 0L);
+                currShard.setProperty(Props.YummiesShard.DIRTY, false);
+            }
+
+            try
+            {
+                final Entity photo = DatastoreUtils.getPublicEntity(Kinds.PHOTO, photoId, true);
+                long yummies = 0;
+                if (photo.hasProperty(Props.Photo.YUMMIES))
+                    yummies = (Long)photo.getProperty(Props.Photo.YUMMIES);
+                photo.setProperty(Props.Photo.YUMMIES, yummies + delta);
+                entities.add(photo);
+            } catch (LeanException e)
+            {
+                if (e.getErrorCode() != LeanException.Error.EntityNotFound.errorCode)
+                    throw e;
+                log.warning("photo is not cached, drops its yummies: " + photoId);
+            }
+
+            DatastoreUtils.putPublicEntities(entities, true);
+            transaction.commit();
+            return true;
+        } catch (LeanException | ConcurrentModificationException e)
+        {
+            log.warning("folding yummies has failed, will retry. photo: " + photoId);
+            return false;
+        } catch (RuntimeException e)
+        {
+            // e.g. a rejected transaction - the other photos are still folded
+            log.severe(String.format("folding yummies has failed. photo: %s, error: %s", photoId, e.getMessage()));
+            return false;
+        } finally
+        {
+            if (transaction.isActive())
+                transaction.rollback();
+        }
+    }
+
+    private static long getDelta(final Entity shard) {
+        return shard.hasProperty(Props.YummiesShard.DELTA) ? (Long)shard.getProperty(Props.YummiesShard.DELTA) : 0;
+    }
+
+    private static String getShardName(final String photoId, final int shard) {
+        return photoId + SHARD_SEPARATOR + shard;
+    }
+
+    private static String getPhotoId(final String shardName) {
+        return shardName.substring(0, shardName.lastIndexOf(SHARD_SEPARATOR));
+    }
+
+    private static final Logger log = Logger.getLogger(YummiesCounter.class.getName());
+    private static final int MAX_ATTEMPTS = 3;
+    private static final char SHARD_SEPARATOR = ':';
+    private final Random random = new Random();
+}
@@ -0,0 +1,16 @@
+package rest.o.gram.filters;
+
+import rest.o.gram.entities.RestogramPhoto;
+
+/**
+ * A stage of the filters pipeline. Stages only approve, so their order never changes the verdict
+ */
+public interface FilterStage {
+
+    String getName();
+
+    /**
+     * @return true if the photo is approved by this stage, false if undecided
+     */
+    boolean approves(RestogramPhoto photo);
+}
@@ -0,0 +1,63 @@
+package rest.o.gram.filters;
+
+import rest.o.gram.Defs;
+import rest.o.gram.entities.RestogramPhoto;
+
+/**
+ * The stages of the filters pipeline
+ */
+public final class FilterStages {
+
+    /**
+     * Approves photos by their tags
+     */
+    public static FilterStage tags(final TagsDictionary dictionary) {
+        return new FilterStage() {
+            @Override
+            public String getName() {
+                return "tags";
+            }
+
+            @Override
+            public boolean approves(final RestogramPhoto photo) {
+                return dictionary.getMatcher().score(photo.getTags()) >= Defs.Filters.APPROVAL_SCORE;
+            }
+        };
+    }
+
+    /**
+     * Approves photos by the words of their caption
+     */
+    public static FilterStage captionKeywords(final TagsDictionary dictionary) {
+        return new FilterStage() {
+            @Override
+            public String getName() {
+                return "caption-keywords";
+            }
+
+            @Override
+            public boolean approves(final RestogramPhoto photo) {
+                return dictionary.getMatcher().scoreText(photo.getCaption()) >= Defs.Filters.APPROVAL_SCORE;
+            }
+        };
+    }
+
+    /**
+     * Approves popular photos, venues' popular photos are mostly of their food
+     */
+    public static FilterStage likes(final long threshold) {
+        return new FilterStage() {
+            @Override
+            public String getName() {
+                return "likes";
+            }
+
+            @Override
+            public boolean approves(final RestogramPhoto photo) {
+                return photo.getLikes() >= threshold;
+            }
+        };
+    }
+
+    private FilterStages() {}
+}
@@ -0,0 +1,123 @@
+package rest.o.gram.filters;
+
+import rest.o.gram.Defs;
+import rest.o.gram.entities.RestogramPhoto;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Runs photos through approving stages, stopping at the first stage which approves.
+ * Each stage's cost and approval rate are recorded, and the stages are periodically reordered by
+ * cost per approval - the order that minimizes the expected cost. Photos left unapproved are
+ * for the filter queue (face detection) to decide.
+ */
+public class PipelineRestogramFilter implements RestogramFilter {
+
+    public PipelineRestogramFilter(final FilterStage... stages) {
+        final StageStats[] order = new StageStats[stages.length];
+        for (int i = 0; i < stages.length; ++i)
+            order[i] = new StageStats(stages[i]);
+        m_order = order;
+    }
+
+    public void doFilter(final List<RestogramPhoto> data) {
+
+        if (data == null)
+            return;
+
+        final StageStats[] order = m_order;
+        for (final RestogramPhoto currPhoto : data)
+        {
+            for (final StageStats currStage : order)
+            {
+                final long start = System.nanoTime();
+                final boolean isApproved = currStage.stage.approves(currPhoto);
+                currStage.record(System.nanoTime() - start, isApproved);
+                if (isApproved)
+                {
+                    currPhoto.setApproved(true);
+                    break;
+                }
+            }
+        }
+
+        if (m_evaluations.addAndGet(data.size()) >= Defs.Filters.PIPELINE_REORDER_INTERVAL)
+            reorder();
+    }
+
+    private synchronized void reorder() {
+        if (m_evaluations.get() < Defs.Filters.PIPELINE_REORDER_INTERVAL)
+            return; // reordered by another thread
+
+        final StageStats[] order = Arrays.copyOf(m_order, m_order.length);
+        // a snapshot, the stats keep changing while sorting
+        for (int i = 0; i < order.length; ++i)
+            order[i].rank = order[i].getRank();
+        Arrays.sort(order, new Comparator<StageStats>() {
+            @Override
+            public int compare(final StageStats first, final StageStats second) {
+                return Double.compare(first.rank, second.rank);
+            }
+        });
+
+        final StringBuilder orderBuilder = new StringBuilder();
+        for (final StageStats currStage : order)
+        {
+            orderBuilder.append(currStage.stage.getName()).append(' ');
+            currStage.decay();
+        }
+        log.info("filter stages order: " + orderBuilder);
+
+        m_order = order;
+        m_evaluations.set(0);
+    }
+
+    private static final class StageStats {
+
+        StageStats(final FilterStage stage) {
+            this.stage = stage;
+        }
+
+        void record(final long nanos, final boolean isApproved) {
+            m_nanos.addAndGet(nanos);
+            m_evaluated.incrementAndGet();
+            if (isApproved)
+                m_approved.incrementAndGet();
+        }
+
+        /**
+         * @return average cost per approval, lower runs first
+         */
+        double getRank() {
+            final long evaluated = m_evaluated.get();
+            if (evaluated == 0)
+                return 0; // unknown stages are tried early, to learn about them
+            final double cost = (double)m_nanos.get() / evaluated;
+            final double approvalRate = (m_approved.get() + 1.0) / (evaluated + 2.0); // smoothed
+            return cost / approvalRate;
+        }
+
+        /**
+         * Halves the history, so the order follows changes in the photos
+         */
+        void decay() {
+            m_nanos.set(m_nanos.get() / 2);
+            m_evaluated.set(m_evaluated.get() / 2);
+            m_approved.set(m_approved.get() / 2);
+        }
+
+        final FilterStage stage;
+        double rank;
+        private final AtomicLong m_nanos = new AtomicLong();
+        private final AtomicLong m_evaluated = new AtomicLong();
+        private final AtomicLong m_approved = new AtomicLong();
+    }
+
+    private static final Logger log = Logger.getLogger(PipelineRestogramFilter.class.getName());
+    private final AtomicLong m_evaluations = new AtomicLong();
+    private volatile StageStats[] m_order;
+}
@@ -1,5 +1,7 @@
 package rest.o.gram.filters;
 
+import rest.o.gram.Defs;
+
 /**
  * Created with IntelliJ IDEA.
  * User: Itay
@@ -10,11 +12,18 @@ public class RestogramFilterFactory {
     public static RestogramFilter createFilter(RestogramFilterType filterType) {
 
         if (filterType == RestogramFilterType.Simple)
-            return new HashtagRestogramFilter();
+            return hashtagFilter;
         else if (filterType == RestogramFilterType.Complex)
-            return new HashtagRestogramFilter();
+            return pipelineFilter;
         else
 
         return null;
     }
+
+    // filters are thread safe, so they are shared
+    private static final RestogramFilter hashtagFilter = new HashtagRestogramFilter();
+    private static final RestogramFilter pipelineFilter =
+            new PipelineRestogramFilter(FilterStages.tags(HashtagRestogramFilter.foodTags),
+                                        FilterStages.captionKeywords(HashtagRestogramFilter.foodTags),
+                                        FilterStages.likes(Defs.Filters.PIPELINE_LIKES_THRESHOLD));
 }
@@ -0,0 +1,216 @@
+package rest.o.gram.filters;
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable, weighted tags matcher - thread safe and shared.
+ * Tags are normalized char by char (case, latin diacritics, hebrew points and final letters, a leading '#')
+ * and kept in an open addressing table, so matching a photo's tags allocates nothing.
+ */
+public final class TagMatcher {
+
+    /**
+     * Parses a dictionary of comma separated tags, each optionally followed by ':weight' (default 1)
+     * @return normalized tag to weight mapping, in order
+     * @throws NumberFormatException thrown when a weight is malformed
+     */
+    public static Map<String, Double> parse(final String dictionary) {
+        final Map<String, Double> weights = new LinkedHashMap<>();
+        for (final String currEntry : dictionary.split(","))
+        {
+            final int separator = currEntry.lastIndexOf(':');
+            final String tag = normalize(separator < 0 ? currEntry : currEntry.substring(0, separator));
+            if (tag.isEmpty())
+                continue;
+            weights.put(tag, separator < 0 ? 1.0 : Double.parseDouble(currEntry.substring(separator + 1).trim()));
+        }
+        return weights;
+    }
+
+    public static TagMatcher compile(final Map<String, Double> weights) {
+        return new TagMatcher(weights);
+    }
+
+    /**
+     * @return the summed weights of the matching tags, 0 if none match
+     */
+    public double score(final String[] tags) {
+        if (tags == null)
+            return 0;
+
+        double score = 0;
+        for (final String currTag : tags)
+        {
+            if (currTag == null)
+                continue;
+            final int start = skipHash(currTag);
+            final int index = find(currTag, start, currTag.length());
+            if (index >= 0)
+                score += m_weights[index];
+        }
+        return score;
+    }
+
+    /**
+     * Scores the words of the given text (a caption), words are separated by anything but letters, digits and '_'
+     * @return the summed weights of the matching words, 0 if none match
+     */
+    public double scoreText(final String text) {
+        if (text == null)
+            return 0;
+
+        double score = 0;
+        int wordStart = -1;
+        for (int i = 0; i <= text.length(); ++i)
+        {
+            final boolean isWordChar = i < text.length() && isWordChar(text.charAt(i));
+            if (isWordChar && wordStart < 0)
+                wordStart = i;
+            else if (!isWordChar && wordStart >= 0)
+            {
+                final int index = find(text, wordStart, i);
+                if (index >= 0)
+                    score += m_weights[index];
+                wordStart = -1;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * @return the number of tags in this matcher
+     */
+    public int size() {
+        return m_size;
+    }
+
+    private TagMatcher(final Map<String, Double> weights) {
+        int capacity = 16;
+        while (capacity < weights.size() * 2)
+            capacity <<= 1;
+        m_keys = new char[capacity][];
+        m_weights = new double[capacity];
+        m_mask = capacity - 1;
+
+        int size = 0;
+        for (final Map.Entry<String, Double> currEntry : weights.entrySet())
+        {
+            final String tag = normalize(currEntry.getKey());
+            if (tag.isEmpty() || find(tag, 0, tag.length()) >= 0)
+                continue;
+            int index = hash(tag, 0, tag.length()) & m_mask;
+            while (m_keys[index] != null)
+                index = (index + 1) & m_mask;
+            m_keys[index] = tag.toCharArray();
+            m_weights[index] = currEntry.getValue();
+            ++size;
+        }
+        m_size = size;
+    }
+
+    /**
+     * @return the table index of the given (raw) tag range or -1 if it does not exist
+     */
+    private int find(final String tag, final int start, final int end) {
+        int index = hash(tag, start, end) & m_mask;
+        while (m_keys[index] != null)
+        {
+            if (equalsNormalized(m_keys[index], tag, start, end))
+                return index;
+            index = (index + 1) & m_mask;
+        }
+        return -1;
+    }
+
+    private static int hash(final String tag, final int start, final int end) {
+        int hash = 0;
+        for (int i = start; i < end; ++i)
+        {
+            final char curr = fold(tag.charAt(i));
+            if (curr != SKIP)
+                hash = 31 * hash + curr;
+        }
+        // spreads the low bits, the table is indexed by them
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equalsNormalized(final char[] key, final String tag, final int start, final int end) {
+        int position = 0;
+        for (int i = start; i < end; ++i)
+        {
+            final char curr = fold(tag.charAt(i));
+            if (curr == SKIP)
+                continue;
+            if (position == key.length || key[position++] != curr)
+                return false;
+        }
+        return position == key.length;
+    }
+
+    private static String normalize(final String tag) {
+        final String trimmed = tag.trim();
+        final StringBuilder builder = new StringBuilder(trimmed.length());
+        for (int i = skipHash(trimmed); i < trimmed.length(); ++i)
+        {
+            final char curr = fold(trimmed.charAt(i));
+            if (curr != SKIP)
+                builder.append(curr);
+        }
+        return builder.toString();
+    }
+
+    private static boolean isWordChar(final char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || Character.getType(c) == Character.NON_SPACING_MARK;
+    }
+
+    private static int skipHash(final String tag) {
+        return !tag.isEmpty() && tag.charAt(0) == '#' ? 1 : 0;
+    }
+
+    /**
+     * @return the normalized char or SKIP if it should be ignored
+     */
+    private static char fold(final char c) {
+        if (c < FOLDS.length)
+            return FOLDS[c];
+
+        switch (c)
+        {
+            // hebrew final letters
+            case 'ך': return 'כ';
+            case 'ם': return 'מ';
+            case 'ן': return 'נ';
+            case 'ף': return 'פ';
+            case 'ץ': return 'צ';
+            // greek final sigma, 'Σ' lower cases to 'σ'
+            case 'ς': return 'σ';
+        }
+
+        // combining marks - diacritics and hebrew points
+        if (Character.getType(c) == Character.NON_SPACING_MARK)
+            return SKIP;
+        return Character.toLowerCase(c);
+    }
+
+    private static char[] createFolds() {
+        // latin letters are folded once here, by their canonical decomposition
+        final char[] folds = new char[0x250];
+        for (char c = 0; c < folds.length; ++c)
+        {
+            final String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+            folds[c] = Character.getType(c) == Character.NON_SPACING_MARK ?
+                    SKIP :
+                    Character.toLowerCase(decomposed.charAt(0));
+        }
+        return folds;
+    }
+
+    private static final char SKIP = '\uffff';
+    private static final char[] FOLDS = createFolds();
+    private final char[][] m_keys;
+    private final double[] m_weights;
+    private final int m_mask;
+    private final int m_size;
+}
@@ -0,0 +1,77 @@
+package rest.o.gram.filters;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Text;
+import com.leanengine.server.LeanException;
+import com.leanengine.server.appengine.DatastoreUtils;
+import rest.o.gram.Defs;
+import rest.o.gram.entities.Kinds;
+import rest.o.gram.entities.Props;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * A compiled tags dictionary, shared by all requests of the instance.
+ * The dictionary is read from its data store entity (tags_dictionary/name), so it can be changed without
+ * a redeploy, and re-read periodically. The built-in dictionary is used when there is no entity.
+ */
+public final class TagsDictionary {
+
+    public TagsDictionary(final String name, final String defaultDictionary) {
+        m_name = name;
+        m_matcher = TagMatcher.compile(TagMatcher.parse(defaultDictionary));
+    }
+
+    /**
+     * @return the current matcher, reloaded by the first caller after the refresh period
+     */
+    public TagMatcher getMatcher() {
+        if (System.currentTimeMillis() - m_loadedAt >= Defs.Filters.DICTIONARY_REFRESH_PERIOD &&
+            m_isLoading.compareAndSet(false, true))
+        {
+            try
+            {
+                load();
+            } finally
+            {
+                m_loadedAt = System.currentTimeMillis();
+                m_isLoading.set(false);
+            }
+        }
+        return m_matcher;
+    }
+
+    private void load() {
+        final Entity entity;
+        try
+        {
+            entity = DatastoreUtils.getPublicEntity(Kinds.TAGS_DICTIONARY, m_name);
+        } catch (LeanException e)
+        {
+            if (e.getErrorCode() != LeanException.Error.EntityNotFound.errorCode)
+                log.warning("cannot load tags dictionary, keeps the current one. code:" + e.getErrorCode());
+            return;
+        }
+
+        final Object tags = entity.getProperty(Props.TagsDictionary.TAGS);
+        final String dictionary = tags instanceof Text ? ((Text)tags).getValue() : (String)tags;
+        if (dictionary == null)
+            return;
+        try
+        {
+            final TagMatcher matcher = TagMatcher.compile(TagMatcher.parse(dictionary));
+            if (matcher.size() > 0)
+                m_matcher = matcher;
+        } catch (NumberFormatException e)
+        {
+            log.warning("malformed tags dictionary, keeps the current one: " + m_name);
+        }
+    }
+
+    private static final Logger log = Logger.getLogger(TagsDictionary.class.getName());
+    private final String m_name;
+    private final AtomicBoolean m_isLoading = new AtomicBoolean(false);
+    private volatile TagMatcher m_matcher;
+    private volatile long m_loadedAt = 0;
+}
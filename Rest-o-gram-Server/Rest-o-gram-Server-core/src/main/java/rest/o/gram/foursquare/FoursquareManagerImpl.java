@@ -3,6 +3,7 @@ package rest.o.gram.foursquare;
 import fi.foyt.foursquare.api.FoursquareApi;
 import fi.foyt.foursquare.api.FoursquareApiException;
 import fi.foyt.foursquare.api.Result;
+import fi.foyt.foursquare.api.ResultMeta;
 import fi.foyt.foursquare.api.entities.CompactVenue;
 import fi.foyt.foursquare.api.entities.CompleteVenue;
 import fi.foyt.foursquare.api.entities.VenuesSearchResult;
@@ -10,8 +11,8 @@ import fi.foyt.foursquare.api.io.GAEIOHandler;
 import rest.o.gram.ApisConverters;
 import rest.o.gram.Defs;
 import rest.o.gram.credentials.Credentials;
+import rest.o.gram.credentials.GovernedCredentialsFactory;
 import rest.o.gram.credentials.ICredentialsFactory;
-import rest.o.gram.credentials.RandomCredentialsFactory;
 import rest.o.gram.entities.RestogramVenue;
 
 import javax.servlet.http.HttpServletResponse;
@@ -28,7 +29,7 @@ public class FoursquareManagerImpl implements FoursquareManager {
     public FoursquareManagerImpl() {
         try {
             // TODO: when foursquare login is implemented - prefer user credentials whenever possible
-            credentialsFactory = new RandomCredentialsFactory();
+            credentialsFactory = new GovernedCredentialsFactory();
         } catch (Exception e) {
             log.severe("an error occurred while initializing the service");
         }
@@ -45,7 +46,10 @@ public class FoursquareManagerImpl implements FoursquareManager {
         params.put("ll", String.format("%f,%f", latitude, longitude));
         params.put("categoryId", Defs.Foursquare.VENUE_CATEGORY);
         if (radius >= 0)
+        {
             params.put("radius", Double.toString(radius));
+            params.put("limit", Integer.toString(Defs.Foursquare.NEARBY_SEARCH_LIMIT));
+        }
         else
             params.put("intent", "match");
 
@@ -54,25 +58,20 @@ public class FoursquareManagerImpl implements FoursquareManager {
 
     private List<RestogramVenue> doGetNearby(final Map<String, String> params) {
         Result<VenuesSearchResult> result;
+        Credentials credentials = credentialsFactory.createFoursquareCredentials();
         try {
-            final Credentials credentials = credentialsFactory.createFoursquareCredentials();
-            log.info("foursquare credentials type = " + credentials.getType());
-            final FoursquareApi foursquare =
-                    new FoursquareApi(credentials.getClientId(), credentials.getClientSecret(), "", new GAEIOHandler());
-            result = foursquare.venuesSearch(params);
+            result = createFoursquareApi(credentials).venuesSearch(params);
         } catch (FoursquareApiException e) {
             try {
                 log.warning("first venue search has failed, retry");
-                final Credentials credentials = credentialsFactory.createFoursquareCredentials();
-                log.info("foursquare credentials type = " + credentials.getType());
-                final FoursquareApi foursquare =
-                        new FoursquareApi(credentials.getClientId(), credentials.getClientSecret(), "", new GAEIOHandler());
-                result = foursquare.venuesSearch(params);
+                credentials = credentialsFactory.createFoursquareCredentials();
+                result = createFoursquareApi(credentials).venuesSearch(params);
             } catch (FoursquareApiException e2) {
                 log.severe("second venue search has failed");
                 return null;
             }
         }
+        reportRateLimit(credentials, result.getMeta());
 
         if (result.getMeta().getCode() != HttpServletResponse.SC_OK) {
             log.severe("venue search returned an error code: " + result.getMeta().getCode());
@@ -100,25 +99,20 @@ public class FoursquareManagerImpl implements FoursquareManager {
     @Override
     public RestogramVenue getInfo(final String venueID) {
         Result<CompleteVenue> result;
+        Credentials credentials = credentialsFactory.createFoursquareCredentials();
         try {
-            final Credentials credentials = credentialsFactory.createFoursquareCredentials();
-            log.info("foursquare credentials type = " + credentials.getType());
-            final FoursquareApi foursquare =
-                    new FoursquareApi(credentials.getClientId(), credentials.getClientSecret(), "", new GAEIOHandler());
-            result = foursquare.venue(venueID);
+            result = createFoursquareApi(credentials).venue(venueID);
         } catch (FoursquareApiException e) {
             log.warning("first venue  " + venueID + " retrieval has failed, retry");
             try {
-                final Credentials credentials = credentialsFactory.createFoursquareCredentials();
-                log.info("foursquare credentials type = " + credentials.getType());
-                final FoursquareApi foursquare =
-                        new FoursquareApi(credentials.getClientId(), credentials.getClientSecret(), "", new GAEIOHandler());
-                result = foursquare.venue(venueID);
+                credentials = credentialsFactory.createFoursquareCredentials();
+                result = createFoursquareApi(credentials).venue(venueID);
             } catch (FoursquareApiException e2) {
                 log.severe("second venue " + venueID + " retrieval has failed");
                 return null;
             }
         }
+        reportRateLimit(credentials, result.getMeta());
 
         if (result.getMeta().getCode() != HttpServletResponse.SC_OK) {
             log.severe("venue " + venueID + "retrieval returned an error code: " + result.getMeta().getCode());
@@ -134,6 +128,28 @@ public class FoursquareManagerImpl implements FoursquareManager {
         return ApisConverters.convertToRestogramVenue(completeVenue);
     }
 
+    private FoursquareApi createFoursquareApi(final Credentials credentials) throws FoursquareApiException {
+        if (credentials == null)
+            throw new FoursquareApiException("all foursquare keys are exhausted");
+        log.info("foursquare credentials type = " + credentials.getType());
+        return new FoursquareApi(credentials.getClientId(), credentials.getClientSecret(), "", new GAEIOHandler());
+    }
+
+    /**
+     * Drains the quota of credentials foursquare has rate limited.
+     * NOTE: the IO handler does not expose the rate-limit headers, so only errors are reported
+     */
+    private void reportRateLimit(final Credentials credentials, final ResultMeta meta) {
+        if (meta == null)
+            return;
+        final Integer code = meta.getCode();
+        if ((code != null && code == SC_TOO_MANY_REQUESTS) ||
+            RATE_LIMIT_ERROR_TYPE.equals(meta.getErrorType()))
+            GovernedCredentialsFactory.getFoursquareGovernor().onRateLimited(credentials);
+    }
+
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final String RATE_LIMIT_ERROR_TYPE = "rate_limit_exceeded";
     private static final Logger log = Logger.getLogger(FoursquareManagerImpl.class.getName());
     private ICredentialsFactory credentialsFactory;
 }
\ No newline at end of file
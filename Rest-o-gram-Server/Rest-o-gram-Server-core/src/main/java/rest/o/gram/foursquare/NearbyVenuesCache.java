@@ -0,0 +1,248 @@
+package rest.o.gram.foursquare;
+
+import com.google.appengine.api.memcache.ErrorHandlers;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import rest.o.gram.Defs;
+import rest.o.gram.entities.RestogramVenue;
+import rest.o.gram.tasks.TasksManager;
+import rest.o.gram.utils.GeoHashUtils;
+import rest.o.gram.utils.LocationUtils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caches nearby venues searches by geohash cell - an in-instance LRU in front of memcache.
+ * Searches are made from the cell's center, widened by the cell's half diagonal, so all users in the same cell
+ * (and radius) share them - each user gets the venues within the radius of its own location.
+ * Results older than the fresh period are still served while a refresh task reloads them.
+ */
+public final class NearbyVenuesCache {
+
+    /**
+     * Loads nearby venues on a cache miss
+     */
+    public interface Loader {
+        /**
+         * @return nearby venues or null if the search has failed
+         */
+        RestogramVenue[] load(double latitude, double longitude, double radius);
+    }
+
+    /**
+     * The name of the cache in refresh tasks
+     */
+    public static final String NAME = "nearby";
+
+    public NearbyVenuesCache(final Loader loader, final TasksManager tasksManager) {
+        m_loader = loader;
+        m_tasksManager = tasksManager;
+    }
+
+    /**
+     * Gets the venues nearby the given location, with distances relative to it
+     * @return nearby venues or null if the search has failed
+     */
+    public RestogramVenue[] get(final double latitude, final double longitude, final double radius) {
+        final String cell = getCell(latitude, longitude, radius);
+        final String key = getKey(cell, radius);
+
+        CachedVenues entry = getLocal(key);
+        if (entry == null || !isFresh(entry))
+        {
+            // the refresh task (of any instance) puts the reloaded entry in memcache
+            final CachedVenues remote = getRemote(key);
+            if (remote != null && (entry == null || remote.fetchedAt > entry.fetchedAt))
+            {
+                entry = remote;
+                putLocal(key, entry);
+            }
+        }
+
+        final long age = entry == null ? Long.MAX_VALUE : System.currentTimeMillis() - entry.fetchedAt;
+        if (age < Defs.Foursquare.NEARBY_CACHE_FRESH_PERIOD)
+            return select(entry.venues, latitude, longitude, radius);
+
+        if (age < Defs.Foursquare.NEARBY_CACHE_STALE_PERIOD)
+        {
+            revalidate(entry, cell, radius);
+            return select(entry.venues, latitude, longitude, radius);
+        }
+
+        entry = load(key, cell, radius);
+        return entry == null ? null : select(entry.venues, latitude, longitude, radius);
+    }
+
+    /**
+     * Reloads the given entry unless it has already been refreshed, called by the refresh task
+     * @return true if the entry is fresh, false if reloading it has failed
+     */
+    public boolean refresh(final String cell, final double radius) {
+        final String key = getKey(cell, radius);
+        final CachedVenues entry = getRemote(key);
+        if (entry != null && isFresh(entry))
+            return true;
+        return load(key, cell, radius) != null;
+    }
+
+    private static boolean isFresh(final CachedVenues entry) {
+        return System.currentTimeMillis() - entry.fetchedAt < Defs.Foursquare.NEARBY_CACHE_FRESH_PERIOD;
+    }
+
+    private String getCell(final double latitude, final double longitude, final double radius) {
+        // intent=match searches (no radius) look for the exact venue, so the finest cell is used
+        final int precision = radius < 0 ?
+                Defs.Foursquare.NEARBY_CACHE_MAX_PRECISION :
+                GeoHashUtils.getPrecision(radius * Defs.Foursquare.NEARBY_CACHE_CELL_RATIO,
+                                          Defs.Foursquare.NEARBY_CACHE_MIN_PRECISION,
+                                          Defs.Foursquare.NEARBY_CACHE_MAX_PRECISION);
+        return GeoHashUtils.encode(latitude, longitude, precision);
+    }
+
+    private static String getKey(final String cell, final double radius) {
+        return String.format("nearby:%s:%d", cell, Math.round(radius));
+    }
+
+    private CachedVenues load(final String key, final String cell, final double radius) {
+        final double[] center = GeoHashUtils.decodeCenter(cell);
+        // covers the radius around every location in the cell
+        final double searchRadius = radius < 0 ? radius :
+                Math.min(radius + getHalfDiagonal(cell, center), Defs.Foursquare.MAX_SEARCH_RADIUS);
+        final RestogramVenue[] venues = m_loader.load(center[0], center[1], searchRadius);
+        if (venues == null)
+            return null; // failures are not cached
+
+        final CachedVenues entry = new CachedVenues(venues, System.currentTimeMillis());
+        putLocal(key, entry);
+        try
+        {
+            m_memcacheService.put(key, entry,
+                                  Expiration.byDeltaMillis((int)Defs.Foursquare.NEARBY_CACHE_STALE_PERIOD));
+        } catch (Exception e)
+        {
+            log.warning("caching nearby venues in memcache has failed");
+        }
+        return entry;
+    }
+
+    /**
+     * @return the distance from the cell's center to its farthest corner, in meters
+     */
+    private static double getHalfDiagonal(final String cell, final double[] center) {
+        // cells are wider on their side closer to the equator
+        final double[] bounds = GeoHashUtils.decodeBounds(cell);
+        return Math.max(LocationUtils.distance(center[0], center[1], bounds[0], bounds[1]),
+                        LocationUtils.distance(center[0], center[1], bounds[2], bounds[1]));
+    }
+
+    /**
+     * Enqueues a refresh of the given entry - once per entry in this instance, and once per entry
+     * across instances as the task is named after the entry's fetch time
+     */
+    private void revalidate(final CachedVenues entry, final String cell, final double radius) {
+        if (entry.isRefreshEnqueued)
+            return;
+        entry.isRefreshEnqueued = true;
+
+        final Map<String, String> params = new HashMap<>();
+        params.put(CELL_PARAM, cell);
+        params.put(RADIUS_PARAM, Long.toString(Math.round(radius)));
+        final String name = String.format("%s-%s-%d-%d", NAME, cell, Math.round(radius), entry.fetchedAt);
+        if (!m_tasksManager.enqueueRefreshTask(name, NAME, params))
+            entry.isRefreshEnqueued = false; // retried by a later request
+    }
+
+    private CachedVenues getLocal(final String key) {
+        synchronized (m_localCache)
+        {
+            return m_localCache.get(key);
+        }
+    }
+
+    private void putLocal(final String key, final CachedVenues entry) {
+        synchronized (m_localCache)
+        {
+            m_localCache.put(key, entry);
+        }
+    }
+
+    private CachedVenues getRemote(final String key) {
+        try
+        {
+            return (CachedVenues)m_memcacheService.get(key);
+        } catch (Exception e)
+        {
+            log.warning("fetching nearby venues from memcache has failed");
+            return null;
+        }
+    }
+
+    /**
+     * @return copies of the venues within the radius of the given location, with distances relative to it
+     */
+    private static RestogramVenue[] select(final RestogramVenue[] venues, final double latitude,
+                                           final double longitude, final double radius) {
+        // cached venues are shared, so the caller gets its own copies with its own distances
+        final List<RestogramVenue> result = new ArrayList<>(venues.length);
+        for (final RestogramVenue currVenue : venues)
+        {
+            final double distance =
+                    LocationUtils.distance(latitude, longitude, currVenue.getLatitude(), currVenue.getLongitude());
+            if (radius >= 0 && distance > radius)
+                continue;
+
+            final RestogramVenue venue = new RestogramVenue(currVenue.getFoursquare_id(), currVenue.getName(),
+                    currVenue.getAddress(), currVenue.getCity(), currVenue.getState(),
+                    currVenue.getPostalCode(), currVenue.getCountry(),
+                    currVenue.getLatitude(), currVenue.getLongitude(), distance,
+                    currVenue.getUrl(), currVenue.getPhone()).encodeStrings();
+            venue.setDescription(currVenue.getDescription());
+            venue.setImageUrl(currVenue.getImageUrl());
+            result.add(venue);
+        }
+        return result.toArray(new RestogramVenue[result.size()]);
+    }
+
+    private static MemcacheService createMemcacheService() {
+        final MemcacheService cache = MemcacheServiceFactory.getMemcacheService();
+        cache.setErrorHandler(ErrorHandlers.getConsistentLogAndContinue(Level.INFO));
+        return cache;
+    }
+
+    private static final class CachedVenues implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        CachedVenues(final RestogramVenue[] venues, final long fetchedAt) {
+            this.venues = venues;
+            this.fetchedAt = fetchedAt;
+        }
+
+        final RestogramVenue[] venues;
+        final long fetchedAt;
+        transient volatile boolean isRefreshEnqueued; // by this instance
+    }
+
+    // refresh task params
+    public static final String CELL_PARAM = "cell";
+    public static final String RADIUS_PARAM = "radius";
+
+    private static final Logger log = Logger.getLogger(NearbyVenuesCache.class.getName());
+    private final Loader m_loader;
+    private final TasksManager m_tasksManager;
+    private final MemcacheService m_memcacheService = createMemcacheService();
+    private final Map<String, CachedVenues> m_localCache =
+            new LinkedHashMap<String, CachedVenues>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, CachedVenues> eldest) {
+                    return size() > Defs.Foursquare.NEARBY_CACHE_LOCAL_SIZE;
+                }
+            };
+}
@@ -0,0 +1,44 @@
+package rest.o.gram.foursquare;
+
+import rest.o.gram.data.DataManager;
+import rest.o.gram.entities.RestogramVenue;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads nearby venues from foursquare, with the images of the venues cached in the datastore
+ */
+public final class NearbyVenuesLoader implements NearbyVenuesCache.Loader {
+
+    public NearbyVenuesLoader(final FoursquareManager foursquareManager, final DataManager dataManager) {
+        m_foursquareManager = foursquareManager;
+        m_dataManager = dataManager;
+    }
+
+    @Override
+    public RestogramVenue[] load(final double latitude, final double longitude, final double radius) {
+        final List<RestogramVenue> venues = m_foursquareManager.getNearby(latitude, longitude, radius);
+
+        if (venues == null)
+            return null;
+
+        final String[] venueIds = new String[venues.size()];
+        for (int i = 0; i < venueIds.length; i++)
+            venueIds[i] = venues.get(i).getFoursquare_id();
+
+        final Map<String, RestogramVenue> idToVenueMapping = m_dataManager.fetchVenuesFromCache(venueIds);
+
+        if (idToVenueMapping != null) {
+            for (final RestogramVenue currVenue : venues) {
+                if (idToVenueMapping.containsKey(currVenue.getFoursquare_id()))
+                    currVenue.setImageUrl(idToVenueMapping.get(currVenue.getFoursquare_id()).getImageUrl());
+            }
+        }
+
+        return venues.toArray(new RestogramVenue[venues.size()]);
+    }
+
+    private final FoursquareManager m_foursquareManager;
+    private final DataManager m_dataManager;
+}
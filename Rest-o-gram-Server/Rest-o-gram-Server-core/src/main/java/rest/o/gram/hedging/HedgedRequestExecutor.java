@@ -0,0 +1,245 @@
+package rest.o.gram.hedging;
+
+import com.google.appengine.api.urlfetch.HTTPResponse;
+import rest.o.gram.Defs;
+import rest.o.gram.server.RequestExecutor;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+/**
+ * Sends a primary request and, only if it is slower than the recently observed latency percentile,
+ * a second (hedge) request. The first successful response wins and the other request is cancelled.
+ */
+public final class HedgedRequestExecutor {
+
+    /**
+     * A request that can be sent more than once
+     */
+    public interface Request {
+        /**
+         * Sends the request asynchronously
+         * @return a future of the response or null if the request could not be sent
+         */
+        Future<HTTPResponse> send();
+    }
+
+    public HedgedRequestExecutor() {
+        for (final Defs.Instagram.RequestType currType : Defs.Instagram.RequestType.values())
+        {
+            m_trackers.put(currType, new LatencyTracker(Defs.Instagram.HEDGE_LATENCY_SAMPLES,
+                                                        Defs.Instagram.HEDGE_MIN_LATENCY_SAMPLES));
+            m_stats.put(currType, new HedgingStats());
+        }
+    }
+
+    /**
+     * Executes the given request, hedging it if needed
+     * @param requestType the type of the request
+     * @param request the request to execute
+     * @return a successful response or null if both the primary and the hedge have failed
+     */
+    public HTTPResponse execute(final Defs.Instagram.RequestType requestType, final Request request) {
+        final HedgingStats stats = m_stats.get(requestType);
+        final LatencyTracker tracker = m_trackers.get(requestType);
+        stats.onRequest();
+
+        final long deadline = now() + Defs.Instagram.REQUESTS_TIMEOUT_UNIT.toMillis(Defs.Instagram.REQUESTS_READ_TIMEOUT);
+        final long primaryStart = now();
+        final Future<HTTPResponse> primary = request.send();
+        if (primary != null)
+        {
+            try
+            {
+                final HTTPResponse resp = primary.get(getHedgeDelay(requestType), Defs.Instagram.HEDGE_DELAY_UNIT);
+                if (isSuccessful(resp))
+                {
+                    tracker.record(now() - primaryStart);
+                    stats.onPrimaryWin();
+                    return resp;
+                }
+                log.warning("error while executing an instagram request : " + resp.getResponseCode());
+            }
+            catch (TimeoutException e)
+            {
+                log.info(String.format("%s request is slow, sending hedge", requestType.getType()));
+            }
+            catch (ExecutionException e)
+            {
+                log.warning(String.format("instagram request has failed - error: %s", e.getMessage()));
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                primary.cancel(true);
+                stats.onFailure();
+                return null;
+            }
+        }
+
+        stats.onHedge();
+        final long hedgeStart = now();
+        final Future<HTTPResponse> hedge = request.send();
+        final boolean primaryPending = primary != null && !primary.isDone();
+
+        final Future<HTTPResponse> winner;
+        if (primaryPending && hedge != null)
+            winner = awaitFirst(primary, hedge, deadline);
+        else if (primaryPending)
+            winner = awaitSingle(primary, deadline);
+        else if (hedge != null)
+            winner = awaitSingle(hedge, deadline);
+        else
+            winner = null;
+
+        if (winner == null)
+        {
+            stats.onFailure();
+            return null;
+        }
+
+        if (winner == hedge)
+        {
+            tracker.record(now() - hedgeStart);
+            stats.onHedgeWin();
+        }
+        else
+        {
+            tracker.record(now() - primaryStart);
+            stats.onPrimaryWin();
+        }
+        return getDone(winner);
+    }
+
+    /**
+     * @return hedging stats for the given request type
+     */
+    public HedgingStats getStats(final Defs.Instagram.RequestType requestType) {
+        return m_stats.get(requestType);
+    }
+
+    /**
+     * @return the delay after which a hedge is sent for the given request type
+     */
+    public long getHedgeDelay(final Defs.Instagram.RequestType requestType) {
+        final long delay = m_trackers.get(requestType).getPercentile(Defs.Instagram.HEDGE_LATENCY_PERCENTILE,
+                                                                     Defs.Instagram.HEDGE_DEFAULT_DELAY);
+        return Math.max(delay, Defs.Instagram.HEDGE_MIN_DELAY);
+    }
+
+    private Future<HTTPResponse> awaitSingle(final Future<HTTPResponse> future, final long deadline) {
+        try
+        {
+            return watch(future, deadline).call();
+        }
+        catch (Exception e)
+        {
+            log.severe(String.format("instagram request has failed - error: %s", e.getMessage()));
+            future.cancel(true);
+            return null;
+        }
+    }
+
+    private Future<HTTPResponse> awaitFirst(final Future<HTTPResponse> primary,
+                                            final Future<HTTPResponse> hedge,
+                                            final long deadline) {
+        // url-fetch futures offer no completion callbacks, so a request thread blocks on each of them
+        // and the first successful completion wakes us up. the watchers run on the request's executor -
+        // callers which have not started one get a short-lived executor of their own
+        final ExecutorService requestExecutor = RequestExecutor.current();
+        final ExecutorService watchers = requestExecutor != null ? requestExecutor : RequestExecutor.start();
+        final CompletionService<Future<HTTPResponse>> completions = new ExecutorCompletionService<>(watchers);
+        Future<Future<HTTPResponse>> primaryWatcher = null;
+        Future<Future<HTTPResponse>> hedgeWatcher = null;
+        try
+        {
+            primaryWatcher = completions.submit(watch(primary, deadline));
+            hedgeWatcher = completions.submit(watch(hedge, deadline));
+            for (int i = 0; i < 2; ++i)
+            {
+                final Future<Future<HTTPResponse>> completed =
+                        completions.poll(Math.max(0, deadline - now()), TimeUnit.MILLISECONDS);
+                if (completed == null)
+                    break; // timed out
+
+                try
+                {
+                    final Future<HTTPResponse> winner = completed.get();
+                    // cancels the loser
+                    (winner == primary ? hedge : primary).cancel(true);
+                    return winner;
+                }
+                catch (ExecutionException e)
+                {
+                    log.warning(String.format("instagram request has failed - error: %s", e.getCause().getMessage()));
+                }
+            }
+            log.severe("both instagram requests have failed");
+        }
+        catch (RejectedExecutionException e)
+        {
+            log.severe("cannot watch the instagram requests - the request's executor has been stopped");
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            // a watcher still blocked on the loser is done with it
+            if (primaryWatcher != null)
+                primaryWatcher.cancel(true);
+            if (hedgeWatcher != null)
+                hedgeWatcher.cancel(true);
+            if (requestExecutor == null)
+                RequestExecutor.finish(watchers);
+        }
+        primary.cancel(true);
+        hedge.cancel(true);
+        return null;
+    }
+
+    /**
+     * @return a task that waits for the given request and returns it if it has been successful
+     */
+    private static Callable<Future<HTTPResponse>> watch(final Future<HTTPResponse> future, final long deadline) {
+        return new Callable<Future<HTTPResponse>>() {
+            @Override
+            public Future<HTTPResponse> call() throws Exception {
+                final HTTPResponse resp = future.get(Math.max(0, deadline - now()), TimeUnit.MILLISECONDS);
+                if (!isSuccessful(resp))
+                    throw new IllegalStateException("error while executing an instagram request : " +
+                                                    resp.getResponseCode());
+                return future;
+            }
+        };
+    }
+
+    private static HTTPResponse getDone(final Future<HTTPResponse> future) {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException|ExecutionException e)
+        {
+            return null; // cannot happen - the future has already completed successfully
+        }
+    }
+
+    private static boolean isSuccessful(final HTTPResponse resp) {
+        return resp != null && resp.getResponseCode() == HttpServletResponse.SC_OK;
+    }
+
+    private static long now() {
+        return System.currentTimeMillis();
+    }
+
+    private static final Logger log = Logger.getLogger(HedgedRequestExecutor.class.getName());
+    private final Map<Defs.Instagram.RequestType, LatencyTracker> m_trackers =
+            new EnumMap<>(Defs.Instagram.RequestType.class);
+    private final Map<Defs.Instagram.RequestType, HedgingStats> m_stats =
+            new EnumMap<>(Defs.Instagram.RequestType.class);
+}
@@ -0,0 +1,75 @@
+package rest.o.gram.hedging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class HedgingStats {
+
+    void onRequest() {
+        m_requests.incrementAndGet();
+    }
+
+    void onHedge() {
+        m_hedges.incrementAndGet();
+    }
+
+    void onPrimaryWin() {
+        m_primaryWins.incrementAndGet();
+    }
+
+    void onHedgeWin() {
+        m_hedgeWins.incrementAndGet();
+    }
+
+    void onFailure() {
+        m_failures.incrementAndGet();
+    }
+
+    public long getRequests() {
+        return m_requests.get();
+    }
+
+    public long getHedges() {
+        return m_hedges.get();
+    }
+
+    public long getPrimaryWins() {
+        return m_primaryWins.get();
+    }
+
+    public long getHedgeWins() {
+        return m_hedgeWins.get();
+    }
+
+    public long getFailures() {
+        return m_failures.get();
+    }
+
+    /**
+     * @return the fraction of requests for which a hedge was sent
+     */
+    public double getHedgeRate() {
+        final long requests = getRequests();
+        return requests == 0 ? 0 : (double)getHedges() / requests;
+    }
+
+    /**
+     * @return the fraction of sent hedges that returned before the primary request
+     */
+    public double getHedgeWinRate() {
+        final long hedges = getHedges();
+        return hedges == 0 ? 0 : (double)getHedgeWins() / hedges;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requests: %d, hedges: %d (%.3f), hedge wins: %d (%.3f), failures: %d",
+                             getRequests(), getHedges(), getHedgeRate(),
+                             getHedgeWins(), getHedgeWinRate(), getFailures());
+    }
+
+    private final AtomicLong m_requests = new AtomicLong();
+    private final AtomicLong m_hedges = new AtomicLong();
+    private final AtomicLong m_primaryWins = new AtomicLong();
+    private final AtomicLong m_hedgeWins = new AtomicLong();
+    private final AtomicLong m_failures = new AtomicLong();
+}
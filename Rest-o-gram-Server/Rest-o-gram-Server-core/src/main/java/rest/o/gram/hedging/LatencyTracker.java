@@ -0,0 +1,66 @@
+package rest.o.gram.hedging;
+
+import rest.o.gram.metrics.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the latency percentiles of recent requests in fixed size histograms - samples are recorded into
+ * the current histogram, which replaces the previous one once it holds capacity samples, so percentiles
+ * reflect the last capacity to 2*capacity samples.
+ */
+public final class LatencyTracker {
+
+    /**
+     * Creates a new {@link LatencyTracker}
+     * @param capacity the amount of recent samples to keep
+     * @param minSamples the amount of samples required before percentiles are reported
+     */
+    public LatencyTracker(final int capacity, final int minSamples) {
+        m_capacity = capacity;
+        m_minSamples = minSamples;
+    }
+
+    /**
+     * Records a latency sample
+     * @param latency the observed latency, in millis
+     */
+    public synchronized void record(final long latency) {
+        m_current.record(TimeUnit.MILLISECONDS.toNanos(latency));
+        if (++m_currentCount == m_capacity)
+        {
+            m_previous = m_current;
+            m_previousCount = m_currentCount;
+            m_current = new LatencyHistogram();
+            m_currentCount = 0;
+        }
+        m_snapshot = null;
+    }
+
+    /**
+     * Gets the given percentile of the recent samples
+     * @param percentile percentile to compute, in the range (0, 1]
+     * @param defaultValue value to return while there are not enough samples
+     * @return the computed percentile (rounded up to the histogram's precision) or the default value, in millis
+     */
+    public synchronized long getPercentile(final double percentile, final long defaultValue) {
+        if (m_previousCount + m_currentCount < m_minSamples)
+            return defaultValue;
+
+        if (m_snapshot == null)
+            m_snapshot = m_previous != null ?
+                    m_previous.getSnapshot().merge(m_current.getSnapshot()) :
+                    m_current.getSnapshot();
+        final long micros = m_snapshot.getQuantile(percentile);
+        return (micros + MICROS_PER_MILLI - 1) / MICROS_PER_MILLI;
+    }
+
+    private static final long MICROS_PER_MILLI = TimeUnit.MILLISECONDS.toMicros(1);
+    private final int m_capacity;
+    private final int m_minSamples;
+    private LatencyHistogram m_current = new LatencyHistogram();
+    private LatencyHistogram m_previous;
+    private int m_currentCount;
+    private int m_previousCount;
+    private LatencyHistogram.Snapshot m_snapshot; // of the recent samples, null when samples were recorded since
+}
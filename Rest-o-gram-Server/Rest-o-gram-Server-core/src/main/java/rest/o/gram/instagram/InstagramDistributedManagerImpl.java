@@ -1,6 +1,5 @@
 package rest.o.gram.instagram;
 
-import org.jinstagram.entity.locations.LocationSearchFeed;
 import rest.o.gram.Defs;
 import rest.o.gram.InstagramAccessManager;
 import rest.o.gram.entities.RestogramPhoto;
@@ -16,30 +15,13 @@ import java.util.logging.Logger;
  */
 public class InstagramDistributedManagerImpl extends InstagramManagerBaseImpl {
 
+    public InstagramDistributedManagerImpl(final VenueLocationsCache locationsCache) {
+        m_locationsCache = locationsCache;
+    }
+
     @Override
     public long searchFoursquareVenue(final String foursquareID) {
-        log.info(String.format("instagram request for getting location %s started", foursquareID));
-        final InstagramAccessManager.PrepareRequest prepareRequest =
-                new InstagramAccessManager.PrepareRequest() {
-                    @Override
-                    public byte[] getPayload() {
-                        return foursquareID.getBytes();
-                    }
-                };
-        final LocationSearchFeed locationSearchFeed =
-                InstagramAccessManager.parallelFrontendInstagramRequest(Defs.Instagram.RequestType.GetLocation,
-                        prepareRequest, LocationSearchFeed.class);
-        if (InstagramUtils.isNullOrEmpty(locationSearchFeed)) {
-            log.severe(String.format("foursquare venue: %s not found", foursquareID));
-            return -1;
-        }
-
-        final int locationsNum = locationSearchFeed.getLocationList().size();
-        if (locationsNum > 1)
-            log.warning(String.format("got %d instagram locations", locationsNum));
-
-        log.info("got result from instagram - location-id: " + locationSearchFeed.getLocationList().get(0).getId());
-        return locationSearchFeed.getLocationList().get(0).getId(); // TODO: what if we get multiple locations?
+        return m_locationsCache.get(foursquareID);
     }
 
     @Override
@@ -82,4 +64,5 @@ public class InstagramDistributedManagerImpl extends InstagramManagerBaseImpl {
 
     private static final Logger log =
             Logger.getLogger(InstagramDistributedManagerImpl.class.getName());
+    private final VenueLocationsCache m_locationsCache;
 }
\ No newline at end of file
@@ -24,12 +24,13 @@ public interface InstagramManager {
     RestogramPhotos getRecentMedia(long locationID);
 
     /**
-     * Gets recent media from Instagram according to the given token
-     * @param token Instagram pagiantion token that indicates the request offset
+     * Gets a following page of recent media from Instagram according to the given location ID
+     * @param locationID Instagram location ID to get recent media for
+     * @param maxId Instagram max id that indicates the request offset
      * @param venueId foursquare id of the origin venue for the requested photos
      * @return Recent media as Restogram photos (including token for later continuations)
      */
-    RestogramPhotos getRecentMedia(String token, String venueId);
+    RestogramPhotos getRecentMedia(long locationID, String maxId, String venueId);
 
     /**
      * Searches Instagram for the given photo
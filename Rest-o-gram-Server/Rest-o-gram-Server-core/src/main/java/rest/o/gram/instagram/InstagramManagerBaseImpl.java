@@ -1,15 +1,20 @@
 package rest.o.gram.instagram;
 
-import com.google.gson.Gson;
 import org.jinstagram.Instagram;
+import org.jinstagram.InstagramResponse;
 import org.jinstagram.entity.common.Pagination;
+import org.jinstagram.entity.users.feed.MediaFeed;
 import org.jinstagram.exceptions.InstagramException;
+import org.jinstagram.exceptions.InstagramRateLimitException;
 import rest.o.gram.ApisConverters;
+import rest.o.gram.credentials.Credentials;
+import rest.o.gram.credentials.GovernedCredentialsFactory;
 import rest.o.gram.credentials.ICredentialsFactory;
-import rest.o.gram.credentials.RandomCredentialsFactory;
 import rest.o.gram.service.InstagramServices.Entities.RestogramPhotos;
 import rest.o.gram.utils.InstagramUtils;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.util.logging.Logger;
 
 /**
@@ -22,7 +27,7 @@ public abstract class InstagramManagerBaseImpl implements InstagramManager {
     public InstagramManagerBaseImpl() {
         try {
             // TODO: when instagram login is implemented - prefer user credentials whenever possible
-            m_credentialsFactory = new RandomCredentialsFactory();
+            m_credentialsFactory = new GovernedCredentialsFactory();
         } catch (Exception e) {
             log.severe(String.format("an error occurred while initializing instagram manager, error: %s",
                     e.getMessage()));
@@ -30,19 +35,23 @@ public abstract class InstagramManagerBaseImpl implements InstagramManager {
     }
 
     @Override
-    public RestogramPhotos getRecentMedia(final String token, final String venueId) {
-        final Pagination pagination = new Gson().fromJson(token, Pagination.class);
+    public RestogramPhotos getRecentMedia(final long locationID, final String maxId, final String venueId) {
+        final Pagination pagination = createPagination(locationID, maxId);
+        final InstagramRequest<MediaFeed> request = new InstagramRequest<MediaFeed>() {
+            @Override
+            public MediaFeed execute(final Instagram instagram) throws InstagramException {
+                return instagram.getRecentMediaNextPage(pagination);
+            }
+        };
         RestogramPhotos photos = null;
 
         try {
-            final Instagram instagram = getInstagramCredentials();
-            photos = ApisConverters.convertToRestogramPhotos(instagram.getRecentMediaNextPage(pagination), venueId);
+            photos = ApisConverters.convertToRestogramPhotos(executeInstagramRequest(request), venueId);
         } catch (InstagramException e) {
             log.warning(String.format("first media search has failed, retry, error: %s", e.getMessage()));
 
             try {
-                final Instagram instagram = getInstagramCredentials();
-                photos = ApisConverters.convertToRestogramPhotos(instagram.getRecentMediaNextPage(pagination), venueId);
+                photos = ApisConverters.convertToRestogramPhotos(executeInstagramRequest(request), venueId);
             } catch (InstagramException e2) {
                 log.severe(String.format("second media search has failed, error: %s", e2.getMessage()));
                 return null;
@@ -51,10 +60,50 @@ public abstract class InstagramManagerBaseImpl implements InstagramManager {
         return photos;
     }
 
-    protected Instagram getInstagramCredentials() {
-        return InstagramUtils.createInstagramAPI(m_credentialsFactory, log);
+    private static Pagination createPagination(final long locationID, final String maxId) {
+        // the same request as instagram's next url, without the credentials of whoever got the previous page
+        final Pagination pagination = new Pagination();
+        try {
+            pagination.setNextUrl(String.format(RECENT_MEDIA_PAGE_URL, locationID, URLEncoder.encode(maxId, "UTF-8")));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e); // UTF-8 is always supported
+        }
+        pagination.setNextMaxId(maxId);
+        return pagination;
+    }
+
+    /**
+     * A single call to the instagram API
+     */
+    protected interface InstagramRequest<T extends InstagramResponse> {
+        T execute(Instagram instagram) throws InstagramException;
+    }
+
+    /**
+     * Executes the given request with the credentials that have the most remaining quota,
+     * and reports the rate-limit status instagram returned for them
+     * @param request the request to execute
+     * @return the instagram response
+     * @throws InstagramException thrown when the request fails or no credentials are available
+     */
+    protected <T extends InstagramResponse> T executeInstagramRequest(final InstagramRequest<T> request)
+            throws InstagramException {
+        final Credentials credentials = m_credentialsFactory.createInstagramCredentials();
+        final Instagram instagram = InstagramUtils.createInstagramAPI(credentials, log);
+        if (instagram == null)
+            throw new InstagramRateLimitException("all instagram keys are exhausted");
+
+        try {
+            final T response = request.execute(instagram);
+            InstagramUtils.reportRateLimit(credentials, response);
+            return response;
+        } catch (InstagramException e) {
+            InstagramUtils.reportRateLimit(credentials, e);
+            throw e;
+        }
     }
 
     private static final Logger log = Logger.getLogger(InstagramManagerBaseImpl.class.getName());
+    private static final String RECENT_MEDIA_PAGE_URL = "/locations/%d/media/recent/?max_id=%s";
     protected ICredentialsFactory m_credentialsFactory;
-}
\ No newline at end of file
+}
@@ -2,6 +2,8 @@ package rest.o.gram.instagram;
 
 import org.jinstagram.Instagram;
 import org.jinstagram.entity.locations.LocationSearchFeed;
+import org.jinstagram.entity.media.MediaInfoFeed;
+import org.jinstagram.entity.users.feed.MediaFeed;
 import org.jinstagram.exceptions.InstagramException;
 import rest.o.gram.ApisConverters;
 import rest.o.gram.entities.RestogramPhoto;
@@ -19,16 +21,20 @@ public class InstagramManagerImpl extends InstagramManagerBaseImpl {
     @Override
     public long searchFoursquareVenue(final String foursquareID) {
         log.info(String.format("searchFoursquareVenue : %s", foursquareID));
+        final InstagramRequest<LocationSearchFeed> request = new InstagramRequest<LocationSearchFeed>() {
+            @Override
+            public LocationSearchFeed execute(final Instagram instagram) throws InstagramException {
+                return instagram.searchFoursquareVenue(foursquareID);
+            }
+        };
         LocationSearchFeed locationSearchFeed = null;
         try {
-            final Instagram instagram = getInstagramCredentials();
-            locationSearchFeed = instagram.searchFoursquareVenue(foursquareID);
+            locationSearchFeed = executeInstagramRequest(request);
         } catch (InstagramException e) {
             log.warning(String.format("first foursquare location search has failed, retry, error: %s", e.getMessage()));
 
-            final Instagram instagram = getInstagramCredentials();
             try {
-                locationSearchFeed = instagram.searchFoursquareVenue(foursquareID);
+                locationSearchFeed = executeInstagramRequest(request);
             } catch (InstagramException e2) {
                 log.severe(String.format("second foursquare location search has failed, error: %s", e2.getMessage()));
                 return -1;
@@ -47,17 +53,21 @@ public class InstagramManagerImpl extends InstagramManagerBaseImpl {
     @Override
     public RestogramPhotos getRecentMedia(final long locationID) {
         log.info(String.format("getRecentMediaByLocation : %d", locationID));
+        final InstagramRequest<MediaFeed> request = new InstagramRequest<MediaFeed>() {
+            @Override
+            public MediaFeed execute(final Instagram instagram) throws InstagramException {
+                return instagram.getRecentMediaByLocation(locationID);
+            }
+        };
 
         RestogramPhotos photos = null;
         try {
-            final Instagram instagram = getInstagramCredentials();
-            photos = ApisConverters.convertToRestogramPhotos(instagram.getRecentMediaByLocation(locationID));
+            photos = ApisConverters.convertToRestogramPhotos(executeInstagramRequest(request));
         } catch (InstagramException e) {
             log.warning(String.format("first media search has failed, retry, error: %s", e.getMessage()));
 
-            final Instagram instagram = getInstagramCredentials();
             try {
-                photos = ApisConverters.convertToRestogramPhotos(instagram.getRecentMediaByLocation(locationID));
+                photos = ApisConverters.convertToRestogramPhotos(executeInstagramRequest(request));
             } catch (InstagramException e2) {
                 log.severe(String.format("second media search has failed, retry, error: %s", e.getMessage()));
                 return null;
@@ -69,17 +79,21 @@ public class InstagramManagerImpl extends InstagramManagerBaseImpl {
     @Override
     public RestogramPhoto getPhoto(final String id) {
         log.info(String.format("getMediaInfo : %s", id));
+        final InstagramRequest<MediaInfoFeed> request = new InstagramRequest<MediaInfoFeed>() {
+            @Override
+            public MediaInfoFeed execute(final Instagram instagram) throws InstagramException {
+                return instagram.getMediaInfo(id);
+            }
+        };
 
         RestogramPhoto photo = null;
         try {
-            final Instagram instagram = getInstagramCredentials();
-            photo = ApisConverters.convertToRestogramPhoto(instagram.getMediaInfo(id));
+            photo = ApisConverters.convertToRestogramPhoto(executeInstagramRequest(request));
         } catch (InstagramException e) {
             log.warning(String.format("first photo retrieval has failed, retry, error: %s", e.getMessage()));
 
-            final Instagram instagram = getInstagramCredentials();
             try {
-                photo = ApisConverters.convertToRestogramPhoto(instagram.getMediaInfo(id));
+                photo = ApisConverters.convertToRestogramPhoto(executeInstagramRequest(request));
             } catch (InstagramException e1) {
                 log.severe(String.format("second photo retrieval has failed, retry, error: %s", e.getMessage()));
                 return null;
@@ -90,4 +104,4 @@ public class InstagramManagerImpl extends InstagramManagerBaseImpl {
     }
 
     private static final Logger log = Logger.getLogger(InstagramManagerImpl.class.getName());
-}
\ No newline at end of file
+}
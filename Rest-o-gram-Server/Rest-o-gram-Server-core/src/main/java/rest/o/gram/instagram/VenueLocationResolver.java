@@ -0,0 +1,47 @@
+package rest.o.gram.instagram;
+
+import org.jinstagram.entity.locations.LocationSearchFeed;
+import rest.o.gram.Defs;
+import rest.o.gram.InstagramAccessManager;
+import rest.o.gram.utils.InstagramUtils;
+
+import java.util.logging.Logger;
+
+/**
+ * Resolves the instagram locations of foursquare venues through the instagram helpers
+ */
+public final class VenueLocationResolver implements VenueLocationsCache.Resolver {
+
+    @Override
+    public Long resolve(final String foursquareID) {
+        log.info(String.format("instagram request for getting location %s started", foursquareID));
+        final InstagramAccessManager.PrepareRequest prepareRequest =
+                new InstagramAccessManager.PrepareRequest() {
+                    @Override
+                    public byte[] getPayload() {
+                        return foursquareID.getBytes();
+                    }
+                };
+        final LocationSearchFeed locationSearchFeed =
+                InstagramAccessManager.parallelFrontendInstagramRequest(Defs.Instagram.RequestType.GetLocation,
+                        prepareRequest, LocationSearchFeed.class);
+        if (locationSearchFeed == null) {
+            log.severe(String.format("search for foursquare venue: %s has failed", foursquareID));
+            return null;
+        }
+        if (InstagramUtils.isNullOrEmpty(locationSearchFeed)) {
+            log.severe(String.format("foursquare venue: %s not found", foursquareID));
+            return -1L;
+        }
+
+        final int locationsNum = locationSearchFeed.getLocationList().size();
+        if (locationsNum > 1)
+            log.warning(String.format("got %d instagram locations", locationsNum));
+
+        log.info("got result from instagram - location-id: " + locationSearchFeed.getLocationList().get(0).getId());
+        return locationSearchFeed.getLocationList().get(0).getId(); // TODO: what if we get multiple locations?
+    }
+
+    private static final Logger log =
+            Logger.getLogger(VenueLocationResolver.class.getName());
+}
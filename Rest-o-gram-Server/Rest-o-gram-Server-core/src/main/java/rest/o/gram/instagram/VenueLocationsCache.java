@@ -0,0 +1,218 @@
+package rest.o.gram.instagram;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.memcache.ErrorHandlers;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.leanengine.server.LeanException;
+import com.leanengine.server.appengine.DatastoreUtils;
+import rest.o.gram.Defs;
+import rest.o.gram.entities.Kinds;
+import rest.o.gram.entities.Props;
+import rest.o.gram.tasks.TasksManager;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent mapping of foursquare venues to instagram locations - an in-instance LRU
+ * in front of memcache in front of the datastore. Venues with no location are cached as well,
+ * for a shorter period. Old mappings are still served while a refresh task re-resolves them.
+ */
+public final class VenueLocationsCache {
+
+    /**
+     * Resolves the instagram location of a venue on a cache miss
+     */
+    public interface Resolver {
+        /**
+         * @return the instagram location id, -1 if the venue has no location or null if the search has failed
+         */
+        Long resolve(String foursquareID);
+    }
+
+    /**
+     * The name of the cache in refresh tasks
+     */
+    public static final String NAME = "venue-location";
+
+    public VenueLocationsCache(final Resolver resolver, final TasksManager tasksManager) {
+        m_resolver = resolver;
+        m_tasksManager = tasksManager;
+    }
+
+    /**
+     * @return the instagram location id of the given venue or -1 if it has none (or cannot be resolved)
+     */
+    public long get(final String foursquareID) {
+        final String key = KEY_PREFIX + foursquareID;
+        VenueLocation location = getLocal(key);
+        if (location == null)
+        {
+            location = getRemote(key);
+            if (location == null)
+                location = getPersisted(key, foursquareID);
+        }
+
+        if (location != null)
+        {
+            final long age = System.currentTimeMillis() - location.updated;
+            if (location.locationId == -1)
+            {
+                if (age < Defs.Instagram.LOCATIONS_NEGATIVE_PERIOD)
+                    return -1;
+            }
+            else
+            {
+                if (age >= Defs.Instagram.LOCATIONS_REFRESH_PERIOD)
+                    revalidate(location, foursquareID);
+                return location.locationId;
+            }
+        }
+
+        final VenueLocation resolved = resolve(key, foursquareID);
+        return resolved == null ? -1 : resolved.locationId;
+    }
+
+    /**
+     * Re-resolves the given mapping unless it has already been refreshed, called by the refresh task
+     * @return true if the mapping is fresh, false if resolving it has failed
+     */
+    public boolean refresh(final String foursquareID) {
+        final String key = KEY_PREFIX + foursquareID;
+        VenueLocation location = getRemote(key);
+        if (location == null)
+            location = getPersisted(key, foursquareID);
+        if (location != null && System.currentTimeMillis() - location.updated < Defs.Instagram.LOCATIONS_REFRESH_PERIOD)
+            return true;
+        return resolve(key, foursquareID) != null;
+    }
+
+    private VenueLocation resolve(final String key, final String foursquareID) {
+        final Long locationId = m_resolver.resolve(foursquareID);
+        if (locationId == null)
+            return null; // failures are not cached
+
+        final VenueLocation location = new VenueLocation(locationId, System.currentTimeMillis());
+        putLocal(key, location);
+        getMemcacheService().put(key, location);
+
+        final Map<String, DatastoreUtils.PropertyDescription> props = new HashMap<>();
+        props.put(Props.VenueLocation.LOCATION_ID, new DatastoreUtils.PropertyDescription(location.locationId, false));
+        props.put(Props.VenueLocation.UPDATED, new DatastoreUtils.PropertyDescription(location.updated, false));
+        try
+        {
+            DatastoreUtils.putPublicEntity(Kinds.VENUE_LOCATION, foursquareID, props);
+        } catch (LeanException e)
+        {
+            log.warning("cannot save venue location. code:" + e.getErrorCode());
+        }
+        return location;
+    }
+
+    /**
+     * Enqueues a refresh of the given mapping - once per mapping in this instance, and once per mapping
+     * across instances as the task is named after the mapping's update time
+     */
+    private void revalidate(final VenueLocation location, final String foursquareID) {
+        if (location.isRefreshEnqueued)
+            return;
+        location.isRefreshEnqueued = true;
+
+        final Map<String, String> params = new HashMap<>();
+        params.put(VENUE_PARAM, foursquareID);
+        final String name = String.format("%s-%s-%d", NAME, foursquareID, location.updated);
+        if (!m_tasksManager.enqueueRefreshTask(name, NAME, params))
+            location.isRefreshEnqueued = false; // retried by a later request
+    }
+
+    private VenueLocation getLocal(final String key) {
+        synchronized (m_localCache)
+        {
+            return m_localCache.get(key);
+        }
+    }
+
+    private void putLocal(final String key, final VenueLocation location) {
+        synchronized (m_localCache)
+        {
+            m_localCache.put(key, location);
+        }
+    }
+
+    private VenueLocation getRemote(final String key) {
+        final VenueLocation location = (VenueLocation)getMemcacheService().get(key);
+        if (location != null)
+            putLocal(key, location);
+        return location;
+    }
+
+    private VenueLocation getPersisted(final String key, final String foursquareID) {
+        final Entity entity;
+        try
+        {
+            entity = DatastoreUtils.getPublicEntity(Kinds.VENUE_LOCATION, foursquareID);
+        } catch (LeanException e)
+        {
+            if (e.getErrorCode() != LeanException.Error.EntityNotFound.errorCode)
+                log.warning("cannot get venue location. code:" + e.getErrorCode());
+            return null;
+        }
+
+        final Object locationId = entity.getProperty(Props.VenueLocation.LOCATION_ID);
+        final Object updated = entity.getProperty(Props.VenueLocation.UPDATED);
+        if (!(locationId instanceof Long) || !(updated instanceof Long))
+        {
+            log.warning("ignoring incomplete venue location: " + foursquareID);
+            return null; // resolved again
+        }
+
+        final VenueLocation location = new VenueLocation((Long)locationId, (Long)updated);
+        putLocal(key, location);
+        getMemcacheService().put(key, location);
+        return location;
+    }
+
+    private static MemcacheService createMemcacheService() {
+        final MemcacheService cache = MemcacheServiceFactory.getMemcacheService();
+        cache.setErrorHandler(ErrorHandlers.getConsistentLogAndContinue(Level.INFO));
+        return cache;
+    }
+
+    private MemcacheService getMemcacheService() {
+        return m_memcacheService;
+    }
+
+    private static final class VenueLocation implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        VenueLocation(final long locationId, final long updated) {
+            this.locationId = locationId;
+            this.updated = updated;
+        }
+
+        final long locationId;
+        final long updated;
+        transient volatile boolean isRefreshEnqueued; // by this instance
+    }
+
+    // refresh task params
+    public static final String VENUE_PARAM = "venue";
+
+    private static final Logger log = Logger.getLogger(VenueLocationsCache.class.getName());
+    private static final String KEY_PREFIX = "venue_location:";
+    private final Resolver m_resolver;
+    private final TasksManager m_tasksManager;
+    private final MemcacheService m_memcacheService = createMemcacheService();
+    private final Map<String, VenueLocation> m_localCache =
+            new LinkedHashMap<String, VenueLocation>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, VenueLocation> eldest) {
+                    return size() > Defs.Instagram.LOCATIONS_CACHE_LOCAL_SIZE;
+                }
+            };
+}
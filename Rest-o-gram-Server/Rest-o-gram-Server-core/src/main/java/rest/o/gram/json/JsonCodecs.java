@@ -0,0 +1,63 @@
+package rest.o.gram.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import org.jinstagram.entity.common.Pagination;
+import rest.o.gram.entities.RestogramPhoto;
+import rest.o.gram.service.InstagramServices.Entities.RestogramPhotos;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * The shared JSON codec of the instagram transport path (helpers).
+ * The hot entities are handled by hand-written type adapters instead of reflection.
+ */
+public final class JsonCodecs {
+
+    /**
+     * @return the shared gson instance, thread safe
+     */
+    public static Gson getGson() {
+        return gson;
+    }
+
+    /**
+     * Parses the given UTF-8 JSON content, without building an intermediate string
+     * @return the parsed value or null if the content is empty
+     * @throws JsonParseException thrown when the content is not valid JSON of the given type
+     */
+    public static <T> T fromJson(final byte[] content, final Class<T> type) {
+        if (content == null || content.length == 0)
+            return null;
+
+        final JsonReader reader =
+                new JsonReader(new InputStreamReader(new ByteArrayInputStream(content), UTF8));
+        try
+        {
+            return gson.fromJson(reader, type);
+        } finally
+        {
+            try
+            {
+                reader.close();
+            } catch (IOException e)
+            {
+                // in-memory stream
+            }
+        }
+    }
+
+    private JsonCodecs() {}
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(RestogramPhoto.class, new RestogramPhotoAdapter())
+            .registerTypeAdapter(RestogramPhotos.class, new RestogramPhotosAdapter())
+            .registerTypeAdapter(Pagination.class, new PaginationAdapter())
+            .create();
+}
@@ -0,0 +1,86 @@
+package rest.o.gram.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.jinstagram.entity.common.Pagination;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes instagram paginations in the same format as the reflective gson adapter,
+ * so tokens already handed to clients remain valid.
+ */
+final class PaginationAdapter extends TypeAdapter<Pagination> {
+
+    @Override
+    public void write(final JsonWriter out, final Pagination pagination) throws IOException {
+        if (pagination == null)
+        {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        writeString(out, "deprecation_warning", pagination.getDepreciationWarning());
+        writeString(out, "min_tag_id", pagination.getMinTagId());
+        writeString(out, "next_max_id", pagination.getNextMaxId());
+        writeString(out, "next_max_tag_id", pagination.getNextMaxTagId());
+        writeString(out, "next_min_id", pagination.getNextMinId());
+        writeString(out, "next_url", pagination.getNextUrl());
+        out.endObject();
+    }
+
+    @Override
+    public Pagination read(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL)
+        {
+            in.nextNull();
+            return null;
+        }
+
+        final Pagination pagination = new Pagination();
+        in.beginObject();
+        while (in.hasNext())
+        {
+            final String name = in.nextName();
+            if (in.peek() == JsonToken.NULL)
+            {
+                in.nextNull();
+                continue;
+            }
+
+            switch (name)
+            {
+                case "deprecation_warning":
+                    pagination.setDepreciationWarning(in.nextString());
+                    break;
+                case "min_tag_id":
+                    pagination.setMinTagId(in.nextString());
+                    break;
+                case "next_max_id":
+                    pagination.setNextMaxId(in.nextString());
+                    break;
+                case "next_max_tag_id":
+                    pagination.setNextMaxTagId(in.nextString());
+                    break;
+                case "next_min_id":
+                    pagination.setNextMinId(in.nextString());
+                    break;
+                case "next_url":
+                    pagination.setNextUrl(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return pagination;
+    }
+
+    private static void writeString(final JsonWriter out, final String name, final String value) throws IOException {
+        if (value != null)
+            out.name(name).value(value);
+    }
+}
@@ -0,0 +1,180 @@
+package rest.o.gram.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import rest.o.gram.entities.RestogramPhoto;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes photos in the same format as the reflective gson adapter.
+ * The unused account id is not written.
+ */
+final class RestogramPhotoAdapter extends TypeAdapter<RestogramPhoto> {
+
+    @Override
+    public void write(final JsonWriter out, final RestogramPhoto photo) throws IOException {
+        if (photo == null)
+        {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        writeString(out, "caption", photo.getCaption());
+        final byte[] encodedCaption = photo.getEncodedCaption();
+        if (encodedCaption != null)
+        {
+            out.name("encoded_caption").beginArray();
+            for (final byte currByte : encodedCaption)
+                out.value(currByte);
+            out.endArray();
+        }
+        writeString(out, "created_time", photo.getCreatedTime());
+        writeString(out, "instagram_id", photo.getInstagram_id());
+        writeString(out, "filter", photo.getImageFilter());
+        writeString(out, "thumbnail", photo.getThumbnail());
+        writeString(out, "standard_resolution", photo.getStandardResolution());
+        out.name("likes").value(photo.getLikes());
+        writeString(out, "link", photo.getLink());
+        writeString(out, "type", photo.getType());
+        writeString(out, "user", photo.getUser());
+        writeString(out, "originVenueId", photo.getOriginVenueId());
+        out.name("yummies").value(photo.getYummies());
+        out.name("is_favorite").value(photo.is_favorite());
+        out.name("is_approved").value(photo.isApproved());
+        final String[] tags = photo.getTags();
+        if (tags != null)
+        {
+            out.name("tags").beginArray();
+            for (final String currTag : tags)
+                out.value(currTag);
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public RestogramPhoto read(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL)
+        {
+            in.nextNull();
+            return null;
+        }
+
+        final RestogramPhoto photo = new RestogramPhoto();
+        in.beginObject();
+        while (in.hasNext())
+        {
+            final String name = in.nextName();
+            if (in.peek() == JsonToken.NULL)
+            {
+                in.nextNull();
+                continue;
+            }
+
+            switch (name)
+            {
+                case "caption":
+                    photo.setCaption(in.nextString());
+                    break;
+                case "encoded_caption":
+                    photo.setEncodedCaption(readBytes(in));
+                    break;
+                case "created_time":
+                    photo.setCreatedTime(in.nextString());
+                    break;
+                case "instagram_id":
+                    photo.setInstagram_id(in.nextString());
+                    break;
+                case "filter":
+                    photo.setImageFilter(in.nextString());
+                    break;
+                case "thumbnail":
+                    photo.setThumbnail(in.nextString());
+                    break;
+                case "standard_resolution":
+                    photo.setStandardResolution(in.nextString());
+                    break;
+                case "likes":
+                    photo.setLikes(in.nextLong());
+                    break;
+                case "link":
+                    photo.setLink(in.nextString());
+                    break;
+                case "type":
+                    photo.setType(in.nextString());
+                    break;
+                case "user":
+                    photo.setUser(in.nextString());
+                    break;
+                case "originVenueId":
+                    photo.setOriginVenueId(in.nextString());
+                    break;
+                case "yummies":
+                    photo.setYummies(in.nextLong());
+                    break;
+                case "is_favorite":
+                    photo.set_favorite(in.nextBoolean());
+                    break;
+                case "is_approved":
+                    photo.setApproved(in.nextBoolean());
+                    break;
+                case "tags":
+                    photo.setTags(readStrings(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return photo;
+    }
+
+    private static void writeString(final JsonWriter out, final String name, final String value) throws IOException {
+        if (value != null)
+            out.name(name).value(value);
+    }
+
+    private static byte[] readBytes(final JsonReader in) throws IOException {
+        byte[] bytes = new byte[64];
+        int count = 0;
+        in.beginArray();
+        while (in.hasNext())
+        {
+            if (count == bytes.length)
+            {
+                final byte[] grown = new byte[bytes.length * 2];
+                System.arraycopy(bytes, 0, grown, 0, count);
+                bytes = grown;
+            }
+            bytes[count++] = (byte)in.nextInt();
+        }
+        in.endArray();
+
+        final byte[] result = new byte[count];
+        System.arraycopy(bytes, 0, result, 0, count);
+        return result;
+    }
+
+    private static List<String> readStrings(final JsonReader in) throws IOException {
+        final List<String> strings = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext())
+        {
+            if (in.peek() == JsonToken.NULL)
+            {
+                in.nextNull();
+                strings.add(null);
+            }
+            else
+                strings.add(in.nextString());
+        }
+        in.endArray();
+        return strings;
+    }
+}
@@ -0,0 +1,82 @@
+package rest.o.gram.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import rest.o.gram.entities.RestogramPhoto;
+import rest.o.gram.service.InstagramServices.Entities.RestogramPhotos;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+final class RestogramPhotosAdapter extends TypeAdapter<RestogramPhotos> {
+
+    @Override
+    public void write(final JsonWriter out, final RestogramPhotos photos) throws IOException {
+        if (photos == null)
+        {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        if (photos.getPhotos() != null)
+        {
+            out.name("photos").beginArray();
+            for (final RestogramPhoto currPhoto : photos.getPhotos())
+                m_photoAdapter.write(out, currPhoto);
+            out.endArray();
+        }
+        if (photos.getPagination() != null)
+        {
+            out.name("pagination");
+            m_paginationAdapter.write(out, photos.getPagination());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public RestogramPhotos read(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL)
+        {
+            in.nextNull();
+            return null;
+        }
+
+        final RestogramPhotos photos = new RestogramPhotos();
+        in.beginObject();
+        while (in.hasNext())
+        {
+            final String name = in.nextName();
+            if (in.peek() == JsonToken.NULL)
+            {
+                in.nextNull();
+                continue;
+            }
+
+            switch (name)
+            {
+                case "photos":
+                    final List<RestogramPhoto> list = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext())
+                        list.add(m_photoAdapter.read(in));
+                    in.endArray();
+                    photos.setPhotos(list);
+                    break;
+                case "pagination":
+                    photos.setPagination(m_paginationAdapter.read(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return photos;
+    }
+
+    private final RestogramPhotoAdapter m_photoAdapter = new RestogramPhotoAdapter();
+    private final PaginationAdapter m_paginationAdapter = new PaginationAdapter();
+}
@@ -0,0 +1,25 @@
+package rest.o.gram.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free, monotonic counter
+ */
+public final class Counter {
+
+    public void increment() {
+        m_value.incrementAndGet();
+    }
+
+    public void add(final long delta) {
+        m_value.addAndGet(delta);
+    }
+
+    public long get() {
+        return m_value.get();
+    }
+
+    Counter() {}
+
+    private final AtomicLong m_value = new AtomicLong();
+}
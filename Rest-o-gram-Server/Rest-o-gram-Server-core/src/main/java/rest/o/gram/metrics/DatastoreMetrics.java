@@ -0,0 +1,16 @@
+package rest.o.gram.metrics;
+
+import com.leanengine.server.appengine.DatastoreUtils;
+
+/**
+ * Records the data store calls made through the lean engine - latency and failures per operation
+ */
+public final class DatastoreMetrics implements DatastoreUtils.CallObserver {
+
+    @Override
+    public void onCall(final String operation, final long nanos, final boolean isFailed) {
+        Metrics.histogram("datastore." + operation).record(nanos);
+        if (isFailed)
+            Metrics.counter("datastore." + operation + ".failures").increment();
+    }
+}
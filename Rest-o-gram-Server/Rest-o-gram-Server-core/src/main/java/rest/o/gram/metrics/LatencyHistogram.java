@@ -0,0 +1,133 @@
+package rest.o.gram.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram with log-linear buckets (HDR style) - each power of two of microseconds
+ * is split into SUB_BUCKETS linear buckets, so percentiles are within 1/SUB_BUCKETS of the recorded value.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * An immutable view of a histogram
+     */
+    public static final class Snapshot {
+
+        Snapshot(final long[] counts, final long count, final long sum, final long max) {
+            m_counts = counts;
+            m_count = count;
+            m_sum = sum;
+            m_max = max;
+        }
+
+        public long getCount() {
+            return m_count;
+        }
+
+        /**
+         * @return the sum of all recorded latencies, in micros
+         */
+        public long getSum() {
+            return m_sum;
+        }
+
+        /**
+         * @return the maximal recorded latency, in micros
+         */
+        public long getMax() {
+            return m_max;
+        }
+
+        /**
+         * @param quantile between 0 and 1
+         * @return the upper bound of the given quantile, in micros. 0 if nothing was recorded
+         */
+        public long getQuantile(final double quantile) {
+            long total = 0;
+            for (final long currCount : m_counts)
+                total += currCount;
+            if (total == 0)
+                return 0;
+
+            final long rank = (long)Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < m_counts.length; ++i)
+            {
+                seen += m_counts[i];
+                if (seen >= rank && m_counts[i] != 0)
+                    // the last bucket also holds the latencies beyond it
+                    return i == BUCKETS - 1 ? m_max : Math.min(getUpperBound(i), m_max);
+            }
+            return m_max;
+        }
+
+        /**
+         * @return a snapshot of the latencies recorded by both snapshots' histograms
+         */
+        public Snapshot merge(final Snapshot other) {
+            final long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; ++i)
+                counts[i] = m_counts[i] + other.m_counts[i];
+            return new Snapshot(counts, m_count + other.m_count, m_sum + other.m_sum, Math.max(m_max, other.m_max));
+        }
+
+        private final long[] m_counts;
+        private final long m_count;
+        private final long m_sum;
+        private final long m_max;
+    }
+
+    public void record(final long nanos) {
+        final long micros = Math.max(0, nanos / 1000);
+        m_counts.incrementAndGet(getIndex(micros));
+        m_count.incrementAndGet();
+        m_sum.addAndGet(micros);
+        long max = m_max.get();
+        while (micros > max && !m_max.compareAndSet(max, micros))
+            max = m_max.get();
+    }
+
+    /**
+     * Records the time passed since the given System.nanoTime() value
+     */
+    public void recordSince(final long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public Snapshot getSnapshot() {
+        final long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; ++i)
+            counts[i] = m_counts.get(i);
+        return new Snapshot(counts, m_count.get(), m_sum.get(), m_max.get());
+    }
+
+    /**
+     * Creates a histogram outside of the registry - see {@link Metrics#histogram(String)} for shared histograms
+     */
+    public LatencyHistogram() {}
+
+    private static int getIndex(final long micros) {
+        if (micros < SUB_BUCKETS)
+            return (int)micros;
+        final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        final int subBucket = (int)(micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return Math.min((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket, BUCKETS - 1);
+    }
+
+    private static long getUpperBound(final int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (40 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS; // up to ~2^40 micros
+    private final AtomicLongArray m_counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong m_count = new AtomicLong();
+    private final AtomicLong m_sum = new AtomicLong();
+    private final AtomicLong m_max = new AtomicLong();
+}
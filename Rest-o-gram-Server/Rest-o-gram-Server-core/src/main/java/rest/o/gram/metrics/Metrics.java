@@ -0,0 +1,63 @@
+package rest.o.gram.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The metrics registry of the instance. Metrics are created on first use and live for the instance's lifetime,
+ * so callers may keep them in static fields.
+ */
+public final class Metrics {
+
+    public static Counter counter(final String name) {
+        Counter counter = counters.get(name);
+        if (counter == null)
+        {
+            final Counter created = new Counter();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null)
+                counter = created;
+        }
+        return counter;
+    }
+
+    public static LatencyHistogram histogram(final String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null)
+        {
+            final LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null)
+                histogram = created;
+        }
+        return histogram;
+    }
+
+    /**
+     * @return the counters' values by name, sorted
+     */
+    public static SortedMap<String, Long> getCounters() {
+        final SortedMap<String, Long> result = new TreeMap<>();
+        for (final Map.Entry<String, Counter> currEntry : counters.entrySet())
+            result.put(currEntry.getKey(), currEntry.getValue().get());
+        return result;
+    }
+
+    /**
+     * @return the histograms' snapshots by name, sorted
+     */
+    public static SortedMap<String, LatencyHistogram.Snapshot> getHistograms() {
+        final SortedMap<String, LatencyHistogram.Snapshot> result = new TreeMap<>();
+        for (final Map.Entry<String, LatencyHistogram> currEntry : histograms.entrySet())
+            result.put(currEntry.getKey(), currEntry.getValue().getSnapshot());
+        return result;
+    }
+
+    private Metrics() {}
+
+    private static final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+}
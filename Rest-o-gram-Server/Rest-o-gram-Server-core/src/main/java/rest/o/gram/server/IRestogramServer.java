@@ -2,7 +2,9 @@ package rest.o.gram.server;
 
 import rest.o.gram.data.DataManager;
 import rest.o.gram.foursquare.FoursquareManager;
+import rest.o.gram.foursquare.NearbyVenuesCache;
 import rest.o.gram.instagram.InstagramManager;
+import rest.o.gram.instagram.VenueLocationsCache;
 import rest.o.gram.tasks.TasksManager;
 
 /**
@@ -18,4 +20,8 @@ public interface IRestogramServer {
     FoursquareManager getFoursquareManager();
 
     InstagramManager getInstagramManager();
+
+    NearbyVenuesCache getNearbyVenuesCache();
+
+    VenueLocationsCache getVenueLocationsCache();
 }
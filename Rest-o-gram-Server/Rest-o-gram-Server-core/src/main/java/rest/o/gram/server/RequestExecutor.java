@@ -0,0 +1,89 @@
+package rest.o.gram.server;
+
+import com.google.appengine.api.ThreadManager;
+import rest.o.gram.tracing.Tracer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The executor of the current request - request threads cannot outlive their request, so concurrent work
+ * of a request shares one executor, started with the request and stopped when it ends.
+ * The executor is current in the thread which has started it and in the tasks it runs, so code deep in a request
+ * (e.g. the hedged instagram requests) reuses it instead of creating threads of its own.
+ * Tasks run under the trace span which was current when they were submitted.
+ * Threads are created on demand and never bounded - tasks may block on each other.
+ */
+public final class RequestExecutor {
+
+    /**
+     * Starts an executor for the current request and makes it current in this thread.
+     * Must be followed by {@link #finish(ExecutorService)}, which makes the previous executor (if any) current again
+     */
+    public static ExecutorService start() {
+        final ExecutorService executor = new BoundExecutor(current.get());
+        current.set(executor);
+        return executor;
+    }
+
+    /**
+     * Stops the given executor, dropping unfinished work, and restores the executor it has replaced in this thread
+     */
+    public static void finish(final ExecutorService executor) {
+        executor.shutdownNow();
+        if (current.get() != executor)
+            return;
+
+        final ExecutorService previous = ((BoundExecutor)executor).m_previous;
+        if (previous != null)
+            current.set(previous);
+        else
+            current.remove(); // request threads are pooled
+    }
+
+    /**
+     * @return the executor of the current request or null if none has been started
+     */
+    public static ExecutorService current() {
+        return current.get();
+    }
+
+    /**
+     * Makes itself current while running its tasks, as well as the submitter's span
+     */
+    private static final class BoundExecutor extends ThreadPoolExecutor {
+
+        BoundExecutor(final ExecutorService previous) {
+            super(0, Integer.MAX_VALUE, IDLE_TIMEOUT, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                  ThreadManager.currentRequestThreadFactory());
+            m_previous = previous;
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            final Runnable traced = Tracer.wrap(command);
+            super.execute(new Runnable() {
+                @Override
+                public void run() {
+                    current.set(BoundExecutor.this);
+                    try
+                    {
+                        traced.run();
+                    } finally
+                    {
+                        current.remove();
+                    }
+                }
+            });
+        }
+
+        private final ExecutorService m_previous;
+    }
+
+    private RequestExecutor() {}
+
+    private static final long IDLE_TIMEOUT = 60; // secs
+    private static final ThreadLocal<ExecutorService> current = new ThreadLocal<>();
+}
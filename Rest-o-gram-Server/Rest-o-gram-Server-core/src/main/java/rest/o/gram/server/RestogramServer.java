@@ -1,11 +1,17 @@
 package rest.o.gram.server;
 
+import com.leanengine.server.appengine.DatastoreUtils;
 import rest.o.gram.data.DataManager;
 import rest.o.gram.data.DataManagerImpl;
 import rest.o.gram.foursquare.FoursquareManager;
 import rest.o.gram.foursquare.FoursquareManagerImpl;
+import rest.o.gram.foursquare.NearbyVenuesCache;
+import rest.o.gram.foursquare.NearbyVenuesLoader;
 import rest.o.gram.instagram.InstagramDistributedManagerImpl;
 import rest.o.gram.instagram.InstagramManager;
+import rest.o.gram.instagram.VenueLocationResolver;
+import rest.o.gram.instagram.VenueLocationsCache;
+import rest.o.gram.metrics.DatastoreMetrics;
 import rest.o.gram.tasks.TasksManager;
 import rest.o.gram.tasks.TasksManagerImpl;
 
@@ -45,11 +51,27 @@ public final class RestogramServer implements IRestogramServer {
         return m_instagramManager;
     }
 
-    private RestogramServer () {}
+    @Override
+    public NearbyVenuesCache getNearbyVenuesCache() {
+        return m_nearbyVenuesCache;
+    }
+
+    @Override
+    public VenueLocationsCache getVenueLocationsCache() {
+        return m_venueLocationsCache;
+    }
+
+    private RestogramServer () {
+        DatastoreUtils.setCallObserver(new DatastoreMetrics());
+    }
 
     private final static IRestogramServer m_instance = new RestogramServer();
     private final DataManager m_dataManager = new DataManagerImpl();
     private final TasksManager m_tasksManager = new TasksManagerImpl();
     private final FoursquareManager m_foursquareManager = new FoursquareManagerImpl();
-    private final InstagramManager m_instagramManager = new InstagramDistributedManagerImpl();
+    private final VenueLocationsCache m_venueLocationsCache =
+            new VenueLocationsCache(new VenueLocationResolver(), m_tasksManager);
+    private final InstagramManager m_instagramManager = new InstagramDistributedManagerImpl(m_venueLocationsCache);
+    private final NearbyVenuesCache m_nearbyVenuesCache =
+            new NearbyVenuesCache(new NearbyVenuesLoader(m_foursquareManager, m_dataManager), m_tasksManager);
 }
\ No newline at end of file
@@ -0,0 +1,187 @@
+package rest.o.gram.service;
+
+import com.google.common.io.BaseEncoding;
+import com.leanengine.server.LeanEngineSettings;
+import rest.o.gram.Defs;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * A continuation token of venue photos - either a cache cursor or an instagram location page.
+ * Encoded as a compact binary (version, type, position, signature) in base64url. The signature
+ * also covers the venue id, so a token is valid only for the venue it was issued for.
+ */
+public final class ContinuationToken {
+
+    public static enum Type {
+        Cache(1),
+        Instagram(2);
+
+        Type(final int tag) {
+            this.tag = (byte)tag;
+        }
+
+        private final byte tag;
+    }
+
+    /**
+     * @param cursor web-safe datastore cursor
+     */
+    public static ContinuationToken forCache(final String cursor) {
+        return new ContinuationToken(Type.Cache, cursor, -1, null);
+    }
+
+    /**
+     * @param locationId instagram location id
+     * @param maxId instagram max id of the next page
+     */
+    public static ContinuationToken forInstagram(final long locationId, final String maxId) {
+        return new ContinuationToken(Type.Instagram, null, locationId, maxId);
+    }
+
+    /**
+     * Decodes the given token
+     * @param token an encoded token
+     * @param venueId the venue the token is used for
+     * @return the decoded token or null if the token is malformed, of another venue or of another version
+     */
+    public static ContinuationToken decode(final String token, final String venueId) {
+        if (token == null || token.isEmpty() || venueId == null)
+            return null;
+
+        final byte[] bytes;
+        try
+        {
+            bytes = base64.decode(token);
+        } catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+
+        final int payloadLength = bytes.length - Defs.Tokens.SIGNATURE_LENGTH;
+        if (payloadLength < 2 || bytes[0] != VERSION)
+            return null;
+        final byte[] signature = sign(bytes, payloadLength, venueId);
+        if (!MessageDigest.isEqual(signature, Arrays.copyOfRange(bytes, payloadLength, bytes.length)))
+            return null;
+
+        if (bytes[1] == Type.Cache.tag)
+            return forCache(base64.encode(bytes, 2, payloadLength - 2));
+
+        if (bytes[1] == Type.Instagram.tag)
+        {
+            // location id as a varint, followed by the max id
+            long locationId = 0;
+            int shift = 0;
+            int i = 2;
+            while (i < payloadLength && shift < 64)
+            {
+                final byte curr = bytes[i++];
+                locationId |= (long)(curr & 0x7f) << shift;
+                if ((curr & 0x80) == 0)
+                    return forInstagram(locationId, new String(bytes, i, payloadLength - i, UTF8));
+                shift += 7;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Encodes this token for the given venue
+     */
+    public String encode(final String venueId) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(VERSION);
+        out.write(m_type.tag);
+        if (m_type == Type.Cache)
+        {
+            final byte[] cursor = base64.decode(m_cursor);
+            out.write(cursor, 0, cursor.length);
+        }
+        else
+        {
+            long value = m_locationId;
+            while ((value & ~0x7fL) != 0)
+            {
+                out.write((int)((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int)value);
+            final byte[] maxId = m_maxId.getBytes(UTF8);
+            out.write(maxId, 0, maxId.length);
+        }
+
+        final byte[] payload = out.toByteArray();
+        final byte[] signature = sign(payload, payload.length, venueId);
+        out.write(signature, 0, signature.length);
+        return base64.encode(out.toByteArray());
+    }
+
+    public Type getType() {
+        return m_type;
+    }
+
+    /**
+     * @return the web-safe datastore cursor, of cache tokens
+     */
+    public String getCursor() {
+        return m_cursor;
+    }
+
+    /**
+     * @return the instagram location id, of instagram tokens
+     */
+    public long getLocationId() {
+        return m_locationId;
+    }
+
+    /**
+     * @return the instagram max id of the next page, of instagram tokens
+     */
+    public String getMaxId() {
+        return m_maxId;
+    }
+
+    private ContinuationToken(final Type type, final String cursor, final long locationId, final String maxId) {
+        m_type = type;
+        m_cursor = cursor;
+        m_locationId = locationId;
+        m_maxId = maxId;
+    }
+
+    private static byte[] sign(final byte[] payload, final int length, final String venueId) {
+        final Mac mac = macs.get();
+        mac.update(payload, 0, length);
+        return Arrays.copyOf(mac.doFinal(venueId.getBytes(UTF8)), Defs.Tokens.SIGNATURE_LENGTH);
+    }
+
+    private static final byte VERSION = 1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final BaseEncoding base64 = BaseEncoding.base64Url().omitPadding();
+    private static final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            try
+            {
+                final Mac mac = Mac.getInstance("HmacSHA256");
+                // the key is created once per application and kept in the datastore
+                final String key = LeanEngineSettings.getContinuationTokensKey();
+                mac.init(new SecretKeySpec(key.getBytes(UTF8), "HmacSHA256"));
+                return mac;
+            } catch (GeneralSecurityException e)
+            {
+                throw new IllegalStateException("cannot initialize tokens signature", e);
+            }
+        }
+    };
+    private final Type m_type;
+    private final String m_cursor;
+    private final long m_locationId;
+    private final String m_maxId;
+}
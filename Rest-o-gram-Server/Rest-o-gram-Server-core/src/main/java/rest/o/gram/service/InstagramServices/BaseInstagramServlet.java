@@ -1,8 +1,14 @@
 package rest.o.gram.service.InstagramServices;
 
 import org.jinstagram.Instagram;
+import org.jinstagram.InstagramResponse;
+import org.jinstagram.exceptions.InstagramException;
+import rest.o.gram.credentials.Credentials;
+import rest.o.gram.credentials.GovernedCredentialsFactory;
 import rest.o.gram.credentials.ICredentialsFactory;
-import rest.o.gram.credentials.RandomCredentialsFactory;
+import rest.o.gram.json.JsonCodecs;
+import rest.o.gram.tracing.Span;
+import rest.o.gram.tracing.Tracer;
 import rest.o.gram.utils.InstagramUtils;
 
 import javax.servlet.ServletException;
@@ -10,6 +16,7 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.logging.Logger;
 
 /**
@@ -21,7 +28,7 @@ public abstract class BaseInstagramServlet<T> extends HttpServlet {
     public BaseInstagramServlet() {
         try
         {
-            m_credentialsFactory = new RandomCredentialsFactory();
+            m_credentialsFactory = new GovernedCredentialsFactory();
         } catch (Exception e)
         {
             log.severe("an error occurred while initializing the service");
@@ -30,18 +37,76 @@ public abstract class BaseInstagramServlet<T> extends HttpServlet {
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        final Credentials credentials = m_credentialsFactory.createInstagramCredentials();
+        final Instagram instagram = InstagramUtils.createInstagramAPI(credentials, log);
+        if (instagram == null)
+        {
+            // fail fast, so the caller may try another helper
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "instagram quota is exhausted");
+            return;
+        }
+
+        request.setAttribute(CREDENTIALS_ATTRIBUTE, credentials);
+        final T result;
+        final Span instagramSpan = Tracer.startSpan("instagram-api");
         try
         {
-            final Instagram instagram = createInstagramAPI();
-            onRequestSucceded(response, executeInstagramRequest(request, instagram));
+            result = executeInstagramRequest(request, instagram);
+        } catch (InstagramException e)
+        {
+            instagramSpan.tag("error", e.getMessage());
+            InstagramUtils.reportRateLimit(credentials, e);
+            onRequestFailed(response, e);
+            return;
         } catch (IOException e)
         {
+            instagramSpan.tag("error", e.getMessage());
             onRequestFailed(response, e);
+            return;
+        } finally
+        {
+            instagramSpan.finish();
         }
+
+        final Span serializeSpan = Tracer.startSpan("serialize");
+        try
+        {
+            onRequestSucceded(response, result);
+        } catch (IOException e)
+        {
+            onRequestFailed(response, e);
+        } finally
+        {
+            serializeSpan.finish();
+        }
+    }
+
+    /**
+     * Reports the rate-limit status of an instagram response, should be called by
+     * implementations with the raw instagram response
+     * @param request the client request
+     * @param instagramResponse the instagram response
+     * @return the given instagram response
+     */
+    protected <R extends InstagramResponse> R reportRateLimit(final HttpServletRequest request,
+                                                              final R instagramResponse) {
+        final Credentials credentials = (Credentials)request.getAttribute(CREDENTIALS_ATTRIBUTE);
+        InstagramUtils.reportRateLimit(credentials, instagramResponse);
+        return instagramResponse;
     }
 
-    private Instagram createInstagramAPI() {
-        return InstagramUtils.createInstagramAPI(m_credentialsFactory, log);
+    /**
+     * Serializes the given result straight to the response
+     * @param response the response to write to
+     * @param result the result to serialize
+     * @throws IOException thrown when an IO error occurs
+     */
+    protected static void writeJson(final HttpServletResponse response, final Object result) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/json; charset=UTF-8");
+        final Writer writer = response.getWriter();
+        JsonCodecs.getGson().toJson(result, writer);
+        writer.flush();
     }
 
     /**
@@ -72,6 +137,7 @@ public abstract class BaseInstagramServlet<T> extends HttpServlet {
     protected abstract void onRequestFailed(HttpServletResponse response,
                                             IOException e) throws IOException;
 
+    private static final String CREDENTIALS_ATTRIBUTE = "rest.o.gram.instagram.credentials";
     private static final Logger log = Logger.getLogger(BaseInstagramServlet.class.getName());
     private ICredentialsFactory m_credentialsFactory;
 }
@@ -1,6 +1,5 @@
 package rest.o.gram.service.InstagramServices;
 
-import com.google.gson.Gson;
 import org.jinstagram.Instagram;
 import org.jinstagram.entity.locations.LocationSearchFeed;
 import rest.o.gram.service.InstagramServices.Entities.EmptyLocationSearchFeed;
@@ -30,7 +29,7 @@ public class GetLocationServlet extends BaseInstagramServlet<LocationSearchFeed>
                                                          final Instagram instagram) throws IOException {
         final String venueID = request.getReader().readLine();
         log.info(String.format("searchFoursquareVenue : %s", venueID));
-        return instagram.searchFoursquareVenue(venueID);
+        return reportRateLimit(request, instagram.searchFoursquareVenue(venueID));
     }
 
     /**
@@ -53,8 +52,7 @@ public class GetLocationServlet extends BaseInstagramServlet<LocationSearchFeed>
             actualResult = result;
             log.info(String.format("found instagram location : %d", actualResult.getLocationList().get(0).getId()));
         }
-        response.getWriter().write(new Gson().toJson(actualResult));
-        response.setStatus(HttpServletResponse.SC_OK);
+        writeJson(response, actualResult);
     }
 
     /**
@@ -1,6 +1,5 @@
 package rest.o.gram.service.InstagramServices;
 
-import com.google.gson.Gson;
 import org.jinstagram.Instagram;
 import rest.o.gram.ApisConverters;
 import rest.o.gram.entities.RestogramPhoto;
@@ -22,7 +21,7 @@ public class GetPhotoServlet extends BaseInstagramServlet<RestogramPhoto> {
     protected RestogramPhoto executeInstagramRequest(HttpServletRequest request, Instagram instagram) throws IOException {
         final String mediaId = request.getReader().readLine();
         log.info(String.format("getMediaInfo : %s", mediaId));
-        return ApisConverters.convertToRestogramPhoto(instagram.getMediaInfo(mediaId));
+        return ApisConverters.convertToRestogramPhoto(reportRateLimit(request, instagram.getMediaInfo(mediaId)));
     }
 
     @Override
@@ -38,8 +37,7 @@ public class GetPhotoServlet extends BaseInstagramServlet<RestogramPhoto> {
             actualResult = result;
             log.info(String.format("found photo : %s", actualResult.getInstagram_id()));
         }
-        response.getWriter().write(new Gson().toJson(actualResult.encodeStrings()));
-        response.setStatus(HttpServletResponse.SC_OK);
+        writeJson(response, actualResult.encodeStrings());
     }
 
     @Override
@@ -1,6 +1,5 @@
 package rest.o.gram.service.InstagramServices;
 
-import com.google.gson.Gson;
 import org.jinstagram.Instagram;
 import rest.o.gram.ApisConverters;
 import rest.o.gram.service.InstagramServices.Entities.EmptyRestogramPhotos;
@@ -31,7 +30,7 @@ public class GetRecentMediaByLocationServlet extends BaseInstagramServlet<Restog
                                                 final Instagram instagram) throws IOException {
         final long locationId =  Long.parseLong(request.getReader().readLine());
         log.info(String.format("getRecentMediaByLocation : %d", locationId));
-        return ApisConverters.convertToRestogramPhotos(instagram.getRecentMediaByLocation(locationId));
+        return ApisConverters.convertToRestogramPhotos(reportRateLimit(request, instagram.getRecentMediaByLocation(locationId)));
     }
 
     /**
@@ -54,8 +53,7 @@ public class GetRecentMediaByLocationServlet extends BaseInstagramServlet<Restog
             actualResult = result;
             log.info(String.format("got media"));
         }
-        response.getWriter().write(new Gson().toJson(actualResult.encodeStrings()));
-        response.setStatus(HttpServletResponse.SC_OK);
+        writeJson(response, actualResult.encodeStrings());
     }
 
     /**
@@ -0,0 +1,207 @@
+package rest.o.gram.service.InstagramServices;
+
+import com.google.appengine.api.urlfetch.HTTPResponse;
+import rest.o.gram.Defs;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Load-aware selection of helper workers: power-of-two-choices over an exponentially-decayed
+ * latency and error score per helper. Failing helpers are ejected for a growing period and are
+ * re-admitted with their error score, which decays as they succeed again.
+ */
+public final class HelperWorkersBalancer {
+
+    public static HelperWorkersBalancer getInstance() {
+        return m_instance;
+    }
+
+    /**
+     * Chooses a helper worker
+     * @param candidates serial numbers of the helpers to choose from
+     * @param excluded serial numbers of helpers that must not be chosen unless nothing else is left
+     * @return the chosen helper's serial number
+     */
+    public int choose(final Collection<Integer> candidates, final Collection<Integer> excluded) {
+        final long now = System.currentTimeMillis();
+        final List<Integer> available = new ArrayList<>(candidates.size());
+        final List<Integer> notExcluded = new ArrayList<>(candidates.size());
+        for (final Integer currHelper : candidates)
+        {
+            if (excluded.contains(currHelper))
+                continue;
+            notExcluded.add(currHelper);
+            if (!getState(currHelper).isEjected(now))
+                available.add(currHelper);
+        }
+
+        List<Integer> pool = available;
+        if (pool.isEmpty())
+            pool = notExcluded; // every helper is ejected - better try one than fail
+        if (pool.isEmpty())
+            pool = new ArrayList<>(candidates); // every helper was already used for this request
+        if (pool.size() == 1)
+            return pool.get(0);
+
+        final Random random = ThreadLocalRandom.current();
+        final int first = random.nextInt(pool.size());
+        int second = random.nextInt(pool.size() - 1);
+        if (second >= first)
+            ++second;
+
+        final int firstHelper = pool.get(first);
+        final int secondHelper = pool.get(second);
+        return getState(firstHelper).getScore() <= getState(secondHelper).getScore() ? firstHelper : secondHelper;
+    }
+
+    /**
+     * Tracks the given request to a helper, so its outcome affects the helper's score
+     * @param helper the helper's serial number
+     * @param future the pending response of the helper
+     * @return a future that reports the outcome once it is known
+     */
+    public Future<HTTPResponse> track(final int helper, final Future<HTTPResponse> future) {
+        return new TrackedFuture(getState(helper), future);
+    }
+
+    private HelperState getState(final int helper) {
+        HelperState state = m_states.get(helper);
+        if (state == null)
+        {
+            final HelperState newState = new HelperState(helper);
+            state = m_states.putIfAbsent(helper, newState);
+            if (state == null)
+                state = newState;
+        }
+        return state;
+    }
+
+    private static final class HelperState {
+
+        HelperState(final int helper) {
+            m_helper = helper;
+        }
+
+        synchronized boolean isEjected(final long now) {
+            return now < m_ejectedUntil;
+        }
+
+        synchronized double getScore() {
+            return m_latency * (1 + Defs.Instagram.HELPER_ERROR_PENALTY * m_errorRate);
+        }
+
+        synchronized void onSuccess(final long latency) {
+            m_latency = decay(m_latency, latency);
+            m_errorRate = decay(m_errorRate, 0);
+            m_consecutiveFailures = 0;
+        }
+
+        synchronized void onSlow(final long elapsed) {
+            // a cancelled request only tells us the helper was at least this slow
+            if (elapsed > m_latency)
+                m_latency = decay(m_latency, elapsed);
+        }
+
+        synchronized void onFailure(final long now) {
+            m_errorRate = decay(m_errorRate, 1);
+            final long period = Defs.Instagram.HELPER_EJECTION_PERIOD << Math.min(m_consecutiveFailures, 10);
+            m_ejectedUntil = now + Math.min(period, Defs.Instagram.HELPER_MAX_EJECTION_PERIOD);
+            ++m_consecutiveFailures;
+            log.warning(String.format("helper %d ejected for %d millis", m_helper, m_ejectedUntil - now));
+        }
+
+        private static double decay(final double current, final double sample) {
+            return current + Defs.Instagram.HELPER_SCORE_DECAY * (sample - current);
+        }
+
+        private final int m_helper;
+        private double m_latency; // unknown helpers look fast, so they get explored
+        private double m_errorRate;
+        private int m_consecutiveFailures;
+        private long m_ejectedUntil;
+    }
+
+    private static final class TrackedFuture implements Future<HTTPResponse> {
+
+        TrackedFuture(final HelperState state, final Future<HTTPResponse> future) {
+            m_state = state;
+            m_future = future;
+            m_start = System.currentTimeMillis();
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            if (m_reported.compareAndSet(false, true))
+                m_state.onSlow(System.currentTimeMillis() - m_start);
+            return m_future.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return m_future.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return m_future.isDone();
+        }
+
+        @Override
+        public HTTPResponse get() throws InterruptedException, ExecutionException {
+            try
+            {
+                return report(m_future.get());
+            }
+            catch (ExecutionException e)
+            {
+                reportFailure();
+                throw e;
+            }
+        }
+
+        @Override
+        public HTTPResponse get(final long timeout, final TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            try
+            {
+                return report(m_future.get(timeout, unit));
+            }
+            catch (ExecutionException e)
+            {
+                reportFailure();
+                throw e;
+            }
+        }
+
+        private HTTPResponse report(final HTTPResponse resp) {
+            if (resp == null || resp.getResponseCode() != HttpServletResponse.SC_OK)
+                reportFailure();
+            else if (m_reported.compareAndSet(false, true))
+                m_state.onSuccess(System.currentTimeMillis() - m_start);
+            return resp;
+        }
+
+        private void reportFailure() {
+            if (m_reported.compareAndSet(false, true))
+                m_state.onFailure(System.currentTimeMillis());
+        }
+
+        private final HelperState m_state;
+        private final Future<HTTPResponse> m_future;
+        private final long m_start;
+        private final AtomicBoolean m_reported = new AtomicBoolean();
+    }
+
+    private HelperWorkersBalancer() {}
+
+    private static final Logger log = Logger.getLogger(HelperWorkersBalancer.class.getName());
+    private static final HelperWorkersBalancer m_instance = new HelperWorkersBalancer();
+    private final ConcurrentMap<Integer, HelperState> m_states = new ConcurrentHashMap<>();
+}
@@ -3,13 +3,13 @@ package rest.o.gram.service.InstagramServices;
 import com.google.appengine.api.urlfetch.FetchOptions;
 import com.google.appengine.api.urlfetch.HTTPMethod;
 import com.google.appengine.api.urlfetch.HTTPRequest;
+import com.google.appengine.api.urlfetch.HTTPResponse;
 import rest.o.gram.Defs;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashSet;
-import java.util.Random;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -24,16 +24,16 @@ public class InstagramDistributedRequestFactory implements IInstagramRequestFact
      * @param counterOffset the offset being added to the serial number of helper worker to access it.
      */
     public InstagramDistributedRequestFactory(final int helperWorkersCount, final int counterOffset) {
-        m_helperWorkersCount = helperWorkersCount;
-        m_counterOffset = counterOffset;
+        m_services = createServiceNumbers(helperWorkersCount, counterOffset);
     }
 
     @Override
     public HTTPRequest createInstagramRequest(Defs.Instagram.RequestType requestType) {
+        final int serviceNumber = getNextServiceNumber();
         URL url;
         try
         {
-            final String baseHostName = String.format(Defs.Transport.HELPERS_HOST_NAME_SCHEME, getNextServiceNumber());
+            final String baseHostName = String.format(Defs.Transport.HELPERS_HOST_NAME_SCHEME, serviceNumber);
             final String urlString = String.format("%s/%s",  baseHostName,  requestType.getType());
             url = new URL(urlString);
         } catch (MalformedURLException e)
@@ -41,27 +41,43 @@ public class InstagramDistributedRequestFactory implements IInstagramRequestFact
             log.severe(String.format("cannot build url for requests. error: %s", e.getMessage()));
             return null;
         }
-        return new HTTPRequest(url, HTTPMethod.POST,
+        final HTTPRequest request = new HTTPRequest(url, HTTPMethod.POST,
                 FetchOptions.Builder.withDeadline(Defs.Instagram.REQUESTS_CONNECT_TIMEOUT).doNotFollowRedirects());
+        m_requestToService.put(request, serviceNumber);
+        return request;
+    }
 
+    /**
+     * Tracks the response of a request created by this factory, so it affects the choice of helper workers
+     * @param request a request created by this factory
+     * @param response the pending response of the request
+     * @return a future that reports the outcome of the request to the helper workers balancer
+     */
+    public Future<HTTPResponse> trackResponse(final HTTPRequest request, final Future<HTTPResponse> response) {
+        final Integer serviceNumber = m_requestToService.get(request);
+        if (serviceNumber == null)
+            return response;
+        return HelperWorkersBalancer.getInstance().track(serviceNumber, response);
     }
 
     private int getNextServiceNumber()
     {
-        int current = -1;
-
         // makes sure that history doesn't repeat itself =]
-        do {
-            current = random.nextInt(m_helperWorkersCount) + m_counterOffset;
-        } while (m_history.contains(current));
+        final int current = HelperWorkersBalancer.getInstance().choose(m_services, m_history);
         m_history.add(current);
         return current;
     }
 
-    private Random random = new Random();
-    private final int m_helperWorkersCount;
-    private final int m_counterOffset;
-    private Set<Integer> m_history = new HashSet<>();
+    private static List<Integer> createServiceNumbers(final int helperWorkersCount, final int counterOffset) {
+        final List<Integer> services = new ArrayList<>(helperWorkersCount);
+        for (int i = 0; i < helperWorkersCount; ++i)
+            services.add(i + counterOffset);
+        return services;
+    }
+
+    private final List<Integer> m_services;
+    private final Set<Integer> m_history = new HashSet<>();
+    private final Map<HTTPRequest, Integer> m_requestToService = new IdentityHashMap<>();
     private static final Logger log =
             Logger.getLogger(InstagramDistributedRequestFactory.class.getName());
 }
@@ -0,0 +1,46 @@
+package rest.o.gram.service;
+
+import rest.o.gram.entities.RestogramPhoto;
+import rest.o.gram.results.PhotosResult;
+
+/**
+ * Photos results helpers of the photos service
+ */
+public final class PhotosResults {
+
+    public static boolean hasPhotos(final PhotosResult result) {
+        return result != null &&
+                result.getPhotos() != null &&
+                result.getPhotos().length != 0;
+    }
+
+    /**
+     * Appends the photos of the second result to the first's
+     * @return the merged result, with the token of the second result
+     */
+    public static PhotosResult merge(final PhotosResult first, final PhotosResult second) {
+
+        if (!hasPhotos(first))
+            return second;
+
+        if (!hasPhotos(second))
+            return first;
+
+        RestogramPhoto[] firstPhotos = first.getPhotos();
+        RestogramPhoto[] secondPhotos = second.getPhotos();
+        int firstPhotosLength = firstPhotos.length;
+        int secondPhotosLength = secondPhotos.length;
+
+        RestogramPhoto[] mergedPhotos = new RestogramPhoto[firstPhotosLength + secondPhotosLength];
+
+        // add photos from cache to results
+        System.arraycopy(firstPhotos, 0, mergedPhotos, 0, firstPhotosLength);
+
+        // add photos from Instagram to results
+        System.arraycopy(secondPhotos, 0, mergedPhotos, firstPhotosLength, secondPhotosLength);
+
+        return new PhotosResult(mergedPhotos, second.getToken());
+    }
+
+    private PhotosResults() {}
+}
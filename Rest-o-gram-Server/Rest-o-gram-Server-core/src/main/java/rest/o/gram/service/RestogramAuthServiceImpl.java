@@ -1,13 +1,9 @@
 package rest.o.gram.service;
 
-import com.leanengine.server.LeanException;
-import com.leanengine.server.appengine.DatastoreUtils;
 import com.leanengine.server.auth.AuthService;
-import rest.o.gram.DataStoreConverters;
 import rest.o.gram.Defs;
 import rest.o.gram.InstagramAccessManager;
 import rest.o.gram.data.DataManager;
-import rest.o.gram.entities.Kinds;
 import rest.o.gram.entities.RestogramPhoto;
 import rest.o.gram.iservice.RestogramAuthService;
 import rest.o.gram.results.PhotosResult;
@@ -49,16 +45,12 @@ public class RestogramAuthServiceImpl implements RestogramAuthService {
             }
             return true;
         }
-        else if (dataManager.isPhotoPending(photoId)) //  pending photo
+
+        final RestogramPhoto pendingPhoto = dataManager.getPendingPhoto(photoId);
+        if (pendingPhoto != null) //  pending photo
         {
             log.info("YUMMIES: photo is pending");
-            final RestogramPhoto pendingPhoto = dataManager.getPendingPhoto(photoId);
-            pendingPhoto.setYummies(1);
-            try
-            {
-                DatastoreUtils.putPublicEntity(Kinds.PHOTO, pendingPhoto.getInstagram_id(),
-                                                DataStoreConverters.photoToProps(pendingPhoto));
-            } catch (LeanException e)
+            if (!dataManager.upsertPhotoYummies(pendingPhoto, 1))
             {
                 log.severe("cannot write an updated photo(yummies counter) to cache");
                 return true;
@@ -85,8 +77,7 @@ public class RestogramAuthServiceImpl implements RestogramAuthService {
             restogramPhoto.decodeStrings();
 
             restogramPhoto.setOriginVenueId(originVenueId);
-            restogramPhoto.setYummies(1);
-            dataManager.cachePhoto(restogramPhoto);
+            dataManager.upsertPhotoYummies(restogramPhoto, 1);
             return true;
         }
         return true;
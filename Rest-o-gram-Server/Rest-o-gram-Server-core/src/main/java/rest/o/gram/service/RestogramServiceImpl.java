@@ -1,22 +1,25 @@
 package rest.o.gram.service;
 
 // TODO: remove when Pagination dependencyis no longer neede gere
-import com.google.gson.Gson;
 import org.jinstagram.entity.common.Pagination;
 
 import com.leanengine.server.auth.AuthService;
 import org.apache.commons.lang3.StringUtils;
 import rest.o.gram.Defs;
 import rest.o.gram.data.DataManager;
+import rest.o.gram.data.PendingResult;
 import rest.o.gram.entities.RestogramPhoto;
 import rest.o.gram.entities.RestogramVenue;
 import rest.o.gram.filters.RestogramFilter;
 import rest.o.gram.filters.RestogramFilterFactory;
 import rest.o.gram.filters.RestogramFilterType;
 import rest.o.gram.iservice.RestogramService;
+import rest.o.gram.metrics.LatencyHistogram;
+import rest.o.gram.metrics.Metrics;
 import rest.o.gram.results.PhotosResult;
 import rest.o.gram.results.VenueResult;
 import rest.o.gram.results.VenuesResult;
+import rest.o.gram.server.RequestExecutor;
 import rest.o.gram.server.RestogramServer;
 import rest.o.gram.service.InstagramServices.Entities.RestogramPhotos;
 import rest.o.gram.shared.CommonDefs;
@@ -24,6 +27,7 @@ import rest.o.gram.tasks.TasksManager;
 import rest.o.gram.utils.InstagramUtils;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.logging.Logger;
 
 /**
@@ -46,26 +50,15 @@ public class RestogramServiceImpl implements RestogramService {
      */
     @Override
     public VenuesResult getNearby(final double latitude, final double longitude, final double radius) {
-        final List<RestogramVenue> venues =
-                RestogramServer.getInstance().getFoursquareManager().getNearby(latitude, longitude, radius);
+        final long start = System.nanoTime();
+        final RestogramVenue[] venues =
+                RestogramServer.getInstance().getNearbyVenuesCache().get(latitude, longitude, radius);
+        nearbyLatency.recordSince(start);
 
         if (venues == null)
             return null;
 
-        final String[] venueIds = new String[venues.size()];
-        for (int i = 0; i < venueIds.length; i++)
-            venueIds[i] = Long.toString(venues.get(i).getId());
-
-        final Map<String, RestogramVenue> idToVenueMapping = m_dataManager.fetchVenuesFromCache(venueIds);
-
-        if (idToVenueMapping != null) {
-            for (final RestogramVenue currVenue : venues) {
-                if (idToVenueMapping.containsKey(currVenue.getFoursquare_id()))
-                    currVenue.setImageUrl(idToVenueMapping.get(currVenue.getFoursquare_id()).getImageUrl());
-            }
-        }
-
-        return new VenuesResult(venues.toArray(new RestogramVenue[]{}));
+        return new VenuesResult(venues);
     }
 
     /**
@@ -124,47 +117,108 @@ public class RestogramServiceImpl implements RestogramService {
         if (noMorePhotos(token))
             return null;
 
+        final long start = System.nanoTime();
+        final ExecutorService executor = RequestExecutor.start();
+        try {
+            return doGetPhotos(venueId, filterType, token, executor);
+        } finally {
+            RequestExecutor.finish(executor); // drops unused speculative work
+            photosLatency.recordSince(start);
+        }
+    }
+
+    private PhotosResult doGetPhotos(final String venueId, final RestogramFilterType filterType, final String token,
+                                     final ExecutorService executor) {
+
+        // decoded once - a cache cursor, an instagram page or null (first request or unknown token)
+        final ContinuationToken continuation = ContinuationToken.decode(token, venueId);
+        final ContinuationToken instagramToken = isOfType(continuation, ContinuationToken.Type.Instagram) ?
+                continuation : null;
+
         PhotosResult cachedPhotosResult = null;
-        if (StringUtils.isBlank(token) || m_dataManager.isValidCursor(token)) {
+        Future<Long> pendingLocationId = null;
+        if (StringUtils.isBlank(token) || isOfType(continuation, ContinuationToken.Type.Cache)) {
             // fetch cached photos of given venue
-            cachedPhotosResult = m_dataManager.fetchPhotosFromCache(venueId, token);
+            final long cacheQueryStart = System.nanoTime();
+            final PendingResult<PhotosResult> pendingCachedPhotos = m_dataManager.fetchPhotosFromCacheAsync(
+                    venueId, continuation != null ? continuation.getCursor() : null);
+
+            // a short page is completed from instagram, so the location is resolved while the cache is queried.
+            // it is mostly cached, and dropped with the executor when the cached page is enough
+            pendingLocationId = executor.submit(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return searchLocation(venueId);
+                }
+            });
+
+            cachedPhotosResult = encodeCacheToken(pendingCachedPhotos.get(), venueId);
+            cacheQueryLatency.recordSince(cacheQueryStart);
 
             // set as approved
-            if (hasPhotos(cachedPhotosResult)) {
+            if (PhotosResults.hasPhotos(cachedPhotosResult)) {
                 for (final RestogramPhoto currPhoto : cachedPhotosResult.getPhotos())
                     currPhoto.setApproved(true);
             }
 
             //set as favorite
-            if (hasPhotos(cachedPhotosResult))
+            if (PhotosResults.hasPhotos(cachedPhotosResult) && AuthService.isUserLoggedIn()) {
+                final long favoritesStart = System.nanoTime();
                 markFavoritePhotos(cachedPhotosResult);
+                favoritesLatency.recordSince(favoritesStart);
+            }
         }
 
         // if got enough results from cache, return results
-        if (hasPhotos(cachedPhotosResult) &&
-                cachedPhotosResult.getPhotos().length > Defs.Request.MIN_PHOTOS_PER_REQUEST) {
+        if (hasEnoughPhotos(cachedPhotosResult)) {
             log.info(String.format("got enough photos from cache - %d", cachedPhotosResult.getPhotos().length));
             log.info(String.format("sending %d photos to client", cachedPhotosResult.getPhotos().length));
             return cachedPhotosResult;
         } else // otherwise, not enough results were found, add more from Instagram
         {
-            if (hasPhotos(cachedPhotosResult))
+            if (PhotosResults.hasPhotos(cachedPhotosResult))
                 log.info(String.format("not enough photos from cache - %d, fetch from instagram", cachedPhotosResult.getPhotos().length));
-            final String instagramToken = resolveInstagramToken(token);
-            PhotosResult photosFromInstagram = doGetInstagramPhotos(venueId, filterType, instagramToken);
-            PhotosResult mergedResults = mergeResults(cachedPhotosResult, photosFromInstagram);
-            if (shouldFetchMorePhotosFromInstagram(mergedResults)) {
-                photosFromInstagram = doGetInstagramPhotos(venueId, filterType, mergedResults.getToken());
-                mergedResults = mergeResults(mergedResults, photosFromInstagram);
+            final int cachedPhotosCount = PhotosResults.hasPhotos(cachedPhotosResult) ? cachedPhotosResult.getPhotos().length : 0;
+            final Long locationId = instagramToken != null ? instagramToken.getLocationId() :
+                    pendingLocationId != null ? getResult(pendingLocationId) : searchLocation(venueId);
+            final RestogramPhotos firstPage = instagramToken != null ?
+                    fetchInstagramPhotos(instagramToken, venueId) :
+                    getFirstRecentMedia(venueId, locationId);
+            final InstagramPhotosResult firstResult =
+                    doGetInstagramPhotos(venueId, locationId, filterType, firstPage, cachedPhotosCount, executor);
+            PhotosResult mergedResults = PhotosResults.merge(cachedPhotosResult, firstResult.getPhotos());
+            if (shouldFetchMorePhotosFromInstagram(mergedResults) && firstResult.getNextToken() != null) {
+                final RestogramPhotos secondPage = firstResult.getNextPage() != null ?
+                        getResult(firstResult.getNextPage()) :
+                        fetchInstagramPhotos(firstResult.getNextToken(), venueId);
+                final InstagramPhotosResult secondResult =
+                        doGetInstagramPhotos(venueId, locationId, filterType, secondPage, 0, null);
+                mergedResults = PhotosResults.merge(mergedResults, secondResult.getPhotos());
             }
             log.info(String.format("sending %d photos to client",
-                    hasPhotos(mergedResults) ? mergedResults.getPhotos().length : 0));
+                    PhotosResults.hasPhotos(mergedResults) ? mergedResults.getPhotos().length : 0));
             return mergedResults;
         }
     }
 
+    private static boolean hasEnoughPhotos(final PhotosResult result) {
+        return PhotosResults.hasPhotos(result) && result.getPhotos().length > Defs.Request.MIN_PHOTOS_PER_REQUEST;
+    }
+
+    /**
+     * @return the instagram location of the given venue, null or -1 if it cannot be found
+     */
+    private static Long searchLocation(final String venueId) {
+        final long start = System.nanoTime();
+        try {
+            return RestogramServer.getInstance().getInstagramManager().searchFoursquareVenue(venueId);
+        } finally {
+            locationLatency.recordSince(start);
+        }
+    }
+
     private boolean shouldFetchMorePhotosFromInstagram(PhotosResult mergedResults) {
-        return hasPhotos(mergedResults) &&
+        return PhotosResults.hasPhotos(mergedResults) &&
                 mergedResults.getPhotos().length <= Defs.Request.MIN_PHOTOS_PER_REQUEST &&
                 !noMorePhotos(mergedResults.getToken());
     }
@@ -173,98 +227,140 @@ public class RestogramServiceImpl implements RestogramService {
         return token != null && token.equals(CommonDefs.Tokens.FINISHED_FETCHING_FROM_INSTAGRAM);
     }
 
-    private String resolveInstagramToken(String token) {
-        return isValidPaginationToken(token) ? token : null;
+    private static boolean isOfType(final ContinuationToken token, final ContinuationToken.Type type) {
+        return token != null && token.getType() == type;
     }
 
-    private void markFavoritePhotos(PhotosResult cachedPhotosResult) {
-        if (AuthService.isUserLoggedIn()) {
-            final Set<String> favIds = m_dataManager.fetchFavoritePhotoIds();
-            if (favIds == null)
-                return;
-
-            for (final RestogramPhoto currPhoto : cachedPhotosResult.getPhotos()) {
-                if (favIds.contains(currPhoto.getInstagram_id()))
-                    currPhoto.set_favorite(true);
-            }
-        }
-    }
-
-    private boolean hasPhotos(final PhotosResult cachedPhotosResult) {
-        return cachedPhotosResult != null &&
-                cachedPhotosResult.getPhotos() != null &&
-                cachedPhotosResult.getPhotos().length != 0;
+    private static PhotosResult encodeCacheToken(final PhotosResult result, final String venueId) {
+        if (result == null || result.getToken() == null ||
+                result.getToken().equals(CommonDefs.Tokens.FINISHED_FETCHING_FROM_CACHE))
+            return result;
+        return new PhotosResult(result.getPhotos(), ContinuationToken.forCache(result.getToken()).encode(venueId));
     }
 
-    private PhotosResult mergeResults(final PhotosResult first, final PhotosResult second) {
-
-        if (!hasPhotos(first))
-            return second;
-
-        if (!hasPhotos(second))
-            return first;
-
-        RestogramPhoto[] firstPhotos = first.getPhotos();
-        RestogramPhoto[] secondPhotos = second.getPhotos();
-        int firstPhotosLength = firstPhotos.length;
-        int secondPhotosLength = secondPhotos.length;
-
-        RestogramPhoto[] mergedPhotos = new RestogramPhoto[firstPhotosLength + secondPhotosLength];
+    private void markFavoritePhotos(final PhotosResult cachedPhotosResult) {
+        final List<String> photoIds = new ArrayList<>(cachedPhotosResult.getPhotos().length);
+        for (final RestogramPhoto currPhoto : cachedPhotosResult.getPhotos())
+            photoIds.add(currPhoto.getInstagram_id());
 
-        // add photos from cache to results
-        System.arraycopy(firstPhotos, 0, mergedPhotos, 0, firstPhotosLength);
+        // looked up by the page's ids only
+        final Set<String> favIds = m_dataManager.fetchFavoritePhotoIds(photoIds);
+        if (favIds == null)
+            return;
 
-        // add photos from Instagram to results
-        System.arraycopy(secondPhotos, 0, mergedPhotos, firstPhotosLength, secondPhotosLength);
-
-        return new PhotosResult(mergedPhotos, second.getToken());
+        for (final RestogramPhoto currPhoto : cachedPhotosResult.getPhotos()) {
+            if (favIds.contains(currPhoto.getInstagram_id()))
+                currPhoto.set_favorite(true);
+        }
     }
 
-    private PhotosResult doGetInstagramPhotos(final String venueId, final RestogramFilterType filterType, String token) {
-
-        final RestogramPhotos recentMediaByLocation = fetchInstagramPhotos(token, venueId);
+    /**
+     * Processes a page of instagram photos. The next page is prefetched when it is certain to be needed
+     * @param locationId the instagram location of the venue
+     * @param knownPhotosCount photos already gathered for this request
+     * @param executor executor for prefetching the next page, null to avoid prefetching
+     */
+    private InstagramPhotosResult doGetInstagramPhotos(final String venueId, final Long locationId,
+                                                       final RestogramFilterType filterType,
+                                                       final RestogramPhotos recentMediaByLocation,
+                                                       final int knownPhotosCount, final ExecutorService executor) {
 
         if (InstagramUtils.isNullOrEmpty(recentMediaByLocation)) {
             log.warning("media search returned no media");
-            return null;
+            return new InstagramPhotosResult(null, null, null);
         }
 
         List<RestogramPhoto> data = recentMediaByLocation.getPhotos();
         log.info(String.format("got %d photos from instagram", data.size()));
         data = getUncachedPhotos(data);
         log.info(String.format("kept %d photos after checking cache", data.size()));
-        addPhotosToQueue(data, venueId);
 
-        filterPhotos(data, filterType);
+        final String maxId = getNextMaxId(recentMediaByLocation.getPagination());
+        log.info("has more? " + (maxId != null ? "yes!" : "no!"));
+        final ContinuationToken nextToken = maxId != null && locationId != null ?
+                ContinuationToken.forInstagram(locationId, maxId) : null;
+        final String token = nextToken != null ?
+                nextToken.encode(venueId) : CommonDefs.Tokens.FINISHED_FETCHING_FROM_INSTAGRAM;
+
+        // filtering only drops photos, so a short page means the next one is needed anyway
+        Future<RestogramPhotos> nextPage = null;
+        if (executor != null && !data.isEmpty() && nextToken != null &&
+                knownPhotosCount + data.size() <= Defs.Request.MIN_PHOTOS_PER_REQUEST) {
+            nextPage = executor.submit(new Callable<RestogramPhotos>() {
+                @Override
+                public RestogramPhotos call() {
+                    return fetchInstagramPhotos(nextToken, venueId);
+                }
+            });
+        }
+
+        if (filterType == RestogramFilterType.Complex) {
+            // the pipeline approves most photos here, only the undecided ones go to the filter queue
+            filterPhotos(data, filterType);
+            final long enqueueStart = System.nanoTime();
+            final List<RestogramPhoto> approvedPhotos = new ArrayList<>();
+            final List<RestogramPhoto> undecidedPhotos = new ArrayList<>();
+            for (final RestogramPhoto currPhoto : data) {
+                if (currPhoto.isApproved())
+                    approvedPhotos.add(currPhoto);
+                else
+                    undecidedPhotos.add(currPhoto);
+            }
+            if (!approvedPhotos.isEmpty() && !m_dataManager.savePhotosFilterRules(approvedPhotos))
+                log.warning("cannot save the filter rules of approved photos");
+            addPhotosToQueue(undecidedPhotos, venueId);
+            enqueueLatency.recordSince(enqueueStart);
+        } else {
+            final long enqueueStart = System.nanoTime();
+            addPhotosToQueue(data, venueId);
+            enqueueLatency.recordSince(enqueueStart);
+
+            filterPhotos(data, filterType);
+        }
 
-        // TODO: remove the Pagination dependency
         log.info(String.format("got %d photos", data.size()));
-        final Pagination pagination = recentMediaByLocation.getPagination();
-        log.info("has more? " + (StringUtils.isNotBlank(pagination.getNextUrl()) ? "yes!" : "no!"));
-        token = StringUtils.isNotBlank(pagination.getNextUrl()) ?
-                new Gson().toJson(pagination) : CommonDefs.Tokens.FINISHED_FETCHING_FROM_INSTAGRAM;
+        return new InstagramPhotosResult(new PhotosResult(data.toArray(new RestogramPhoto[]{}), token),
+                                         nextToken, nextPage);
+    }
 
-        return new PhotosResult(data.toArray(new RestogramPhoto[]{}), token);
+    /**
+     * @return the max id of the next page or null if there is no next page
+     */
+    private static String getNextMaxId(final Pagination pagination) {
+        if (pagination == null || StringUtils.isBlank(pagination.getNextUrl()))
+            return null;
+        if (StringUtils.isNotBlank(pagination.getNextMaxId()))
+            return pagination.getNextMaxId();
+
+        // not given separately - take it from the next url
+        final String maxId = StringUtils.substringBefore(
+                StringUtils.substringAfter(pagination.getNextUrl(), "max_id="), "&");
+        return StringUtils.isNotBlank(maxId) ? maxId : null;
     }
 
     private void filterPhotos(final List<RestogramPhoto> data, final RestogramFilterType filterType) {
         if (filterType != RestogramFilterType.None) {
+            final long start = System.nanoTime();
             final RestogramFilter restogramFilter =
                     RestogramFilterFactory.createFilter(filterType);
             restogramFilter.doFilter(data);
+            filterLatency.recordSince(start);
         }
     }
 
     private void addPhotosToQueue(final List<RestogramPhoto> data, final String originVenueId) {
-        final List<RestogramPhoto> photosToEnqueue = new ArrayList<>(data.size());
-        final Map<String, RestogramPhoto> idToPhotoMapping = new HashMap<>(data.size());
+        // coalesce duplicates, so each photo is looked up (and enqueued) once
+        final Map<String, RestogramPhoto> idToPhotoMapping = new LinkedHashMap<>(data.size());
         for (final RestogramPhoto currPhoto : data) {
-            if (!m_dataManager.isPhotoPending(currPhoto.getInstagram_id())) {
+            if (!idToPhotoMapping.containsKey(currPhoto.getInstagram_id()))
                 idToPhotoMapping.put(currPhoto.getInstagram_id(), currPhoto);
-                photosToEnqueue.add(currPhoto);
-            }
         }
 
+        final Map<String, RestogramPhoto> pendingPhotos =
+                m_dataManager.getPendingPhotos(idToPhotoMapping.keySet());
+        idToPhotoMapping.keySet().removeAll(pendingPhotos.keySet());
+        final List<RestogramPhoto> photosToEnqueue = new ArrayList<>(idToPhotoMapping.values());
+
         // enque task + set as pending
         if (!photosToEnqueue.isEmpty()) {
             m_dataManager.addPendingPhotos(idToPhotoMapping);
@@ -287,44 +383,53 @@ public class RestogramServiceImpl implements RestogramService {
         return uncachedPhotos;
     }
 
-    private RestogramPhotos fetchInstagramPhotos(final String token, final String venueId) {
+    private RestogramPhotos fetchInstagramPhotos(final ContinuationToken token, final String venueId) {
+        final long start = System.nanoTime();
+        try {
+            return RestogramServer.getInstance().getInstagramManager().getRecentMedia(token.getLocationId(),
+                                                                                      token.getMaxId(), venueId);
+        } finally {
+            instagramPageLatency.recordSince(start);
+        }
+    }
 
-        if (noMorePhotos(token))
+    /**
+     * Gets the first page of recent media of the given venue
+     * @param locationID the instagram location of the venue
+     */
+    private RestogramPhotos getFirstRecentMedia(final String venueId, final Long locationID) {
+        if (locationID == null || locationID == -1) {
+            log.severe("cannot find location for venue: " + venueId);
             return null;
+        }
 
-        String pagination = null;
-
-        if (isValidPaginationToken(token))
-            pagination = token;
-
-        return getRecentMedia(pagination, venueId);
-    }
-
-    private RestogramPhotos getRecentMedia(final String pagination, final String venueId) {
-        if (pagination != null)
-            return RestogramServer.getInstance().getInstagramManager().getRecentMedia(pagination, venueId);
-        else {
-            final long locationID =
-                    RestogramServer.getInstance().getInstagramManager().searchFoursquareVenue(venueId);
-            if (locationID == -1) {
-                log.severe("cannot find location for venue: " + venueId);
-                return null;
-            }
+        final long start = System.nanoTime();
+        final RestogramPhotos photos =
+                RestogramServer.getInstance().getInstagramManager().getRecentMedia(locationID);
+        instagramPageLatency.recordSince(start);
 
-            final RestogramPhotos photos =
-                    RestogramServer.getInstance().getInstagramManager().getRecentMedia(locationID);
+        if (photos == null)
+            return null;
 
-            if (photos == null)
-                return null;
+        // decode string to get the correct encoding
+        photos.decodeStrings();
 
-            // decode string to get the correct encoding
-            photos.decodeStrings();
+        log.info("got result from instagram - mediafeed");
 
-            log.info("got result from instagram - mediafeed");
+        setVenueId(photos, venueId);
 
-            setVenueId(photos, venueId);
+        return photos;
+    }
 
-            return photos;
+    private static <T> T getResult(final Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            log.severe("a concurrent request has failed, error: " + e.getCause());
+            return null;
         }
     }
 
@@ -334,13 +439,47 @@ public class RestogramServiceImpl implements RestogramService {
         }
     }
 
-    private boolean isValidPaginationToken(final String token) {
-        return !StringUtils.isBlank(token) &&
-                !token.equals(CommonDefs.Tokens.FINISHED_FETCHING_FROM_CACHE) &&
-                !m_dataManager.isValidCursor(token);
+    /**
+     * Photos gathered from a page of instagram photos, along with the prefetched next page
+     */
+    private static final class InstagramPhotosResult {
+
+        InstagramPhotosResult(final PhotosResult photos, final ContinuationToken nextToken,
+                              final Future<RestogramPhotos> nextPage) {
+            m_photos = photos;
+            m_nextToken = nextToken;
+            m_nextPage = nextPage;
+        }
+
+        PhotosResult getPhotos() {
+            return m_photos;
+        }
+
+        /**
+         * @return the token of the next page or null if there is no next page
+         */
+        ContinuationToken getNextToken() {
+            return m_nextToken;
+        }
+
+        Future<RestogramPhotos> getNextPage() {
+            return m_nextPage;
+        }
+
+        private final PhotosResult m_photos;
+        private final ContinuationToken m_nextToken;
+        private final Future<RestogramPhotos> m_nextPage;
     }
 
     private static final Logger log = Logger.getLogger(RestogramServiceImpl.class.getName());
+    private static final LatencyHistogram nearbyLatency = Metrics.histogram("nearby.get");
+    private static final LatencyHistogram photosLatency = Metrics.histogram("photos.request");
+    private static final LatencyHistogram cacheQueryLatency = Metrics.histogram("photos.cache_query");
+    private static final LatencyHistogram favoritesLatency = Metrics.histogram("photos.favorites");
+    private static final LatencyHistogram locationLatency = Metrics.histogram("photos.location");
+    private static final LatencyHistogram instagramPageLatency = Metrics.histogram("photos.instagram_page");
+    private static final LatencyHistogram filterLatency = Metrics.histogram("photos.filter");
+    private static final LatencyHistogram enqueueLatency = Metrics.histogram("photos.enqueue");
     private final DataManager m_dataManager =
             RestogramServer.getInstance().getDataManager();
     private final TasksManager m_tasksManager =
@@ -2,20 +2,21 @@ package rest.o.gram.service.backend;
 
 import com.google.appengine.api.taskqueue.TaskHandle;
 import rest.o.gram.Defs;
-import rest.o.gram.InstagramAccessManager;
 import rest.o.gram.data.DataManager;
 import rest.o.gram.entities.RestogramPhoto;
+import rest.o.gram.server.RequestExecutor;
 import rest.o.gram.server.RestogramServer;
+import rest.o.gram.tasks.TaskPayloadCodec;
 import rest.o.gram.tasks.TasksManager;
-import rest.o.gram.utils.InstagramUtils;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -57,89 +58,178 @@ public class FilterRulesServlet extends HttpServlet {
     }
 
     private void processFilterResults() {
-        final List<TaskHandle> tasks =
-                m_tasksManager.leaseFilterResults(Defs.FilterRulesQueue.LEASE_COUNT,
-                                                  Defs.FilterRulesQueue.LEASE_PERIOD);
-        for (final TaskHandle currTask :  tasks)
+        // keeps leasing while the queue is backed up
+        for (int i = 0; i < Defs.FilterRulesQueue.MAX_LEASES_PER_REQUEST; ++i)
         {
-            // extract rules results
-            final String payLoad = new String(currTask.getPayload());
-            final String[] headerBody = payLoad.split(";");
-            if (headerBody.length != 2)
+            final int leaseCount = leaseCountHolder.get();
+            final List<TaskHandle> tasks =
+                    m_tasksManager.leaseFilterResults(leaseCount, Defs.FilterRulesQueue.LEASE_PERIOD);
+            adaptLeaseCount(leaseCount, tasks.size());
+            if (tasks.isEmpty())
                 return;
-            final String venueId  = headerBody[0];
-            final String[] idRulePairs = headerBody[1].split(",");
-            final ArrayList<RestogramPhoto> photos  =
-                    new ArrayList<>(idRulePairs.length/2);
-            for (int i = 0; i < idRulePairs.length - 1; i+=2)
+
+            processFilterResults(tasks);
+            if (tasks.size() < leaseCount) // drained
+                return;
+        }
+    }
+
+    private void processFilterResults(final List<TaskHandle> tasks) {
+        // extract rules results of all tasks, a later result of the same photo wins
+        final Map<String, Boolean> idToRuleMapping = new LinkedHashMap<>();
+        final Map<String, String> idToVenueMapping = new HashMap<>();
+        for (final TaskHandle currTask : tasks)
+        {
+            final TaskPayloadCodec.FilterResult currResult = TaskPayloadCodec.decodeFilterResult(currTask.getPayload());
+            if (currResult == null)
             {
-                final String currPhotoId = idRulePairs[i];
-                RestogramPhoto currPhoto = null;
-                if (!Boolean.parseBoolean(idRulePairs[i+1]))
-                {
-                    currPhoto = new RestogramPhoto();
-                    currPhoto.setInstagram_id(currPhotoId);
-                    currPhoto.setApproved(false);
-
-                    // TODO: uncomment if filter rules can override photo that have been "yummied"
-//                    HashMap<String, DatastoreUtils.PropertyDescription> props = new HashMap<>();
-//                    props.put(Props.Photo.APPROVED,
-//                            new DatastoreUtils.PropertyDescription(false, true));
-//                    try {
-//                        DatastoreUtils.putPublicEntity(Kinds.PHOTO, currPhotoId, props);
-//                    } catch (LeanException e) {
-//                        log.warning(String.format("cannot store unapproved photo in DS. id:%s, error:%s",
-//                                   currPhotoId, e.getMessage()));
-//                    }
-//                    finally {
-//                        continue;
-//                    }
-                }
-                // TODO: remove when pending list is DS based
-                else if (m_dataManager.isPhotoPending(currPhotoId)) // restore from pending
-                {
-                    currPhoto = m_dataManager.getPendingPhoto(currPhotoId);
+                log.severe("malformed filter result, dismisses: " + currTask.getName());
+                continue;
+            }
 
-                    if (currPhoto != null)
-                        currPhoto.setApproved(true);
-                }
-                else // get from instagram
+            idToRuleMapping.putAll(currResult.getIdToRuleMapping());
+            for (final String currPhotoId : currResult.getIdToRuleMapping().keySet())
+                idToVenueMapping.put(currPhotoId, currResult.getVenueId());
+        }
+
+        final List<RestogramPhoto> photos = new ArrayList<>(idToRuleMapping.size());
+        final List<String> approvedIds = new ArrayList<>(idToRuleMapping.size());
+        for (final Map.Entry<String, Boolean> currEntry : idToRuleMapping.entrySet())
+        {
+            if (currEntry.getValue())
+            {
+                approvedIds.add(currEntry.getKey());
+                continue;
+            }
+
+            final RestogramPhoto currPhoto = new RestogramPhoto();
+            currPhoto.setInstagram_id(currEntry.getKey());
+            currPhoto.setApproved(false);
+            // TODO: store unapproved photos as well if filter rules can override photos that have been "yummied"
+            photos.add(currPhoto);
+        }
+
+        // TODO: remove when pending list is DS based
+        // restore from pending, get the rest from instagram
+        final Map<String, RestogramPhoto> pendingPhotos = m_dataManager.getPendingPhotos(approvedIds);
+        final List<String> missingIds = new ArrayList<>();
+        for (final String currPhotoId : approvedIds)
+        {
+            final RestogramPhoto currPhoto = pendingPhotos.get(currPhotoId);
+            if (currPhoto == null)
+            {
+                missingIds.add(currPhotoId);
+                continue;
+            }
+            currPhoto.setApproved(true);
+            photos.add(currPhoto);
+        }
+        photos.addAll(fetchPhotos(missingIds, idToVenueMapping));
+
+        // update DS, a single merged upsert
+        if (!m_dataManager.savePhotosFilterRules(photos))
+            log.warning("cannot save rules - will ignore");
+
+        //  photos are no longer pending
+        m_dataManager.removePendingPhotos(idToRuleMapping.keySet());
+
+        // done - removes from queue
+        m_tasksManager.dismissFilterResults(tasks);
+    }
+
+    /**
+     * Gets the given approved photos from instagram, concurrently - at most PHOTO_FETCH_THREADS at a time
+     */
+    private static List<RestogramPhoto> fetchPhotos(final List<String> photoIds,
+                                                    final Map<String, String> idToVenueMapping) {
+        final List<RestogramPhoto> photos = new ArrayList<>(photoIds.size());
+        if (photoIds.isEmpty())
+            return photos;
+
+        // the request's executor is unbounded, as the instagram requests' hedges are watched on it as well
+        final ExecutorService executor = RequestExecutor.start();
+        try
+        {
+            final CompletionService<RestogramPhoto> completions = new ExecutorCompletionService<>(executor);
+            final Map<Future<RestogramPhoto>, String> pendingPhotos = new HashMap<>(photoIds.size());
+            final Iterator<String> photoIdsIterator = photoIds.iterator();
+            while (pendingPhotos.size() < Defs.FilterRulesQueue.PHOTO_FETCH_THREADS && photoIdsIterator.hasNext())
+                submitPhotoFetch(completions, pendingPhotos, photoIdsIterator.next());
+
+            while (!pendingPhotos.isEmpty())
+            {
+                final Future<RestogramPhoto> completed = completions.take();
+                final String photoId = pendingPhotos.remove(completed);
+                if (photoIdsIterator.hasNext())
+                    submitPhotoFetch(completions, pendingPhotos, photoIdsIterator.next());
+
+                final RestogramPhoto currPhoto = getResult(completed);
+                if (currPhoto == null)
                 {
-                    currPhoto =
-                            RestogramServer.getInstance().getInstagramManager().getPhoto(currPhotoId);
-                    if (currPhoto == null)
-                    {
-                        log.warning("cannot obtain photo, skips");
-                        continue;
-                    }
-                    //decode string to get the correct encoding
-                    currPhoto.decodeStrings();
-
-                    currPhoto.setOriginVenueId(venueId);
-                    currPhoto.setApproved(true);
+                    log.warning("cannot obtain photo, skips");
+                    continue;
                 }
+                //decode string to get the correct encoding
+                currPhoto.decodeStrings();
 
+                currPhoto.setOriginVenueId(idToVenueMapping.get(photoId));
+                currPhoto.setApproved(true);
                 photos.add(currPhoto);
             }
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        } finally
+        {
+            RequestExecutor.finish(executor);
+        }
+        return photos;
+    }
 
-            // update DS
-            if (!m_dataManager.savePhotosFilterRules(photos))
-                log.warning("cannot save rules - will ignore");
-
-            //  photo is no longer pending
-            final List<String> photoIdsToRemove = new ArrayList<>(idRulePairs.length/2);
-            for (int i = 0; i < idRulePairs.length - 1; i+=2)
-                photoIdsToRemove.add(idRulePairs[i]);
-
-            m_dataManager.removePendingPhotos(photoIdsToRemove);
+    private static void submitPhotoFetch(final CompletionService<RestogramPhoto> completions,
+                                         final Map<Future<RestogramPhoto>, String> pendingPhotos,
+                                         final String photoId) {
+        pendingPhotos.put(completions.submit(new Callable<RestogramPhoto>() {
+            @Override
+            public RestogramPhoto call() {
+                return RestogramServer.getInstance().getInstagramManager().getPhoto(photoId);
+            }
+        }), photoId);
+    }
 
-            // done - removes from queue
-            m_tasksManager.dismissFilterResult(currTask.getName());
+    private static RestogramPhoto getResult(final Future<RestogramPhoto> future) {
+        try
+        {
+            return future.get();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e)
+        {
+            log.warning("getting photo has failed. error: " + e.getCause());
+            return null;
         }
     }
 
+    /**
+     * Doubles the lease count while full batches are leased, halves it when the queue is mostly drained
+     */
+    private static void adaptLeaseCount(final int leaseCount, final int leasedCount) {
+        final int newLeaseCount;
+        if (leasedCount == leaseCount)
+            newLeaseCount = Math.min(leaseCount * 2, Defs.FilterRulesQueue.MAX_LEASE_COUNT);
+        else if (leasedCount < leaseCount / 2)
+            newLeaseCount = Math.max(leaseCount / 2, Defs.FilterRulesQueue.MIN_LEASE_COUNT);
+        else
+            newLeaseCount = leaseCount;
+        leaseCountHolder.compareAndSet(leaseCount, newLeaseCount);
+    }
+
     private static final Logger log =
             Logger.getLogger(FilterRulesServlet.class.getName());
+    private static final AtomicInteger leaseCountHolder =
+            new AtomicInteger(Defs.FilterRulesQueue.MIN_LEASE_COUNT);
     private final DataManager m_dataManager =
             RestogramServer.getInstance().getDataManager();
     private final TasksManager m_tasksManager =
@@ -0,0 +1,54 @@
+package rest.o.gram.service.backend;
+
+import rest.o.gram.data.DataManager;
+import rest.o.gram.server.RestogramServer;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * Folds the sharded yummies counters into the photos, called periodically by cron
+ */
+public class FoldYummiesServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        handleRequest(req, resp);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        handleRequest(req, resp);
+    }
+
+    private void handleRequest(final HttpServletRequest req, final HttpServletResponse resp) {
+        try
+        {
+            final int folded = m_dataManager.foldPhotosYummies();
+            log.info(String.format("folded yummies of %d photos", folded));
+            resp.setStatus(HttpServletResponse.SC_OK);
+        } catch (Exception e)
+        {
+            log.severe("cannot fold yummies. error: " + e.getMessage());
+            try
+            {
+                resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "error while processing");
+            }
+            catch (IOException e2)
+            {
+                log.warning("error while trying  to report error to client: " + e2.getMessage());
+            }
+        }
+    }
+
+    private static final Logger log =
+            Logger.getLogger(FoldYummiesServlet.class.getName());
+    private final DataManager m_dataManager =
+            RestogramServer.getInstance().getDataManager();
+}
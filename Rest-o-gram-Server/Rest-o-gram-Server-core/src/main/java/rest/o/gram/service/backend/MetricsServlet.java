@@ -0,0 +1,113 @@
+package rest.o.gram.service.backend;
+
+import rest.o.gram.Defs;
+import rest.o.gram.InstagramAccessManager;
+import rest.o.gram.hedging.HedgingStats;
+import rest.o.gram.json.JsonCodecs;
+import rest.o.gram.metrics.LatencyHistogram;
+import rest.o.gram.metrics.Metrics;
+import rest.o.gram.tracing.SpanCollector;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Exposes the metrics of the serving instance - as prometheus text by default, or as json (format=json).
+ * Latencies are in micros. Each instance has its own metrics, so a scrape reflects a single instance.
+ */
+public class MetricsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        final SortedMap<String, Long> counters = Metrics.getCounters();
+        addHedgingCounters(counters);
+        counters.put("tracing.dropped_spans", SpanCollector.getInstance().getDroppedCount());
+        final SortedMap<String, LatencyHistogram.Snapshot> histograms = Metrics.getHistograms();
+
+        resp.setCharacterEncoding("UTF-8");
+        if ("json".equals(req.getParameter("format")))
+        {
+            resp.setContentType("application/json");
+            resp.getWriter().write(toJson(counters, histograms));
+        }
+        else
+        {
+            resp.setContentType("text/plain; version=0.0.4");
+            resp.getWriter().write(toPrometheusText(counters, histograms));
+        }
+    }
+
+    private static void addHedgingCounters(final Map<String, Long> counters) {
+        for (final Defs.Instagram.RequestType currType : Defs.Instagram.RequestType.values())
+        {
+            final HedgingStats stats = InstagramAccessManager.getHedgingStats(currType);
+            if (stats == null)
+                continue;
+            final String prefix = InstagramAccessManager.getMetricName(currType) + '.';
+            counters.put(prefix + "requests", stats.getRequests());
+            counters.put(prefix + "hedges", stats.getHedges());
+            counters.put(prefix + "hedge_wins", stats.getHedgeWins());
+            counters.put(prefix + "primary_wins", stats.getPrimaryWins());
+        }
+    }
+
+    private static String toJson(final Map<String, Long> counters,
+                                 final Map<String, LatencyHistogram.Snapshot> histograms) {
+        final Map<String, Map<String, Long>> histogramsValues = new LinkedHashMap<>();
+        for (final Map.Entry<String, LatencyHistogram.Snapshot> currEntry : histograms.entrySet())
+        {
+            final LatencyHistogram.Snapshot snapshot = currEntry.getValue();
+            final Map<String, Long> values = new LinkedHashMap<>();
+            values.put("count", snapshot.getCount());
+            values.put("sum", snapshot.getSum());
+            values.put("max", snapshot.getMax());
+            for (final double currQuantile : QUANTILES)
+                values.put("p" + Math.round(currQuantile * 100), snapshot.getQuantile(currQuantile));
+            histogramsValues.put(currEntry.getKey(), values);
+        }
+
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("counters", counters);
+        result.put("histograms", histogramsValues);
+        return JsonCodecs.getGson().toJson(result);
+    }
+
+    private static String toPrometheusText(final Map<String, Long> counters,
+                                           final Map<String, LatencyHistogram.Snapshot> histograms) {
+        final StringBuilder builder = new StringBuilder();
+        for (final Map.Entry<String, Long> currEntry : counters.entrySet())
+        {
+            final String name = toPrometheusName(currEntry.getKey());
+            builder.append("# TYPE ").append(name).append(" counter\n");
+            builder.append(name).append(' ').append(currEntry.getValue()).append('\n');
+        }
+
+        for (final Map.Entry<String, LatencyHistogram.Snapshot> currEntry : histograms.entrySet())
+        {
+            final String name = toPrometheusName(currEntry.getKey()) + "_micros";
+            final LatencyHistogram.Snapshot snapshot = currEntry.getValue();
+            builder.append("# TYPE ").append(name).append(" summary\n");
+            for (final double currQuantile : QUANTILES)
+            {
+                builder.append(name).append("{quantile=\"").append(currQuantile).append("\"} ")
+                       .append(snapshot.getQuantile(currQuantile)).append('\n');
+            }
+            builder.append(name).append("_sum ").append(snapshot.getSum()).append('\n');
+            builder.append(name).append("_count ").append(snapshot.getCount()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static String toPrometheusName(final String name) {
+        return "restogram_" + name.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+}
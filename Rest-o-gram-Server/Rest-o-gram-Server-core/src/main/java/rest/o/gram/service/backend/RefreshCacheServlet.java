@@ -0,0 +1,80 @@
+package rest.o.gram.service.backend;
+
+import rest.o.gram.Defs;
+import rest.o.gram.foursquare.NearbyVenuesCache;
+import rest.o.gram.instagram.VenueLocationsCache;
+import rest.o.gram.server.RestogramServer;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * Reloads stale cache entries, called by the refresh (push) queue.
+ * Failures are reported with an error status so the queue retries them.
+ */
+public class RefreshCacheServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        handleRequest(req, resp);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        handleRequest(req, resp);
+    }
+
+    private void handleRequest(final HttpServletRequest req, final HttpServletResponse resp) {
+        final String cache = req.getParameter(Defs.RefreshQueue.CACHE_PARAM);
+        try
+        {
+            final boolean isRefreshed;
+            if (NearbyVenuesCache.NAME.equals(cache))
+                isRefreshed = refreshNearbyVenues(req);
+            else if (VenueLocationsCache.NAME.equals(cache))
+                isRefreshed = refreshVenueLocation(req);
+            else
+            {
+                log.warning("unknown cache: " + cache);
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "unknown cache");
+                return;
+            }
+
+            if (isRefreshed)
+                resp.setStatus(HttpServletResponse.SC_OK);
+            else
+                resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "cannot refresh");
+        } catch (Exception e)
+        {
+            log.severe(String.format("cannot refresh %s cache. error: %s", cache, e.getMessage()));
+            try
+            {
+                resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "error while processing");
+            }
+            catch (IOException e2)
+            {
+                log.warning("error while trying  to report error to client: " + e2.getMessage());
+            }
+        }
+    }
+
+    private boolean refreshNearbyVenues(final HttpServletRequest req) {
+        final String cell = req.getParameter(NearbyVenuesCache.CELL_PARAM);
+        final double radius = Double.parseDouble(req.getParameter(NearbyVenuesCache.RADIUS_PARAM));
+        return RestogramServer.getInstance().getNearbyVenuesCache().refresh(cell, radius);
+    }
+
+    private boolean refreshVenueLocation(final HttpServletRequest req) {
+        final String foursquareID = req.getParameter(VenueLocationsCache.VENUE_PARAM);
+        return RestogramServer.getInstance().getVenueLocationsCache().refresh(foursquareID);
+    }
+
+    private static final Logger log =
+            Logger.getLogger(RefreshCacheServlet.class.getName());
+}
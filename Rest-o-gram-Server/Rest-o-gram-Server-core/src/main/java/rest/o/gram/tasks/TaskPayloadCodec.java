@@ -0,0 +1,381 @@
+package rest.o.gram.tasks;
+
+import org.apache.commons.lang3.StringUtils;
+import rest.o.gram.Defs;
+import rest.o.gram.entities.RestogramPhoto;
+import rest.o.gram.utils.InstagramUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes and decodes the payloads of the filter queues.
+ * Binary payloads start with a version byte and a flags byte, followed by the (optionally deflated) body:
+ * the venue id and a count, then photo-id/url pairs (tasks) or photo-id/approval pairs (results).
+ * Strings are length-prefixed UTF-8, lengths and counts are varints.
+ * Legacy text payloads (venue-id;id,value,id,value) are still read - the worker answers a task in its version,
+ * so results of legacy tasks may still arrive. Both directions are implemented, as the worker implements them.
+ */
+public final class TaskPayloadCodec {
+
+    public static final int LEGACY_VERSION = 0;
+    public static final int BINARY_VERSION = 1;
+
+    /**
+     * A filter task - photos image url by photo id, in order
+     */
+    public static final class FilterTask {
+
+        FilterTask(final String venueId, final Map<String, String> idToUrlMapping) {
+            m_venueId = venueId;
+            m_idToUrlMapping = Collections.unmodifiableMap(idToUrlMapping);
+        }
+
+        public String getVenueId() {
+            return m_venueId;
+        }
+
+        public Map<String, String> getIdToUrlMapping() {
+            return m_idToUrlMapping;
+        }
+
+        private final String m_venueId;
+        private final Map<String, String> m_idToUrlMapping;
+    }
+
+    /**
+     * Result of a filter task - photos approval by photo id, in order
+     */
+    public static final class FilterResult {
+
+        FilterResult(final String venueId, final Map<String, Boolean> idToRuleMapping) {
+            m_venueId = venueId;
+            m_idToRuleMapping = Collections.unmodifiableMap(idToRuleMapping);
+        }
+
+        public String getVenueId() {
+            return m_venueId;
+        }
+
+        public Map<String, Boolean> getIdToRuleMapping() {
+            return m_idToRuleMapping;
+        }
+
+        private final String m_venueId;
+        private final Map<String, Boolean> m_idToRuleMapping;
+    }
+
+    /**
+     * Encodes a filter task of the given photos, in the configured outgoing version.
+     * Photos with no image are skipped
+     */
+    public static byte[] encodeFilterTask(final String venueId, final List<RestogramPhoto> photos) {
+        return encodeFilterTask(venueId, photos, Defs.TaskPayloads.OUTGOING_VERSION);
+    }
+
+    static byte[] encodeFilterTask(final String venueId, final List<RestogramPhoto> photos, final int version) {
+        if (version == LEGACY_VERSION)
+        {
+            final StringBuilder payloadBuilder = new StringBuilder();
+            payloadBuilder.append(venueId);
+            payloadBuilder.append(';');
+            boolean isFirst = true;
+            for (final RestogramPhoto currPhoto : photos)
+            {
+                if (!hasImage(currPhoto))
+                    continue;
+
+                if (!isFirst)
+                    payloadBuilder.append(',');
+                payloadBuilder.append(currPhoto.getInstagram_id());
+                payloadBuilder.append(',');
+                payloadBuilder.append(currPhoto.getStandardResolution());
+                isFirst = false;
+            }
+            return payloadBuilder.toString().getBytes(UTF8);
+        }
+
+        int count = 0;
+        for (final RestogramPhoto currPhoto : photos)
+            if (hasImage(currPhoto))
+                ++count;
+
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(64 * (count + 1));
+        writeString(body, venueId);
+        writeVarint(body, count);
+        for (final RestogramPhoto currPhoto : photos)
+        {
+            if (!hasImage(currPhoto))
+                continue;
+            writeString(body, currPhoto.getInstagram_id());
+            writeString(body, currPhoto.getStandardResolution());
+        }
+        return wrap(body.toByteArray());
+    }
+
+    /**
+     * Decodes a filter task, either binary or legacy text
+     * @return the decoded task or null if the payload is malformed
+     */
+    static FilterTask decodeFilterTask(final byte[] payload) {
+        if (payload == null || payload.length == 0)
+            return null;
+
+        if (payload[0] != BINARY_VERSION)
+        {
+            final String[] sections = decodeLegacySections(new String(payload, UTF8));
+            if (sections == null)
+                return null;
+            final Map<String, String> idToUrlMapping = new LinkedHashMap<>();
+            for (int i = 0; i < sections.length - 2; i+=2)
+                idToUrlMapping.put(sections[i+1], sections[i+2]);
+            return new FilterTask(sections[0], idToUrlMapping);
+        }
+
+        final byte[] body = unwrap(payload);
+        if (body == null)
+            return null;
+
+        final int[] position = { 0 };
+        final String venueId = readString(body, position);
+        final int count = readVarint(body, position);
+        if (venueId == null || count < 0)
+            return null;
+
+        final Map<String, String> idToUrlMapping = new LinkedHashMap<>();
+        for (int i = 0; i < count; ++i)
+        {
+            final String currPhotoId = readString(body, position);
+            final String currUrl = readString(body, position);
+            if (currPhotoId == null || currUrl == null)
+                return null;
+            idToUrlMapping.put(currPhotoId, currUrl);
+        }
+        return new FilterTask(venueId, idToUrlMapping);
+    }
+
+    /**
+     * Encodes a filter result in the given version
+     */
+    static byte[] encodeFilterResult(final String venueId, final Map<String, Boolean> idToRuleMapping,
+                                     final int version) {
+        if (version == LEGACY_VERSION)
+        {
+            final StringBuilder payloadBuilder = new StringBuilder();
+            payloadBuilder.append(venueId);
+            payloadBuilder.append(';');
+            boolean isFirst = true;
+            for (final Map.Entry<String, Boolean> currEntry : idToRuleMapping.entrySet())
+            {
+                if (!isFirst)
+                    payloadBuilder.append(',');
+                payloadBuilder.append(currEntry.getKey());
+                payloadBuilder.append(',');
+                payloadBuilder.append(currEntry.getValue());
+                isFirst = false;
+            }
+            return payloadBuilder.toString().getBytes(UTF8);
+        }
+
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(32 * (idToRuleMapping.size() + 1));
+        writeString(body, venueId);
+        writeVarint(body, idToRuleMapping.size());
+        for (final Map.Entry<String, Boolean> currEntry : idToRuleMapping.entrySet())
+        {
+            writeString(body, currEntry.getKey());
+            body.write(currEntry.getValue() ? 1 : 0);
+        }
+        return wrap(body.toByteArray());
+    }
+
+    /**
+     * Decodes a filter result, either binary or legacy text
+     * @return the decoded result or null if the payload is malformed
+     */
+    public static FilterResult decodeFilterResult(final byte[] payload) {
+        if (payload == null || payload.length == 0)
+            return null;
+
+        if (payload[0] != BINARY_VERSION)
+            return decodeLegacyFilterResult(new String(payload, UTF8));
+
+        final byte[] body = unwrap(payload);
+        if (body == null)
+            return null;
+
+        final int[] position = { 0 };
+        final String venueId = readString(body, position);
+        final int count = readVarint(body, position);
+        if (venueId == null || count < 0)
+            return null;
+
+        final Map<String, Boolean> idToRuleMapping = new LinkedHashMap<>();
+        for (int i = 0; i < count; ++i)
+        {
+            final String currPhotoId = readString(body, position);
+            if (currPhotoId == null || position[0] >= body.length)
+                return null;
+            idToRuleMapping.put(currPhotoId, body[position[0]++] != 0);
+        }
+        return new FilterResult(venueId, idToRuleMapping);
+    }
+
+    private static FilterResult decodeLegacyFilterResult(final String payload) {
+        final String[] sections = decodeLegacySections(payload);
+        if (sections == null)
+            return null;
+
+        final Map<String, Boolean> idToRuleMapping = new LinkedHashMap<>();
+        for (int i = 0; i < sections.length - 2; i+=2)
+            idToRuleMapping.put(sections[i+1], Boolean.parseBoolean(sections[i+2]));
+        return new FilterResult(sections[0], idToRuleMapping);
+    }
+
+    /**
+     * @return the venue id followed by the id/value pairs or null if the payload is malformed
+     */
+    private static String[] decodeLegacySections(final String payload) {
+        final int separator = payload.indexOf(';');
+        if (separator < 0 || payload.indexOf(';', separator + 1) >= 0)
+            return null;
+
+        final String[] pairs = StringUtils.split(payload.substring(separator + 1), ',');
+        final String[] sections = new String[pairs.length + 1];
+        sections[0] = payload.substring(0, separator);
+        System.arraycopy(pairs, 0, sections, 1, pairs.length);
+        return sections;
+    }
+
+    private static boolean hasImage(final RestogramPhoto photo) {
+        return !InstagramUtils.isNullOrEmpty(photo) && !StringUtils.isBlank(photo.getStandardResolution());
+    }
+
+    private static byte[] wrap(final byte[] body) {
+        byte flags = 0;
+        byte[] content = body;
+        if (body.length >= Defs.TaskPayloads.DEFLATE_THRESHOLD)
+        {
+            final byte[] deflated = deflate(body);
+            if (deflated.length < body.length)
+            {
+                flags |= FLAG_DEFLATED;
+                content = deflated;
+            }
+        }
+
+        final byte[] payload = new byte[content.length + HEADER_LENGTH];
+        payload[0] = BINARY_VERSION;
+        payload[1] = flags;
+        System.arraycopy(content, 0, payload, HEADER_LENGTH, content.length);
+        return payload;
+    }
+
+    private static byte[] unwrap(final byte[] payload) {
+        if (payload.length < HEADER_LENGTH)
+            return null;
+
+        final byte[] content = new byte[payload.length - HEADER_LENGTH];
+        System.arraycopy(payload, HEADER_LENGTH, content, 0, content.length);
+        return (payload[1] & FLAG_DEFLATED) != 0 ? inflate(content) : content;
+    }
+
+    private static byte[] deflate(final byte[] data) {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try
+        {
+            deflater.setInput(data);
+            deflater.finish();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished())
+                out.write(buffer, 0, deflater.deflate(buffer));
+            return out.toByteArray();
+        } finally
+        {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(final byte[] data) {
+        final Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(data);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 2);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished())
+            {
+                final int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    return null; // truncated
+                out.write(buffer, 0, inflated);
+                if (out.size() > Defs.TaskPayloads.MAX_INFLATED_SIZE)
+                    return null;
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e)
+        {
+            return null;
+        } finally
+        {
+            inflater.end();
+        }
+    }
+
+    private static void writeString(final ByteArrayOutputStream out, final String value) {
+        final byte[] bytes = value.getBytes(UTF8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarint(final ByteArrayOutputStream out, final int value) {
+        int remaining = value;
+        while ((remaining & ~0x7f) != 0)
+        {
+            out.write((remaining & 0x7f) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write(remaining);
+    }
+
+    /**
+     * @return the string or null if the data is malformed
+     */
+    private static String readString(final byte[] data, final int[] position) {
+        final int length = readVarint(data, position);
+        if (length < 0 || length > data.length - position[0])
+            return null;
+        final String value = new String(data, position[0], length, UTF8);
+        position[0] += length;
+        return value;
+    }
+
+    /**
+     * @return the value or -1 if the data is malformed
+     */
+    private static int readVarint(final byte[] data, final int[] position) {
+        int value = 0;
+        for (int shift = 0; shift < 32 && position[0] < data.length; shift += 7)
+        {
+            final byte curr = data[position[0]++];
+            value |= (curr & 0x7f) << shift;
+            if ((curr & 0x80) == 0)
+                return value;
+        }
+        return -1;
+    }
+
+    private TaskPayloadCodec() {}
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int HEADER_LENGTH = 2;
+    private static final byte FLAG_DEFLATED = 1;
+    private static final int BUFFER_SIZE = 4 * 1024;
+}
@@ -4,6 +4,7 @@ import com.google.appengine.api.taskqueue.TaskHandle;
 import rest.o.gram.entities.RestogramPhoto;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created with IntelliJ IDEA.
@@ -17,4 +18,15 @@ public interface TasksManager {
     List<TaskHandle> leaseFilterResults(long count, long period);
 
     boolean dismissFilterResult(String resultName);
+
+    void dismissFilterResults(List<TaskHandle> results);
+
+    /**
+     * Enqueues a refresh of a cache entry, handled by the refresh servlet
+     * @param name unique name of the refresh - a refresh of the same name is enqueued once
+     * @param cache the refreshed cache
+     * @param params the entry's params
+     * @return true if the refresh has been enqueued (now or already), false otherwise
+     */
+    boolean enqueueRefreshTask(String name, String cache, Map<String, String> params);
 }
@@ -1,11 +1,11 @@
 package rest.o.gram.tasks;
 
 import com.google.appengine.api.taskqueue.*;
-import org.apache.commons.lang3.StringUtils;
+import rest.o.gram.Defs;
 import rest.o.gram.entities.RestogramPhoto;
-import rest.o.gram.utils.InstagramUtils;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
@@ -19,22 +19,7 @@ public class TasksManagerImpl implements TasksManager {
     @Override
     public TaskHandle enqueueFilterTask(final String venueId,
                                         final List<RestogramPhoto> rawPhotos) {
-        final StringBuilder payloadBuilder = new StringBuilder();
-        payloadBuilder.append(venueId);
-        payloadBuilder.append(";");
-        for (final RestogramPhoto currPhoto : rawPhotos)
-        {
-            if (InstagramUtils.isNullOrEmpty(currPhoto) || StringUtils.isBlank(currPhoto.getStandardResolution()))
-                continue;
-
-            payloadBuilder.append(currPhoto.getInstagram_id());
-            payloadBuilder.append(",");
-            payloadBuilder.append(currPhoto.getStandardResolution());
-            payloadBuilder.append(",");
-        }
-        payloadBuilder.substring(0, payloadBuilder.length()-1);
-
-        final String payload = payloadBuilder.toString();
+        final byte[] payload = TaskPayloadCodec.encodeFilterTask(venueId, rawPhotos);
         return outgoingQueue.add(TaskOptions.Builder.withMethod(TaskOptions.Method.PULL).payload(payload));
     }
 
@@ -50,7 +35,36 @@ public class TasksManagerImpl implements TasksManager {
         return incomingQueue.deleteTask(resultName);
     }
 
+    @Override
+    public void dismissFilterResults(final List<TaskHandle> results) {
+        if (!results.isEmpty())
+            incomingQueue.deleteTask(results);
+    }
+
+    @Override
+    public boolean enqueueRefreshTask(final String name, final String cache, final Map<String, String> params) {
+        final TaskOptions options = TaskOptions.Builder.withUrl(Defs.RefreshQueue.URL)
+                                                       .taskName(name)
+                                                       .param(Defs.RefreshQueue.CACHE_PARAM, cache);
+        for (final Map.Entry<String, String> currParam : params.entrySet())
+            options.param(currParam.getKey(), currParam.getValue());
+
+        try
+        {
+            refreshQueue.add(options);
+            return true;
+        } catch (TaskAlreadyExistsException e)
+        {
+            return true; // enqueued by another request
+        } catch (Exception e)
+        {
+            log.warning(String.format("cannot enqueue refresh %s, error: %s", name, e.getMessage()));
+            return false;
+        }
+    }
+
     private static final Queue outgoingQueue = QueueFactory.getQueue("outgoing-queue");
     private static final Queue incomingQueue = QueueFactory.getQueue("incoming-queue");
+    private static final Queue refreshQueue = QueueFactory.getQueue(Defs.RefreshQueue.NAME);
     private static final Logger log = Logger.getLogger(TasksManagerImpl.class.getName());
 }
@@ -0,0 +1,98 @@
+package rest.o.gram.tracing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A timed operation of a trace. A span is finished once - finishing it again has no effect.
+ * Scoped spans are the current span of their thread until finished, so they must be finished by that thread.
+ */
+public final class Span {
+
+    public enum Kind
+    {
+        Server, Client, Local
+    }
+
+    public TraceContext getContext() {
+        return m_context;
+    }
+
+    /**
+     * Adds a tag to this span, ignored once it has finished
+     * @return this span
+     */
+    public Span tag(final String key, final String value) {
+        if (m_context.isSampled() && !m_finished.get())
+        {
+            synchronized (m_tags)
+            {
+                m_tags.put(key, value);
+            }
+        }
+        return this;
+    }
+
+    public void finish() {
+        if (!m_finished.compareAndSet(false, true))
+            return;
+
+        m_durationMicros = (System.nanoTime() - m_startNanos) / 1000;
+        if (m_isScoped)
+            Tracer.onScopeFinished(this);
+        if (m_context.isSampled())
+            SpanCollector.getInstance().add(this);
+    }
+
+    Span(final String name, final Kind kind, final TraceContext context, final Span parent, final boolean isScoped) {
+        m_name = name;
+        m_kind = kind;
+        m_context = context;
+        m_parent = parent;
+        m_isScoped = isScoped;
+        m_startMicros = System.currentTimeMillis() * 1000;
+        m_startNanos = System.nanoTime();
+    }
+
+    String getName() {
+        return m_name;
+    }
+
+    Kind getKind() {
+        return m_kind;
+    }
+
+    /**
+     * @return the enclosing span of this thread, restored when this scoped span finishes
+     */
+    Span getParent() {
+        return m_parent;
+    }
+
+    long getStartMicros() {
+        return m_startMicros;
+    }
+
+    long getDurationMicros() {
+        return m_durationMicros;
+    }
+
+    Map<String, String> getTags() {
+        synchronized (m_tags)
+        {
+            return new LinkedHashMap<>(m_tags);
+        }
+    }
+
+    private final String m_name;
+    private final Kind m_kind;
+    private final TraceContext m_context;
+    private final Span m_parent;
+    private final boolean m_isScoped;
+    private final long m_startMicros; // epoch
+    private final long m_startNanos;
+    private final Map<String, String> m_tags = new LinkedHashMap<>();
+    private final AtomicBoolean m_finished = new AtomicBoolean();
+    private volatile long m_durationMicros;
+}
@@ -0,0 +1,129 @@
+package rest.o.gram.tracing;
+
+import com.google.appengine.api.utils.SystemProperty;
+import com.google.gson.stream.JsonWriter;
+import rest.o.gram.Defs;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Gathers the finished spans of the instance and writes them in batches, each batch is a single log line
+ * of the "rest.o.gram.tracing.spans" logger, holding a zipkin (v2) JSON array of spans.
+ * Batches are written at the end of requests, as GAE frontends have no background threads.
+ */
+public final class SpanCollector {
+
+    public static SpanCollector getInstance() {
+        return m_instance;
+    }
+
+    /**
+     * @return the count of spans dropped since the instance has started, due to a backed up collector
+     */
+    public long getDroppedCount() {
+        return m_dropped.get();
+    }
+
+    void add(final Span span) {
+        if (m_pendingCount.incrementAndGet() > Defs.Tracing.MAX_PENDING_SPANS)
+        {
+            m_pendingCount.decrementAndGet();
+            m_dropped.incrementAndGet();
+            return;
+        }
+        m_pending.add(span);
+    }
+
+    /**
+     * Writes the pending spans if a full batch has gathered or the flush period has passed
+     */
+    void flushIfDue() {
+        final long now = System.currentTimeMillis();
+        final long lastFlush = m_lastFlush.get();
+        final int pendingCount = m_pendingCount.get();
+        if (pendingCount == 0 ||
+                (pendingCount < Defs.Tracing.BATCH_SIZE && now - lastFlush < Defs.Tracing.FLUSH_PERIOD))
+            return;
+        if (!m_lastFlush.compareAndSet(lastFlush, now))
+            return; // another request is flushing
+
+        final List<Span> batch = new ArrayList<>(Defs.Tracing.BATCH_SIZE);
+        Span span;
+        while ((span = m_pending.poll()) != null)
+        {
+            m_pendingCount.decrementAndGet();
+            batch.add(span);
+            if (batch.size() == Defs.Tracing.BATCH_SIZE)
+            {
+                write(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty())
+            write(batch);
+    }
+
+    private void write(final List<Span> batch) {
+        final StringWriter content = new StringWriter();
+        final JsonWriter writer = new JsonWriter(content);
+        try
+        {
+            writer.beginArray();
+            for (final Span currSpan : batch)
+                writeSpan(writer, currSpan);
+            writer.endArray();
+            writer.close();
+        } catch (IOException e)
+        {
+            log.warning("cannot write spans batch, error: " + e.getMessage());
+            return;
+        }
+        spansLog.info(content.toString());
+    }
+
+    private static void writeSpan(final JsonWriter writer, final Span span) throws IOException {
+        final TraceContext context = span.getContext();
+        writer.beginObject();
+        writer.name("traceId").value(TraceContext.toHex(context.getTraceId()));
+        writer.name("id").value(TraceContext.toHex(context.getSpanId()));
+        if (context.getParentId() != 0)
+            writer.name("parentId").value(TraceContext.toHex(context.getParentId()));
+        writer.name("name").value(span.getName());
+        if (span.getKind() != Span.Kind.Local)
+            writer.name("kind").value(span.getKind().name().toUpperCase());
+        writer.name("timestamp").value(span.getStartMicros());
+        writer.name("duration").value(span.getDurationMicros());
+        writer.name("localEndpoint").beginObject().name("serviceName").value(serviceName).endObject();
+
+        final Map<String, String> tags = span.getTags();
+        if (!tags.isEmpty())
+        {
+            writer.name("tags").beginObject();
+            for (final Map.Entry<String, String> currTag : tags.entrySet())
+                writer.name(currTag.getKey()).value(currTag.getValue());
+            writer.endObject();
+        }
+        writer.endObject();
+    }
+
+    private SpanCollector() {}
+
+    private static final Logger log = Logger.getLogger(SpanCollector.class.getName());
+    private static final Logger spansLog = Logger.getLogger("rest.o.gram.tracing.spans");
+    // the frontend and each of the helpers are separate apps
+    private static final String serviceName = String.valueOf(SystemProperty.applicationId.get());
+    private static final SpanCollector m_instance = new SpanCollector();
+    private final Queue<Span> m_pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger m_pendingCount = new AtomicInteger();
+    private final AtomicLong m_lastFlush = new AtomicLong(System.currentTimeMillis());
+    private final AtomicLong m_dropped = new AtomicLong();
+}
@@ -0,0 +1,105 @@
+package rest.o.gram.tracing;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The propagated identity of a span - encoded in the b3 single header format, "trace-span-sampled"
+ */
+public final class TraceContext {
+
+    /**
+     * @return a context of a new trace
+     */
+    static TraceContext createRoot(final boolean isSampled) {
+        return new TraceContext(nextId(), nextId(), 0, isSampled);
+    }
+
+    /**
+     * @return a context of a new child span of the given context
+     */
+    static TraceContext createChild(final TraceContext parent) {
+        return new TraceContext(parent.m_traceId, nextId(), parent.m_spanId, parent.m_isSampled);
+    }
+
+    /**
+     * Decodes the given header value
+     * @return the decoded context or null if the value is missing or malformed
+     */
+    static TraceContext decode(final String value) {
+        if (value == null || value.length() != ENCODED_LENGTH ||
+                value.charAt(ID_LENGTH) != SEPARATOR || value.charAt(2 * ID_LENGTH + 1) != SEPARATOR)
+            return null;
+
+        try
+        {
+            final long traceId = parseId(value, 0);
+            final long spanId = parseId(value, ID_LENGTH + 1);
+            final char sampled = value.charAt(ENCODED_LENGTH - 1);
+            if (sampled != '0' && sampled != '1')
+                return null;
+            return new TraceContext(traceId, spanId, 0, sampled == '1');
+        } catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    public String encode() {
+        return toHex(m_traceId) + SEPARATOR + toHex(m_spanId) + SEPARATOR + (m_isSampled ? '1' : '0');
+    }
+
+    public long getTraceId() {
+        return m_traceId;
+    }
+
+    public long getSpanId() {
+        return m_spanId;
+    }
+
+    /**
+     * @return the id of the parent span, 0 for a root span
+     */
+    public long getParentId() {
+        return m_parentId;
+    }
+
+    public boolean isSampled() {
+        return m_isSampled;
+    }
+
+    static String toHex(final long id) {
+        final String hex = Long.toHexString(id);
+        return ZEROS.substring(hex.length()) + hex;
+    }
+
+    private TraceContext(final long traceId, final long spanId, final long parentId, final boolean isSampled) {
+        m_traceId = traceId;
+        m_spanId = spanId;
+        m_parentId = parentId;
+        m_isSampled = isSampled;
+    }
+
+    private static long parseId(final String value, final int start) {
+        // parsed by halves, as ids use all 64 bits
+        return Long.parseLong(value.substring(start, start + ID_LENGTH / 2), 16) << 32 |
+               Long.parseLong(value.substring(start + ID_LENGTH / 2, start + ID_LENGTH), 16);
+    }
+
+    private static long nextId() {
+        long id;
+        do
+        {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0); // reserved for "no parent"
+        return id;
+    }
+
+    private static final int ID_LENGTH = 16; // hex digits
+    private static final int ENCODED_LENGTH = 2 * ID_LENGTH + 3;
+    private static final char SEPARATOR = '-';
+    private static final String ZEROS = "0000000000000000";
+    private final long m_traceId;
+    private final long m_spanId;
+    private final long m_parentId;
+    private final boolean m_isSampled;
+}
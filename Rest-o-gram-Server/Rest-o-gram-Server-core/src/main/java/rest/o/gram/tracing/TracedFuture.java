@@ -0,0 +1,65 @@
+package rest.o.gram.tracing;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Finishes the span of an asynchronous operation once its outcome is observed - completed, failed or cancelled
+ */
+public final class TracedFuture<V> implements Future<V> {
+
+    public TracedFuture(final Span span, final Future<V> future) {
+        m_span = span;
+        m_future = future;
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        m_span.tag("cancelled", "true").finish();
+        return m_future.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return m_future.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return m_future.isDone();
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+        try
+        {
+            final V result = m_future.get();
+            m_span.finish();
+            return result;
+        } catch (ExecutionException e)
+        {
+            m_span.tag("error", String.valueOf(e.getCause())).finish();
+            throw e;
+        }
+    }
+
+    @Override
+    public V get(final long timeout, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        try
+        {
+            final V result = m_future.get(timeout, unit);
+            m_span.finish();
+            return result;
+        } catch (ExecutionException e)
+        {
+            m_span.tag("error", String.valueOf(e.getCause())).finish();
+            throw e;
+        }
+    }
+
+    private final Span m_span;
+    private final Future<V> m_future;
+}
@@ -0,0 +1,99 @@
+package rest.o.gram.tracing;
+
+import rest.o.gram.Defs;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Starts spans as children of the thread's current span. Concurrent work of a request joins its trace
+ * by being wrapped (see {@link #wrap(Runnable)}) when submitted - pooled threads do not carry the span
+ * of whoever started them.
+ */
+public final class Tracer {
+
+    /**
+     * The header which propagates the trace context between apps
+     */
+    public static final String HEADER = "b3";
+
+    /**
+     * Starts the span of an incoming request, joining the caller's trace if it has propagated one
+     * @param header the value of the trace header or null
+     */
+    public static Span startRequest(final String name, final String header) {
+        final TraceContext parent = TraceContext.decode(header);
+        final TraceContext context = parent != null ?
+                TraceContext.createChild(parent) :
+                TraceContext.createRoot(ThreadLocalRandom.current().nextDouble() < Defs.Tracing.SAMPLE_RATE);
+        final Span span = new Span(name, Span.Kind.Server, context, null, true);
+        current.set(span);
+        return span;
+    }
+
+    /**
+     * Finishes the span of an incoming request, and writes the pending spans if a batch is due
+     */
+    public static void endRequest(final Span span) {
+        span.finish();
+        current.remove(); // request threads are pooled
+        SpanCollector.getInstance().flushIfDue();
+    }
+
+    /**
+     * Starts a local span, which is the current span of this thread until finished
+     */
+    public static Span startSpan(final String name) {
+        final Span parent = current.get();
+        final Span span = new Span(name, Span.Kind.Local, createContext(parent), parent, true);
+        current.set(span);
+        return span;
+    }
+
+    /**
+     * Starts a span of an outgoing request - not scoped, so it may be finished by any thread
+     */
+    public static Span startClientSpan(final String name) {
+        return new Span(name, Span.Kind.Client, createContext(current.get()), null, false);
+    }
+
+    /**
+     * Runs the given task under the span which is current now, then restores the running thread's own span
+     */
+    public static Runnable wrap(final Runnable task) {
+        final Span span = current.get();
+        return new Runnable() {
+            @Override
+            public void run() {
+                final Span previous = current.get();
+                current.set(span);
+                try
+                {
+                    task.run();
+                } finally
+                {
+                    if (previous != null)
+                        current.set(previous);
+                    else
+                        current.remove(); // worker threads are pooled
+                }
+            }
+        };
+    }
+
+    static void onScopeFinished(final Span span) {
+        // spans finished out of order leave the current span as is
+        if (current.get() == span)
+            current.set(span.getParent());
+    }
+
+    private static TraceContext createContext(final Span parent) {
+        // work outside of any request is not traced
+        return parent != null ?
+                TraceContext.createChild(parent.getContext()) :
+                TraceContext.createRoot(false);
+    }
+
+    private Tracer() {}
+
+    private static final ThreadLocal<Span> current = new ThreadLocal<>();
+}
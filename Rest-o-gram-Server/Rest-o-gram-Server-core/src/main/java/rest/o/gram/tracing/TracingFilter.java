@@ -0,0 +1,35 @@
+package rest.o.gram.tracing;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * Traces incoming requests - joins the caller's trace when propagated (helpers), otherwise starts a sampled trace
+ */
+public class TracingFilter implements Filter {
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        // nothing to do
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        final HttpServletRequest httpRequest = (HttpServletRequest)request;
+        final Span span = Tracer.startRequest(httpRequest.getServletPath(), httpRequest.getHeader(Tracer.HEADER));
+        try
+        {
+            chain.doFilter(request, response);
+        } finally
+        {
+            Tracer.endRequest(span);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // nothing to do
+    }
+}
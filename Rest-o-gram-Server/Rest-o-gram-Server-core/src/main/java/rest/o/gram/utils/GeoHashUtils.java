@@ -0,0 +1,120 @@
+package rest.o.gram.utils;
+
+public final class GeoHashUtils {
+
+    /**
+     * Encodes the given location as a geohash of the given precision
+     */
+    public static String encode(final double latitude, final double longitude, final int precision) {
+        final StringBuilder hash = new StringBuilder(precision);
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        boolean isLngBit = true;
+        int bit = 0, ch = 0;
+
+        while (hash.length() < precision)
+        {
+            if (isLngBit)
+            {
+                final double mid = (minLng + maxLng) / 2;
+                if (longitude >= mid)
+                {
+                    ch |= BITS[bit];
+                    minLng = mid;
+                }
+                else
+                    maxLng = mid;
+            }
+            else
+            {
+                final double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid)
+                {
+                    ch |= BITS[bit];
+                    minLat = mid;
+                }
+                else
+                    maxLat = mid;
+            }
+
+            isLngBit = !isLngBit;
+            if (bit < 4)
+                ++bit;
+            else
+            {
+                hash.append(BASE32.charAt(ch));
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    /**
+     * Decodes the given geohash to the center of its cell
+     * @return latitude and longitude of the cell's center
+     */
+    public static double[] decodeCenter(final String hash) {
+        final double[] bounds = decodeBounds(hash);
+        return new double[] { (bounds[0] + bounds[2]) / 2, (bounds[1] + bounds[3]) / 2 };
+    }
+
+    /**
+     * Decodes the given geohash to the bounds of its cell
+     * @return minimal latitude, minimal longitude, maximal latitude and maximal longitude of the cell
+     */
+    public static double[] decodeBounds(final String hash) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        boolean isLngBit = true;
+
+        for (int i = 0; i < hash.length(); ++i)
+        {
+            final int ch = BASE32.indexOf(hash.charAt(i));
+            for (final int currBit : BITS)
+            {
+                if (isLngBit)
+                {
+                    final double mid = (minLng + maxLng) / 2;
+                    if ((ch & currBit) != 0)
+                        minLng = mid;
+                    else
+                        maxLng = mid;
+                }
+                else
+                {
+                    final double mid = (minLat + maxLat) / 2;
+                    if ((ch & currBit) != 0)
+                        minLat = mid;
+                    else
+                        maxLat = mid;
+                }
+                isLngBit = !isLngBit;
+            }
+        }
+        return new double[] { minLat, minLng, maxLat, maxLng };
+    }
+
+    /**
+     * Gets the coarsest precision whose cells are not wider than the given width
+     * @param width maximal cell width (meters)
+     * @param minPrecision the coarsest precision allowed
+     * @param maxPrecision the finest precision allowed
+     */
+    public static int getPrecision(final double width, final int minPrecision, final int maxPrecision) {
+        for (int precision = minPrecision; precision < maxPrecision; ++precision)
+        {
+            if (CELL_WIDTHS[precision] <= width)
+                return precision;
+        }
+        return maxPrecision;
+    }
+
+    private GeoHashUtils() {}
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    private static final int[] BITS = { 16, 8, 4, 2, 1 };
+    // approximate cell width (meters) at the equator, by precision
+    private static final double[] CELL_WIDTHS =
+            { 40075000, 5009400, 1252300, 156500, 39100, 4900, 1200, 153, 38, 4.8, 1.2, 0.15, 0.037 };
+}
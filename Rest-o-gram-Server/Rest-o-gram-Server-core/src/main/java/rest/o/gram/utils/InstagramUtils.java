@@ -2,11 +2,16 @@ package rest.o.gram.utils;
 
 import org.jinstagram.Instagram;
 import org.jinstagram.InstagramConfig;
+import org.jinstagram.InstagramObject;
+import org.jinstagram.InstagramResponse;
 import org.jinstagram.entity.locations.LocationSearchFeed;
 import org.jinstagram.entity.media.MediaInfoFeed;
 import org.jinstagram.entity.users.feed.MediaFeed;
+import org.jinstagram.exceptions.InstagramRateLimitException;
 import rest.o.gram.Defs;
 import rest.o.gram.credentials.Credentials;
+import rest.o.gram.credentials.CredentialsGovernor;
+import rest.o.gram.credentials.GovernedCredentialsFactory;
 import rest.o.gram.credentials.ICredentialsFactory;
 import rest.o.gram.entities.RestogramPhoto;
 import rest.o.gram.service.InstagramServices.Entities.EmptyLocationSearchFeed;
@@ -14,6 +19,7 @@ import rest.o.gram.service.InstagramServices.Entities.EmptyRestogramPhoto;
 import rest.o.gram.service.InstagramServices.Entities.EmptyRestogramPhotos;
 import rest.o.gram.service.InstagramServices.Entities.RestogramPhotos;
 
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -48,7 +54,21 @@ public final class InstagramUtils {
 
     public static Instagram createInstagramAPI(final ICredentialsFactory credentialsFactory,
                                                 final Logger log) {
-        final Credentials credentials = credentialsFactory.createInstagramCredentials();
+        return createInstagramAPI(credentialsFactory.createInstagramCredentials(), log);
+    }
+
+    /**
+     * Creates an instagram client using the given credentials
+     * @return the instagram client or null if no credentials were given
+     */
+    public static Instagram createInstagramAPI(final Credentials credentials,
+                                                final Logger log) {
+        if (credentials == null)
+        {
+            if (log != null)
+                log.warning("no instagram credentials are available");
+            return null;
+        }
         if (log != null)
             log.info("instagram credentials type = " + credentials.getType());
         final InstagramConfig config = new InstagramConfig();
@@ -56,4 +76,42 @@ public final class InstagramUtils {
         config.setReadTimeoutMills(Defs.Instagram.REQUESTS_READ_TIMEOUT * 1000);
         return new Instagram(credentials.getClientId(), config);
     }
+
+    /**
+     * Reports the rate-limit status of an instagram response (or error) to the credentials governor
+     * @param credentials the credentials used for the request
+     * @param response the instagram response or error
+     */
+    public static void reportRateLimit(final Credentials credentials, final InstagramResponse response) {
+        if (response == null)
+            return;
+        final CredentialsGovernor governor = GovernedCredentialsFactory.getInstagramGovernor();
+        if (response instanceof InstagramRateLimitException)
+        {
+            governor.onRateLimited(credentials);
+            return;
+        }
+        if (!(response instanceof InstagramObject))
+        {
+            // an error - reports -1 (ignored) when it was raised before a response arrived
+            governor.onRemainingQuota(credentials, response.getRemainingLimitStatus());
+            return;
+        }
+
+        // read directly, as the library's parsing fails on responses without the header
+        final Map<String, String> headers = ((InstagramObject)response).getHeaders();
+        final String remaining = headers != null ? headers.get(Defs.Instagram.RATE_LIMIT_REMAINING_HEADER) : null;
+        if (remaining == null)
+            return;
+        try
+        {
+            governor.onRemainingQuota(credentials, Long.parseLong(remaining.trim()));
+        }
+        catch (NumberFormatException e)
+        {
+            log.warning("invalid instagram rate limit header: " + remaining);
+        }
+    }
+
+    private static final Logger log = Logger.getLogger(InstagramUtils.class.getName());
 }
@@ -0,0 +1,54 @@
+package rest.o.gram.credentials;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+
+    @Test
+    public void startsFull() {
+        final TokenBucket bucket = new TokenBucket(3, HOUR);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void waitTimeFollowsRefillRate() {
+        final TokenBucket bucket = new TokenBucket(10, HOUR);
+        assertEquals(0, bucket.getWaitTime());
+
+        bucket.drain();
+        assertFalse(bucket.tryAcquire());
+        final long waitTime = bucket.getWaitTime();
+        assertTrue(waitTime > 0);
+        assertTrue(waitTime <= HOUR / 10); // a token per tenth of the refill period
+    }
+
+    @Test
+    public void syncOnlyLowersTokens() {
+        final TokenBucket bucket = new TokenBucket(10, HOUR);
+        bucket.sync(100);
+        assertTrue(bucket.getAvailable() <= 10);
+
+        bucket.sync(1);
+        assertTrue(bucket.getAvailable() < 2);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        bucket.sync(-5);
+        assertTrue(bucket.getAvailable() < 1);
+    }
+
+    @Test
+    public void refillsUpToCapacity() throws InterruptedException {
+        final TokenBucket bucket = new TokenBucket(2, 20);
+        bucket.drain();
+        Thread.sleep(100); // several refill periods
+        assertEquals(2, bucket.getAvailable(), 0);
+    }
+
+    private static final long HOUR = 60 * 60 * 1000; // millis
+}
@@ -0,0 +1,58 @@
+package rest.o.gram.filters;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TagMatcherTest {
+
+    @Test
+    public void foldsCase() {
+        final TagMatcher matcher = TagMatcher.compile(TagMatcher.parse("Sushi,pizza:2"));
+        assertEquals(1.0, matcher.score(new String[] { "sushi" }), DELTA);
+        assertEquals(1.0, matcher.score(new String[] { "SUSHI" }), DELTA);
+        assertEquals(2.0, matcher.score(new String[] { "PiZzA" }), DELTA);
+        assertEquals(3.0, matcher.scoreText("Best SUSHI and Pizza in town"), DELTA);
+    }
+
+    @Test
+    public void foldsCaseOfAccentedLetters() {
+        final TagMatcher matcher = TagMatcher.compile(TagMatcher.parse("crème brûlée"));
+        assertEquals(1.0, matcher.score(new String[] { "CRÈME BRÛLÉE" }), DELTA);
+        assertEquals(1.0, matcher.score(new String[] { "creme brulee" }), DELTA);
+    }
+
+    @Test
+    public void foldsCaseBeyondLatin() {
+        final TagMatcher matcher = TagMatcher.compile(TagMatcher.parse("ΚΑΦΕΣ"));
+        assertEquals(1.0, matcher.score(new String[] { "καφες" }), DELTA);
+    }
+
+    @Test
+    public void foldsHashAndHebrewFinalLetters() {
+        final TagMatcher matcher = TagMatcher.compile(TagMatcher.parse("#Food,שלום"));
+        assertEquals(1.0, matcher.score(new String[] { "#FOOD" }), DELTA);
+        assertEquals(1.0, matcher.score(new String[] { "food" }), DELTA);
+        assertEquals(1.0, matcher.score(new String[] { "שלומ" }), DELTA);
+    }
+
+    @Test
+    public void parsesDuplicatesOfDifferentCaseOnce() {
+        final Map<String, Double> weights = TagMatcher.parse("Burger:1, BURGER:3");
+        assertEquals(1, weights.size());
+        assertEquals(3.0, weights.get("burger"), DELTA);
+        assertEquals(1, TagMatcher.compile(weights).size());
+    }
+
+    @Test
+    public void doesNotMatchOtherTags() {
+        final TagMatcher matcher = TagMatcher.compile(TagMatcher.parse("sushi"));
+        assertEquals(0, matcher.score(new String[] { "sushibar", "sush", null }), DELTA);
+        assertEquals(0, matcher.score(null), DELTA);
+        assertEquals(0, matcher.scoreText("SushiBar"), DELTA);
+    }
+
+    private static final double DELTA = 1e-9;
+}
@@ -0,0 +1,45 @@
+package rest.o.gram.hedging;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyTrackerTest {
+
+    @Test
+    public void reportsDefaultUntilEnoughSamples() {
+        final LatencyTracker tracker = new LatencyTracker(100, 10);
+        for (int i = 0; i < 9; ++i)
+            tracker.record(500);
+        assertEquals(800, tracker.getPercentile(0.95, 800));
+
+        tracker.record(500);
+        assertNotEquals(800, tracker.getPercentile(0.95, 800));
+    }
+
+    @Test
+    public void percentileIsWithinHistogramPrecision() {
+        final LatencyTracker tracker = new LatencyTracker(100, 10);
+        for (int i = 1; i <= 100; ++i)
+            tracker.record(i * 10); // 10..1000 millis
+
+        final long p95 = tracker.getPercentile(0.95, 0);
+        assertTrue(p95 >= 950);
+        assertTrue(p95 <= 950 + 950 / 16 + 1);
+    }
+
+    @Test
+    public void forgetsOldSamples() {
+        final LatencyTracker tracker = new LatencyTracker(50, 10);
+        for (int i = 0; i < 50; ++i)
+            tracker.record(2000);
+        assertTrue(tracker.getPercentile(0.5, 0) >= 2000);
+
+        // two windows of fast requests replace the slow ones
+        for (int i = 0; i < 100; ++i)
+            tracker.record(100);
+        final long p99 = tracker.getPercentile(0.99, 0);
+        assertTrue(p99 >= 100);
+        assertTrue(p99 < 2000);
+    }
+}
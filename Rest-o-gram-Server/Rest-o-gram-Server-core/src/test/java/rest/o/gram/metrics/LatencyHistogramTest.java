@@ -0,0 +1,88 @@
+package rest.o.gram.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void boundsQuantilesWithinASubBucket() {
+        final Random random = new Random(42);
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final long[] latencies = new long[10000];
+        for (int i = 0; i < latencies.length; ++i)
+        {
+            // micros, spread over several powers of two
+            latencies[i] = (long)Math.exp(random.nextDouble() * Math.log(10000000));
+            histogram.record(latencies[i] * 1000);
+        }
+        Arrays.sort(latencies);
+
+        final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        for (final double quantile : new double[] { 0.01, 0.1, 0.5, 0.9, 0.95, 0.99, 0.999 })
+        {
+            final long expected = latencies[(int)Math.ceil(quantile * latencies.length) - 1];
+            final long actual = snapshot.getQuantile(quantile);
+            // an upper bound, at most a sub bucket (1/16) above
+            assertTrue(quantile + ": " + actual + " < " + expected, actual >= expected);
+            assertTrue(quantile + ": " + actual + " > " + expected, actual <= expected + expected / 16);
+        }
+    }
+
+    @Test
+    public void keepsSmallLatenciesExact() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 0; micros < 16; ++micros)
+            histogram.record(micros * 1000);
+
+        final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(0, snapshot.getQuantile(1.0 / 16));
+        assertEquals(7, snapshot.getQuantile(0.5));
+        assertEquals(15, snapshot.getQuantile(1));
+    }
+
+    @Test
+    public void neverExceedsMax() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000001000); // in the middle of its bucket
+        final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(1000001, snapshot.getMax());
+        assertEquals(1000001, snapshot.getQuantile(0.5));
+        assertEquals(1000001, snapshot.getQuantile(1));
+    }
+
+    @Test
+    public void clampsHugeLatencies() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-1);
+        final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.getQuantile(0.5));
+        assertEquals(Long.MAX_VALUE / 1000, snapshot.getQuantile(1));
+    }
+
+    @Test
+    public void returnsZeroWhenEmpty() {
+        assertEquals(0, new LatencyHistogram().getSnapshot().getQuantile(0.99));
+    }
+
+    @Test
+    public void mergesSnapshots() {
+        final LatencyHistogram fast = new LatencyHistogram();
+        final LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 99; ++i)
+            fast.record(1000);
+        slow.record(500000000);
+
+        final LatencyHistogram.Snapshot merged = fast.getSnapshot().merge(slow.getSnapshot());
+        assertEquals(100, merged.getCount());
+        assertEquals(99 + 500000, merged.getSum());
+        assertEquals(1, merged.getQuantile(0.99));
+        assertEquals(500000, merged.getQuantile(0.999));
+    }
+}
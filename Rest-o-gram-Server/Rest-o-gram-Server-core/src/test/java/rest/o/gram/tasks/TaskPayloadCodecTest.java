@@ -0,0 +1,126 @@
+package rest.o.gram.tasks;
+
+import org.junit.Test;
+import rest.o.gram.entities.RestogramPhoto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TaskPayloadCodecTest {
+
+    @Test
+    public void roundTripsBinaryTask() {
+        final List<RestogramPhoto> photos = Arrays.asList(
+                createPhoto("1_1", "http://images.example.com/a,b/1.jpg"),
+                createPhoto("1_2", "http://images.example.com/2.jpg?w=640,h=640"));
+        final byte[] payload = TaskPayloadCodec.encodeFilterTask(VENUE_ID, photos, TaskPayloadCodec.BINARY_VERSION);
+        assertEquals(TaskPayloadCodec.BINARY_VERSION, payload[0]);
+
+        final TaskPayloadCodec.FilterTask task = TaskPayloadCodec.decodeFilterTask(payload);
+        assertEquals(VENUE_ID, task.getVenueId());
+        assertEquals(toIdToUrlMapping(photos), task.getIdToUrlMapping());
+    }
+
+    @Test
+    public void roundTripsDeflatedBinaryTask() {
+        final List<RestogramPhoto> photos = new ArrayList<>();
+        for (int i = 0; i < 50; ++i)
+            photos.add(createPhoto("1_" + i, "http://images.example.com/photos,large/" + i + ".jpg"));
+        final byte[] payload = TaskPayloadCodec.encodeFilterTask(VENUE_ID, photos, TaskPayloadCodec.BINARY_VERSION);
+        assertEquals(1, payload[1]); // deflated
+
+        final TaskPayloadCodec.FilterTask task = TaskPayloadCodec.decodeFilterTask(payload);
+        assertEquals(toIdToUrlMapping(photos), task.getIdToUrlMapping());
+    }
+
+    @Test
+    public void roundTripsLegacyTask() {
+        final List<RestogramPhoto> photos = Arrays.asList(
+                createPhoto("1_1", "http://images.example.com/1.jpg"),
+                createPhoto("1_2", "http://images.example.com/2.jpg"));
+        final byte[] payload = TaskPayloadCodec.encodeFilterTask(VENUE_ID, photos, TaskPayloadCodec.LEGACY_VERSION);
+        assertEquals(VENUE_ID + ";1_1,http://images.example.com/1.jpg,1_2,http://images.example.com/2.jpg",
+                     new String(payload));
+
+        final TaskPayloadCodec.FilterTask task = TaskPayloadCodec.decodeFilterTask(payload);
+        assertEquals(VENUE_ID, task.getVenueId());
+        assertEquals(toIdToUrlMapping(photos), task.getIdToUrlMapping());
+    }
+
+    @Test
+    public void skipsPhotosWithNoImage() {
+        final List<RestogramPhoto> photos = Arrays.asList(
+                createPhoto("1_1", "http://images.example.com/1.jpg"),
+                createPhoto("1_2", null),
+                createPhoto("1_3", " "));
+        for (final int version : new int[] { TaskPayloadCodec.LEGACY_VERSION, TaskPayloadCodec.BINARY_VERSION })
+        {
+            final TaskPayloadCodec.FilterTask task =
+                    TaskPayloadCodec.decodeFilterTask(TaskPayloadCodec.encodeFilterTask(VENUE_ID, photos, version));
+            assertEquals(toIdToUrlMapping(photos.subList(0, 1)), task.getIdToUrlMapping());
+        }
+    }
+
+    @Test
+    public void roundTripsResultInBothVersions() {
+        final Map<String, Boolean> idToRuleMapping = new LinkedHashMap<>();
+        idToRuleMapping.put("1_1", true);
+        idToRuleMapping.put("1_2", false);
+        idToRuleMapping.put("1_3", true);
+        for (final int version : new int[] { TaskPayloadCodec.LEGACY_VERSION, TaskPayloadCodec.BINARY_VERSION })
+        {
+            final TaskPayloadCodec.FilterResult result = TaskPayloadCodec.decodeFilterResult(
+                    TaskPayloadCodec.encodeFilterResult(VENUE_ID, idToRuleMapping, version));
+            assertEquals(VENUE_ID, result.getVenueId());
+            assertEquals(idToRuleMapping, result.getIdToRuleMapping());
+            // in order
+            assertEquals(new ArrayList<>(idToRuleMapping.keySet()),
+                         new ArrayList<>(result.getIdToRuleMapping().keySet()));
+        }
+    }
+
+    @Test
+    public void readsLegacyResultOfTheWorker() {
+        // bools as .NET writes them
+        final TaskPayloadCodec.FilterResult result =
+                TaskPayloadCodec.decodeFilterResult((VENUE_ID + ";1_1,True,1_2,False").getBytes());
+        assertEquals(Boolean.TRUE, result.getIdToRuleMapping().get("1_1"));
+        assertEquals(Boolean.FALSE, result.getIdToRuleMapping().get("1_2"));
+    }
+
+    @Test
+    public void rejectsMalformedPayloads() {
+        assertNull(TaskPayloadCodec.decodeFilterResult(null));
+        assertNull(TaskPayloadCodec.decodeFilterResult(new byte[0]));
+        assertNull(TaskPayloadCodec.decodeFilterResult("no-separator".getBytes()));
+        assertNull(TaskPayloadCodec.decodeFilterResult(new byte[] { TaskPayloadCodec.BINARY_VERSION }));
+
+        // truncated
+        final Map<String, Boolean> idToRuleMapping = new LinkedHashMap<>();
+        idToRuleMapping.put("1_1", true);
+        final byte[] payload =
+                TaskPayloadCodec.encodeFilterResult(VENUE_ID, idToRuleMapping, TaskPayloadCodec.BINARY_VERSION);
+        assertNull(TaskPayloadCodec.decodeFilterResult(Arrays.copyOf(payload, payload.length - 1)));
+    }
+
+    private static RestogramPhoto createPhoto(final String id, final String url) {
+        final RestogramPhoto photo = new RestogramPhoto();
+        photo.setInstagram_id(id);
+        photo.setStandardResolution(url);
+        return photo;
+    }
+
+    private static Map<String, String> toIdToUrlMapping(final List<RestogramPhoto> photos) {
+        final Map<String, String> idToUrlMapping = new LinkedHashMap<>();
+        for (final RestogramPhoto currPhoto : photos)
+            idToUrlMapping.put(currPhoto.getInstagram_id(), currPhoto.getStandardResolution());
+        return idToUrlMapping;
+    }
+
+    private static final String VENUE_ID = "4b5bc7eef964a520d81b29e3";
+}
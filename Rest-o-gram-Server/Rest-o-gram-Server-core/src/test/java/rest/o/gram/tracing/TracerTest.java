@@ -0,0 +1,87 @@
+package rest.o.gram.tracing;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class TracerTest {
+
+    @Test
+    public void wrappedTaskJoinsTheSubmittersSpan() throws InterruptedException {
+        final Span outer = Tracer.startSpan("outer");
+        final AtomicReference<TraceContext> child = new AtomicReference<>();
+        final Runnable task = Tracer.wrap(startChild("child", child));
+        outer.finish();
+
+        // runs after the submitter's span has finished, still its child
+        runInThread(task);
+        assertEquals(outer.getContext().getTraceId(), child.get().getTraceId());
+        assertEquals(outer.getContext().getSpanId(), child.get().getParentId());
+    }
+
+    @Test
+    public void threadsDoNotInheritTheSpan() throws InterruptedException {
+        final Span outer = Tracer.startSpan("outer");
+        final AtomicReference<TraceContext> child = new AtomicReference<>();
+        try
+        {
+            runInThread(startChild("child", child));
+        } finally
+        {
+            outer.finish();
+        }
+        assertNotEquals(outer.getContext().getSpanId(), child.get().getParentId());
+    }
+
+    @Test
+    public void restoresTheRunningThreadsSpan() {
+        final Span submitter = Tracer.startSpan("submitter");
+        final Runnable task = Tracer.wrap(startChild("child", new AtomicReference<TraceContext>()));
+        submitter.finish();
+
+        final Span own = Tracer.startSpan("own");
+        task.run();
+        final AtomicReference<TraceContext> after = new AtomicReference<>();
+        startChild("after", after).run();
+        own.finish();
+        assertEquals(own.getContext().getSpanId(), after.get().getParentId());
+    }
+
+    @Test
+    public void clearsTheSpanOfAPooledThreadAfterTheTask() throws InterruptedException {
+        final Span submitter = Tracer.startSpan("submitter");
+        final Runnable task = Tracer.wrap(startChild("child", new AtomicReference<TraceContext>()));
+        submitter.finish();
+
+        final AtomicReference<TraceContext> after = new AtomicReference<>();
+        final Runnable next = startChild("after", after);
+        runInThread(new Runnable() {
+            @Override
+            public void run() {
+                task.run();
+                next.run();
+            }
+        });
+        assertNotEquals(submitter.getContext().getSpanId(), after.get().getParentId());
+        assertNotEquals(submitter.getContext().getTraceId(), after.get().getTraceId());
+    }
+
+    private static Runnable startChild(final String name, final AtomicReference<TraceContext> context) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                final Span span = Tracer.startSpan(name);
+                context.set(span.getContext());
+                span.finish();
+            }
+        };
+    }
+
+    private static void runInThread(final Runnable task) throws InterruptedException {
+        final Thread thread = new Thread(task);
+        thread.start();
+        thread.join();
+    }
+}
@@ -0,0 +1,73 @@
+package rest.o.gram.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GeoHashUtilsTest {
+
+    @Test
+    public void encodesKnownLocation() {
+        assertEquals("ezs42", GeoHashUtils.encode(42.605, -5.603, 5));
+        assertEquals("u4pruydqqvj", GeoHashUtils.encode(57.64911, 10.40744, 11));
+    }
+
+    @Test
+    public void encodesToPrecision() {
+        for (int precision = 1; precision <= 12; ++precision)
+        {
+            final String hash = GeoHashUtils.encode(32.0853, 34.7818, precision);
+            assertEquals(precision, hash.length());
+            // a finer cell is within the coarser one
+            assertTrue(GeoHashUtils.encode(32.0853, 34.7818, 12).startsWith(hash));
+        }
+    }
+
+    @Test
+    public void decodesCellCenter() {
+        // "ezs42" spans 42.583..42.627 latitude, -5.625..-5.581 longitude
+        final double[] center = GeoHashUtils.decodeCenter("ezs42");
+        assertEquals(42.60498046875, center[0], 1e-9);
+        assertEquals(-5.60302734375, center[1], 1e-9);
+    }
+
+    @Test
+    public void decodesCellBounds() {
+        final double[] bounds = GeoHashUtils.decodeBounds("ezs42");
+        assertEquals(42.5830078125, bounds[0], 1e-9);
+        assertEquals(-5.625, bounds[1], 1e-9);
+        assertEquals(42.626953125, bounds[2], 1e-9);
+        assertEquals(-5.5810546875, bounds[3], 1e-9);
+    }
+
+    @Test
+    public void centerIsWithinHalfCellOfLocation() {
+        final double latitude = -33.8688;
+        final double longitude = 151.2093;
+        for (int precision = 1; precision <= 10; ++precision)
+        {
+            final double[] center = GeoHashUtils.decodeCenter(GeoHashUtils.encode(latitude, longitude, precision));
+            // cells alternate between longitude and latitude bits, longitude first
+            final int lngBits = (precision * 5 + 1) / 2;
+            final int latBits = precision * 5 / 2;
+            assertTrue(Math.abs(center[0] - latitude) <= 90 / Math.pow(2, latBits));
+            assertTrue(Math.abs(center[1] - longitude) <= 180 / Math.pow(2, lngBits));
+            // and decoding the center gives back the same cell
+            assertEquals(GeoHashUtils.encode(latitude, longitude, precision),
+                         GeoHashUtils.encode(center[0], center[1], precision));
+        }
+    }
+
+    @Test
+    public void choosesCoarsestPrecisionWithinWidth() {
+        assertEquals(5, GeoHashUtils.getPrecision(5000, 1, 9)); // 4.9 km cells
+        assertEquals(7, GeoHashUtils.getPrecision(1000, 1, 9)); // 1.2 km cells are too wide
+        assertEquals(6, GeoHashUtils.getPrecision(1200, 1, 9));
+    }
+
+    @Test
+    public void clampsPrecision() {
+        assertEquals(4, GeoHashUtils.getPrecision(10000000, 4, 9));
+        assertEquals(9, GeoHashUtils.getPrecision(1, 4, 9));
+    }
+}
@@ -1,8 +1,6 @@
 package rest.o.gram.transport;
 
 import com.leanengine.server.auth.UsersServiceImpl;
-import org.json.rpc.server.JsonRpcExecutor;
-import org.json.rpc.server.JsonRpcServletTransport;
 import rest.o.gram.iservice.RestogramAuthService;
 import rest.o.gram.lean.UsersService;
 import rest.o.gram.service.RestogramAuthServiceImpl;
@@ -25,15 +23,15 @@ public class JsonRpcAuthServlet extends HttpServlet {
 
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         resp.setCharacterEncoding("UTF-8");
-        executor.execute(new JsonRpcServletTransport(req, resp));
+        executor.execute(req, resp);
     }
 
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         resp.getWriter().println("auth-service");
     }
 
-    private JsonRpcExecutor bind() {
-        JsonRpcExecutor executor = new JsonRpcExecutor();
+    private StreamingJsonRpcExecutor bind() {
+        StreamingJsonRpcExecutor executor = new StreamingJsonRpcExecutor();
 
         RestogramAuthService impl = new RestogramAuthServiceImpl();
         executor.addHandler("restogram", impl, RestogramAuthService.class);
@@ -46,5 +44,5 @@ public class JsonRpcAuthServlet extends HttpServlet {
         return executor;
     }
 
-    private final JsonRpcExecutor executor;
+    private final StreamingJsonRpcExecutor executor;
 }
@@ -1,7 +1,5 @@
 package rest.o.gram.transport;
 
-import org.json.rpc.server.JsonRpcExecutor;
-import org.json.rpc.server.JsonRpcServletTransport;
 import rest.o.gram.iservice.RestogramService;
 import rest.o.gram.service.RestogramServiceImpl;
 
@@ -24,15 +22,15 @@ public class JsonRpcServlet extends HttpServlet {
 
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         resp.setCharacterEncoding("UTF-8");
-        executor.execute(new JsonRpcServletTransport(req, resp));
+        executor.execute(req, resp);
     }
 
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         resp.getWriter().println("service");
     }
 
-    private JsonRpcExecutor bind() {
-        JsonRpcExecutor executor = new JsonRpcExecutor();
+    private StreamingJsonRpcExecutor bind() {
+        StreamingJsonRpcExecutor executor = new StreamingJsonRpcExecutor();
 
         RestogramService impl = new RestogramServiceImpl();
         executor.addHandler("restogram", impl, RestogramService.class);
@@ -42,5 +40,5 @@ public class JsonRpcServlet extends HttpServlet {
         return executor;
     }
 
-    private final JsonRpcExecutor executor;
+    private final StreamingJsonRpcExecutor executor;
 }
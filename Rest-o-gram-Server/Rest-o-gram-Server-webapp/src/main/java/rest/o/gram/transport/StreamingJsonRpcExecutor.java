@@ -0,0 +1,178 @@
+package rest.o.gram.transport;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonWriter;
+import org.json.rpc.server.JsonRpcExecutor;
+import org.json.rpc.server.JsonRpcServerTransport;
+import org.json.rpc.server.JsonRpcServletTransport;
+import rest.o.gram.json.JsonCodecs;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executes JSON-RPC calls and streams their results straight to the response, instead of building the whole
+ * response in memory. Responses are left to the frontend to compress for the clients which accept it.
+ * Requests that cannot be dispatched (malformed, unknown or overloaded methods) are delegated
+ * to the regular {@link JsonRpcExecutor}, which reports the error.
+ */
+public final class StreamingJsonRpcExecutor {
+
+    public <T> void addHandler(final String name, final T handler, final Class<T> handlerInterface) {
+        m_fallback.addHandler(name, handler, handlerInterface);
+
+        final Map<String, Method> overloaded = new HashMap<>();
+        for (final Method currMethod : handlerInterface.getMethods())
+        {
+            final String key = createKey(name, currMethod.getName(), currMethod.getParameterTypes().length);
+            if (m_methods.containsKey(key) || overloaded.containsKey(key))
+            {
+                // cannot tell apart by arity alone
+                overloaded.put(key, currMethod);
+                m_methods.remove(key);
+                continue;
+            }
+            m_methods.put(key, currMethod);
+        }
+        m_handlers.put(name, handler);
+    }
+
+    public void execute(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        final String requestData = readRequest(request);
+
+        JsonElement id = null;
+        Method method = null;
+        Object handler = null;
+        Object[] args = null;
+        try
+        {
+            final JsonObject rpcRequest = new JsonParser().parse(requestData).getAsJsonObject();
+            id = rpcRequest.get("id");
+            final String[] methodName = rpcRequest.getAsJsonPrimitive("method").getAsString().split("\\.", 2);
+            final JsonArray params = rpcRequest.has("params") ?
+                    rpcRequest.getAsJsonArray("params") : new JsonArray();
+
+            method = m_methods.get(createKey(methodName[0], methodName[1], params.size()));
+            handler = m_handlers.get(methodName[0]);
+            if (method != null)
+            {
+                final Type[] paramTypes = method.getGenericParameterTypes();
+                args = new Object[paramTypes.length];
+                for (int i = 0; i < paramTypes.length; ++i)
+                    args[i] = gson.fromJson(params.get(i), paramTypes[i]);
+            }
+        } catch (RuntimeException e)
+        {
+            method = null;
+        }
+
+        if (method == null || handler == null)
+        {
+            executeFallback(request, response, requestData);
+            return;
+        }
+
+        Object result = null;
+        String error = null;
+        try
+        {
+            result = method.invoke(handler, args);
+        } catch (InvocationTargetException e)
+        {
+            log.log(Level.SEVERE, "rpc method has failed: " + method.getName(), e.getCause());
+            error = INTERNAL_ERROR_MESSAGE; // the cause is logged, not exposed to clients
+        } catch (IllegalAccessException e)
+        {
+            log.log(Level.SEVERE, "rpc method cannot be invoked: " + method.getName(), e);
+            error = INTERNAL_ERROR_MESSAGE;
+        }
+
+        writeResponse(response, id, result, error);
+    }
+
+    private void writeResponse(final HttpServletResponse response, final JsonElement id, final Object result,
+                               final String error) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/json; charset=UTF-8");
+
+        final JsonWriter writer = new JsonWriter(
+                new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), "UTF-8"), BUFFER_SIZE));
+        try
+        {
+            writer.beginObject();
+            writer.name("jsonrpc").value("2.0");
+            if (id != null)
+            {
+                writer.name("id");
+                gson.toJson(id, writer);
+            }
+            if (error != null)
+            {
+                writer.name("error").beginObject();
+                writer.name("code").value(INTERNAL_ERROR_CODE);
+                writer.name("message").value(error);
+                writer.endObject();
+            }
+            else
+            {
+                // a successful response always has a result, null included
+                writer.name("result");
+                if (result != null)
+                    gson.toJson(result, result.getClass(), writer);
+                else
+                    writer.nullValue();
+            }
+            writer.endObject();
+        } finally
+        {
+            writer.close();
+        }
+    }
+
+    private void executeFallback(final HttpServletRequest request, final HttpServletResponse response,
+                                 final String requestData) {
+        final JsonRpcServletTransport servletTransport = new JsonRpcServletTransport(request, response);
+        m_fallback.execute(new JsonRpcServerTransport() {
+            @Override
+            public String readRequest() {
+                return requestData; // already consumed
+            }
+
+            @Override
+            public void writeResponse(final String responseData) throws Exception {
+                servletTransport.writeResponse(responseData);
+            }
+        });
+    }
+
+    private static String readRequest(final HttpServletRequest request) throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        final Reader reader = request.getReader();
+        final char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) != -1)
+            builder.append(buffer, 0, read);
+        return builder.toString();
+    }
+
+    private static String createKey(final String handlerName, final String methodName, final int paramsCount) {
+        return handlerName + "." + methodName + "/" + paramsCount;
+    }
+
+    private static final Logger log = Logger.getLogger(StreamingJsonRpcExecutor.class.getName());
+    private static final Gson gson = JsonCodecs.getGson();
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int INTERNAL_ERROR_CODE = -32603;
+    private static final String INTERNAL_ERROR_MESSAGE = "Internal error";
+    private final JsonRpcExecutor m_fallback = new JsonRpcExecutor();
+    private final Map<String, Method> m_methods = new HashMap<>();
+    private final Map<String, Object> m_handlers = new HashMap<>();
+}
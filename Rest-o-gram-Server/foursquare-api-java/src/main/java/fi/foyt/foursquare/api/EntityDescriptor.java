@@ -0,0 +1,260 @@
+package fi.foyt.foursquare.api;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reflection metadata of an entity class, resolved once per class and JSON field name.
+ *
+ * Properties are resolved the same way JSONFieldParser always did: a field named after the JSON field
+ * ('-' replaced with '_') in the class or its superclasses, otherwise the first setter with a matching name.
+ * Values are set through method handles, falling back to reflection where handles are not available.
+ */
+final class EntityDescriptor {
+
+  /**
+   * Settable property of an entity
+   */
+  static final class Property {
+
+    private Property(Class<?> type, Field field, Method setterMethod) {
+      this.type = type;
+      this.field = field;
+      this.setterMethod = setterMethod;
+      this.setter = createSetter(field, setterMethod);
+    }
+
+    /**
+     * Returns property's type
+     *
+     * @return property's type
+     */
+    Class<?> getType() {
+      return type;
+    }
+
+    /**
+     * Sets entity's property value
+     *
+     * @param entity entity
+     * @param value value
+     * @throws FoursquareApiException when something unexpected happens
+     */
+    void set(FoursquareEntity entity, Object value) throws FoursquareApiException {
+      if (setter != null) {
+        try {
+          setter.invokeExact((Object) entity, value);
+        } catch (Error e) {
+          throw e;
+        } catch (Throwable e) {
+          throw new FoursquareApiException(e);
+        }
+      } else if (field != null) {
+        try {
+          field.set(entity, value);
+        } catch (Exception e) {
+          throw new FoursquareApiException(e);
+        }
+      } else {
+        try {
+          setterMethod.invoke(entity, value);
+        } catch (IllegalArgumentException e) {
+          throw new FoursquareApiException(e);
+        } catch (IllegalAccessException e) {
+          throw new FoursquareApiException(e);
+        } catch (InvocationTargetException e) {
+          throw new FoursquareApiException(e);
+        }
+      }
+    }
+
+    private final Class<?> type;
+    private final Field field;
+    private final Method setterMethod;
+    private final MethodHandle setter;
+  }
+
+  /**
+   * Returns descriptor of an entity class
+   *
+   * @param entityClass class
+   * @return descriptor of the class
+   */
+  static EntityDescriptor forClass(Class<?> entityClass) {
+    EntityDescriptor descriptor = DESCRIPTORS.get(entityClass);
+    if (descriptor == null) {
+      descriptor = new EntityDescriptor(entityClass);
+      EntityDescriptor existing = DESCRIPTORS.putIfAbsent(entityClass, descriptor);
+      if (existing != null) {
+        descriptor = existing;
+      }
+    }
+
+    return descriptor;
+  }
+
+  private EntityDescriptor(Class<?> entityClass) {
+    this.entityClass = entityClass;
+  }
+
+  /**
+   * Returns property of a JSON field
+   *
+   * @param objectFieldName JSON field name
+   * @return property, or null when the class has no such field or setter
+   * @throws FoursquareApiException when the matching setter does not take a single parameter
+   */
+  Property getProperty(String objectFieldName) throws FoursquareApiException {
+    Property property = properties.get(objectFieldName);
+    if (property == null) {
+      property = resolveProperty(objectFieldName);
+      properties.putIfAbsent(objectFieldName, property);
+    }
+
+    if (property == MISSING) {
+      return null;
+    }
+
+    if (property.type == null) {
+      throw new FoursquareApiException("Could not find field " + objectFieldName + " from " + entityClass.getName() + " class");
+    }
+
+    return property;
+  }
+
+  /**
+   * Resolves property of a JSON field. Setters with a wrong number of parameters resolve into a property without type
+   *
+   * @param objectFieldName JSON field name
+   * @return property, MISSING when there is no such field or setter
+   */
+  private Property resolveProperty(String objectFieldName) {
+    Field field = getField(entityClass, objectFieldName);
+    if (field != null) {
+      return new Property(field.getType(), field, null);
+    }
+
+    Method setterMethod = getSetterMethod(entityClass, objectFieldName);
+    if (setterMethod == null) {
+      return MISSING;
+    }
+
+    Class<?>[] parameters = setterMethod.getParameterTypes();
+    if (parameters.length != 1) {
+      return new Property(null, null, null);
+    }
+
+    setterMethod.setAccessible(true);
+    return new Property(parameters[0], null, setterMethod);
+  }
+
+  /**
+   * Creates a method handle setter of (Object, Object) type
+   *
+   * @param field field or null
+   * @param setterMethod setter method or null
+   * @return method handle, null when not available
+   */
+  private static MethodHandle createSetter(Field field, Method setterMethod) {
+    try {
+      MethodHandle setter;
+      if (field != null) {
+        setter = LOOKUP.unreflectSetter(field);
+      } else if (setterMethod != null) {
+        setter = LOOKUP.unreflect(setterMethod);
+      } else {
+        return null;
+      }
+
+      return setter.asType(SETTER_TYPE);
+    } catch (IllegalAccessException e) {
+      return null;
+    } catch (SecurityException e) {
+      return null;
+    } catch (UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns field of class
+   *
+   * @param entityClass class
+   * @param fieldName field
+   * @return Field
+   */
+  private static Field getField(Class<?> entityClass, String fieldName) {
+    try {
+      // Replace '-' with '_' when mapping JSON field name to Java field name since '-' is illegal in Java.
+      Field field = entityClass.getDeclaredField(fieldName.replace('-', '_'));
+      field.setAccessible(true);
+      return field;
+    } catch (SecurityException e) {
+      return null;
+    } catch (NoSuchFieldException e) {
+      Class<?> superClass = entityClass.getSuperclass();
+      if (superClass.equals(Object.class)) {
+        return null;
+      } else {
+        return getField(superClass, fieldName);
+      }
+    }
+  }
+
+  /**
+   * Returns list of all methods in a class
+   *
+   * @param entityClass class
+   * @return list of all methods in a class
+   */
+  private static List<Method> getMethods(Class<?> entityClass) {
+    List<Method> result = new ArrayList<Method>(Arrays.asList(entityClass.getDeclaredMethods()));
+    if (!entityClass.getSuperclass().equals(Object.class)) {
+      result.addAll(getMethods(entityClass.getSuperclass()));
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns setter method for a field
+   *
+   * @param entityClass class
+   * @param fieldName field
+   * @return setter method for a field
+   */
+  private static Method getSetterMethod(Class<?> entityClass, String fieldName) {
+    StringBuilder methodNameBuilder = new StringBuilder();
+    methodNameBuilder.append("set");
+    methodNameBuilder.append(Character.toUpperCase(fieldName.charAt(0)));
+    methodNameBuilder.append(fieldName.substring(1).replace('-', '_'));
+
+    String methodName = methodNameBuilder.toString();
+
+    List<Method> methods = getMethods(entityClass);
+    for (Method method : methods) {
+      if (method.getName().equals(methodName)) {
+        return method;
+      }
+    }
+
+    return null;
+  }
+
+  private static final ConcurrentMap<Class<?>, EntityDescriptor> DESCRIPTORS = new ConcurrentHashMap<Class<?>, EntityDescriptor>();
+  private static final Property MISSING = new Property(null, null, null);
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final Class<?> entityClass;
+  private final ConcurrentMap<String, Property> properties = new ConcurrentHashMap<String, Property>();
+}
@@ -12,13 +12,7 @@
 package fi.foyt.foursquare.api;
 
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -102,40 +96,18 @@ public class JSONFieldParser {
   public static FoursquareEntity parseEntity(Class<?> clazz, JSONObject jsonObject, boolean skipNonExistingFields) throws FoursquareApiException {
     FoursquareEntity entity = createNewEntity(clazz);
     
+    EntityDescriptor descriptor = EntityDescriptor.forClass(entity.getClass());
     String[] objectFieldNames = getFieldNames(jsonObject);
     if (objectFieldNames != null) {
       for (String objectFieldName : objectFieldNames) {
-        Class<?> fieldClass = getFieldClass(entity.getClass(), objectFieldName);
-        if (fieldClass == null) {
-          Method setterMethod = getSetterMethod(entity.getClass(), objectFieldName);
-          if (setterMethod == null) {
-            if (!skipNonExistingFields) {
-              throw new FoursquareApiException("Could not find field " + objectFieldName + " from " + entity.getClass().getName() + " class");
-            }
-          } else {
-            Class<?>[] parameters = setterMethod.getParameterTypes();
-            if (parameters.length == 1) {
-              fieldClass = parameters[0];
-              
-              try {
-                setterMethod.setAccessible(true);
-                setterMethod.invoke(entity, parseValue(fieldClass, jsonObject, objectFieldName, skipNonExistingFields));
-              } catch (JSONException e) {
-                throw new FoursquareApiException(e);
-              } catch (IllegalArgumentException e) {
-                throw new FoursquareApiException(e);
-              } catch (IllegalAccessException e) {
-                throw new FoursquareApiException(e);
-              } catch (InvocationTargetException e) {
-                throw new FoursquareApiException(e);
-              }
-            } else {
-              throw new FoursquareApiException("Could not find field " + objectFieldName + " from " + entity.getClass().getName() + " class");
-            }
+        EntityDescriptor.Property property = descriptor.getProperty(objectFieldName);
+        if (property == null) {
+          if (!skipNonExistingFields) {
+            throw new FoursquareApiException("Could not find field " + objectFieldName + " from " + entity.getClass().getName() + " class");
           }
         } else {
           try {
-            setEntityFieldValue(entity, objectFieldName, parseValue(fieldClass, jsonObject, objectFieldName, skipNonExistingFields));
+            property.set(entity, parseValue(property.getType(), jsonObject, objectFieldName, skipNonExistingFields));
           } catch (JSONException e) {
             throw new FoursquareApiException(e);
           }
@@ -245,102 +217,6 @@ public class JSONFieldParser {
     return false;
   }
   
-  /**
-   * Returns field of class
-   * 
-   * @param entityClass class
-   * @param fieldName field
-   * @return Field
-   */
-  private static Field getField(Class<?> entityClass, String fieldName) {
-    try {
-      // Replace '-' with '_' when mapping JSON field name to Java field name since '-' is illegal in Java.
-      Field field = entityClass.getDeclaredField(fieldName.replace('-', '_'));
-      field.setAccessible(true);
-      return field;
-    } catch (SecurityException e) {
-      return null;
-    } catch (NoSuchFieldException e) {
-      Class<?> superClass = entityClass.getSuperclass();
-      if (superClass.equals(Object.class)) {
-        return null;
-      } else {
-        return getField(superClass, fieldName);
-      }
-    }
-  } 
-  
-  /**
-   * Returns list of all methods in a class
-   * 
-   * @param entityClass class
-   * @return list of all methods in a class
-   */
-  private static List<Method> getMethods(Class<?> entityClass) {
-    List<Method> result = new ArrayList<Method>(Arrays.asList(entityClass.getDeclaredMethods()));
-    if (!entityClass.getSuperclass().equals(Object.class)) {
-      result.addAll(getMethods(entityClass.getSuperclass()));
-    }    
-    
-    return result;
-  }
-  
-  /**
-   * Returns setter method for a field
-   * 
-   * @param entityClass class
-   * @param fieldName field
-   * @return setter method for a field
-   */
-  private static Method getSetterMethod(Class<?> entityClass, String fieldName) {
-    StringBuilder methodNameBuilder = new StringBuilder();
-    methodNameBuilder.append("set");
-    methodNameBuilder.append(Character.toUpperCase(fieldName.charAt(0)));
-    methodNameBuilder.append(fieldName.substring(1).replace('-', '_'));
-    
-    String methodName = methodNameBuilder.toString();
-    
-    List<Method> methods = getMethods(entityClass);
-    for (Method method : methods) {
-      if (method.getName().equals(methodName)) {
-        return method;
-      }
-    }
-    
-    return null;
-  }
-  
-  /**
-   * Returns class for class's field
-   * 
-   * @param entityClass class
-   * @param fieldName field
-   * @return class's field's class
-   */
-  private static Class<?> getFieldClass(Class<?> entityClass, String fieldName) {
-    Field field = getField(entityClass, fieldName);
-    return field != null ? field.getType() : null;
-  } 
-  
-  /**
-   * Sets entity's field's value
-   * 
-   * @param entity entity
-   * @param fieldName field
-   * @param value value
-   * @throws FoursquareApiException when something unexpected happens
-   */
-  private static void setEntityFieldValue(FoursquareEntity entity, String fieldName, Object value) throws FoursquareApiException {
-    java.lang.reflect.Field fieldProperty;
-    try {
-      fieldProperty = getField(entity.getClass(), fieldName.replace('-', '_'));
-      fieldProperty.setAccessible(true);
-      fieldProperty.set(entity, value);
-    } catch (Exception e) {
-      throw new FoursquareApiException(e);
-    }
-  }
-  
   /**
    * Initializes new entity instance
    * 
@@ -6,11 +6,19 @@ import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
 import java.io.*;
+import java.nio.charset.Charset;
 import java.util.Enumeration;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Logger;
 
 /**
  * This a straightforward request and reply, header & body dump filter. Usable when trableshooting.
+ * Bodies are teed while they stream through, so nothing is buffered beyond the capture limit.
+ * Encoded (e.g. gzipped) bodies are not dumped as text, only their size.
+ * The dump is logged once the response is flushed - threads cannot outlive their request, so there is
+ * no background writer to hand it to.
+ * Optional parameters: {@code sampleRate} - the fraction of requests to dump (default 1),
+ * {@code maxCaptureKB} - bodies are truncated beyond this size (default 16).<br/>
  * Just enable it in web.xml with {@code<filter>}, {@code<filter-mapping>} and {@code<init-param>}:<br/><br/>
  * {@code<filter>}<br/>
  * {@code     <filter-name>DumpFilter</filter-name>}<br/>
@@ -27,6 +35,10 @@ import java.util.logging.Logger;
  * {@code             <param-name>dumpHeader</param-name>}<br/>
  * {@code             <param-value>true</param-value>}<br/>
  * {@code         </init-param>}<br/>
+ * {@code         <init-param>}<br/>
+ * {@code             <param-name>sampleRate</param-name>}<br/>
+ * {@code             <param-value>0.01</param-value>}<br/>
+ * {@code         </init-param>}<br/>
  * {@code     </filter>}<br/>
  * {@code     <filter-mapping>}<br/>
  * {@code         <filter-name>DumpFilter</filter-name>}<br/>
@@ -37,168 +49,249 @@ public class DumpFilter implements Filter {
 
     private static final Logger log = Logger.getLogger(DumpFilter.class.getName());
 
-    private static class ByteArrayServletStream extends ServletOutputStream {
+    /**
+     * Keeps the first bytes written to it, up to a limit, and counts the rest
+     */
+    private static class Capture {
 
-        ByteArrayOutputStream baos;
+        private final byte[] buffer;
+        private int size;
+        private long total;
 
-        ByteArrayServletStream(ByteArrayOutputStream baos) {
-            this.baos = baos;
+        Capture(int limit) {
+            buffer = new byte[limit];
         }
 
-        public void write(int param) throws IOException {
-            baos.write(param);
+        synchronized void write(int b) {
+            if (size < buffer.length)
+                buffer[size++] = (byte) b;
+            ++total;
+        }
+
+        synchronized void write(byte[] b, int off, int len) {
+            final int captured = Math.min(len, buffer.length - size);
+            if (captured > 0) {
+                System.arraycopy(b, off, buffer, size, captured);
+                size += captured;
+            }
+            total += len;
+        }
+
+        synchronized String describe(String encoding, String contentEncoding) {
+            if (contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding))
+                return "(" + contentEncoding + " encoded, " + total + " bytes)";
+
+            Charset charset;
+            try {
+                charset = encoding != null ? Charset.forName(encoding) : UTF8;
+            } catch (IllegalArgumentException e) {
+                charset = UTF8;
+            }
+            final String content = new String(buffer, 0, size, charset);
+            return total > size ? content + "... (truncated, " + total + " bytes)" : content;
         }
     }
 
-    private static class ByteArrayPrintWriter {
+    private static class TeeServletInputStream extends ServletInputStream {
 
-        private ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        private final ServletInputStream in;
+        private final Capture capture;
 
-        private PrintWriter pw = new PrintWriter(baos);
+        TeeServletInputStream(ServletInputStream in, Capture capture) {
+            this.in = in;
+            this.capture = capture;
+        }
 
-        private ServletOutputStream sos = new ByteArrayServletStream(baos);
+        public int available() throws IOException {
+            return in.available();
+        }
 
-        public PrintWriter getWriter() {
-            return pw;
+        public int read() throws IOException {
+            final int b = in.read();
+            if (b >= 0)
+                capture.write(b);
+            return b;
         }
 
-        public ServletOutputStream getStream() {
-            return sos;
+        public int read(byte[] buf, int off, int len) throws IOException {
+            final int read = in.read(buf, off, len);
+            if (read > 0)
+                capture.write(buf, off, read);
+            return read;
         }
 
-        byte[] toByteArray() {
-            return baos.toByteArray();
+        public void close() throws IOException {
+            in.close();
         }
     }
 
-    private class BufferedServletInputStream extends ServletInputStream {
+    private static class TeeServletOutputStream extends ServletOutputStream {
 
-        ByteArrayInputStream bais;
+        private final ServletOutputStream out;
+        private final Capture capture;
 
-        public BufferedServletInputStream(ByteArrayInputStream bais) {
-            this.bais = bais;
+        TeeServletOutputStream(ServletOutputStream out, Capture capture) {
+            this.out = out;
+            this.capture = capture;
         }
 
-        public int available() {
-            return bais.available();
+        public void write(int b) throws IOException {
+            out.write(b);
+            capture.write(b);
         }
 
-        public int read() {
-            return bais.read();
+        public void write(byte[] buf, int off, int len) throws IOException {
+            out.write(buf, off, len);
+            capture.write(buf, off, len);
         }
 
-        public int read(byte[] buf, int off, int len) {
-            return bais.read(buf, off, len);
+        public void flush() throws IOException {
+            out.flush();
         }
 
+        public void close() throws IOException {
+            out.close();
+        }
     }
 
-    private class BufferedRequestWrapper extends HttpServletRequestWrapper {
+    private static class TeeRequestWrapper extends HttpServletRequestWrapper {
 
-        ByteArrayInputStream bais;
+        private final Capture capture;
+        private ServletInputStream stream;
+        private BufferedReader reader;
 
-        ByteArrayOutputStream baos;
-
-        BufferedServletInputStream bsis;
+        TeeRequestWrapper(HttpServletRequest req, Capture capture) {
+            super(req);
+            this.capture = capture;
+        }
 
-        byte[] buffer;
+        public ServletInputStream getInputStream() throws IOException {
+            if (stream == null)
+                stream = new TeeServletInputStream(super.getInputStream(), capture);
+            return stream;
+        }
 
-        public BufferedRequestWrapper(HttpServletRequest req) throws IOException {
-            super(req);
-            InputStream is = req.getInputStream();
-            baos = new ByteArrayOutputStream();
-            byte buf[] = new byte[1024];
-            int letti;
-            while ((letti = is.read(buf)) > 0) {
-                baos.write(buf, 0, letti);
+        public BufferedReader getReader() throws IOException {
+            if (reader == null) {
+                final String encoding = getCharacterEncoding();
+                reader = new BufferedReader(new InputStreamReader(getInputStream(),
+                        encoding != null ? encoding : "ISO-8859-1"));
             }
-            buffer = baos.toByteArray();
+            return reader;
         }
+    }
 
-        public ServletInputStream getInputStream() {
-            try {
-                bais = new ByteArrayInputStream(buffer);
-                bsis = new BufferedServletInputStream(bais);
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
+    private static class TeeResponseWrapper extends HttpServletResponseWrapper {
+
+        private final Capture capture;
+        private ServletOutputStream stream;
+        private PrintWriter writer;
+        private String contentEncoding;
 
-            return bsis;
+        TeeResponseWrapper(HttpServletResponse resp, Capture capture) {
+            super(resp);
+            this.capture = capture;
         }
 
-        public byte[] getBuffer() {
-            return buffer;
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (stream == null)
+                stream = new TeeServletOutputStream(super.getOutputStream(), capture);
+            return stream;
         }
 
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null)
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            return writer;
+        }
+
+        public void flushBuffer() throws IOException {
+            if (writer != null)
+                writer.flush();
+            super.flushBuffer();
+        }
+
+        // responses have no header getters before servlet 3.0
+        public void setHeader(String name, String value) {
+            if (CONTENT_ENCODING.equalsIgnoreCase(name))
+                contentEncoding = value;
+            super.setHeader(name, value);
+        }
+
+        public void addHeader(String name, String value) {
+            if (CONTENT_ENCODING.equalsIgnoreCase(name))
+                contentEncoding = value;
+            super.addHeader(name, value);
+        }
+
+        String getContentEncoding() {
+            return contentEncoding;
+        }
     }
 
     private boolean dumpRequest;
     private boolean dumpResponse;
     private boolean dumpHeader;
+    private double sampleRate;
+    private int maxCaptureSize;
 
     public void init(FilterConfig filterConfig) throws ServletException {
         dumpRequest = Boolean.valueOf(filterConfig.getInitParameter("dumpRequest"));
         dumpResponse = Boolean.valueOf(filterConfig.getInitParameter("dumpResponse"));
         dumpHeader = Boolean.valueOf(filterConfig.getInitParameter("dumpHeader"));
+        final String sampleRateParam = filterConfig.getInitParameter("sampleRate");
+        sampleRate = sampleRateParam != null ? Double.parseDouble(sampleRateParam) : 1.0;
+        final String maxCaptureParam = filterConfig.getInitParameter("maxCaptureKB");
+        maxCaptureSize = (maxCaptureParam != null ? Integer.parseInt(maxCaptureParam) : 16) * 1024;
     }
 
     public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse,
                          FilterChain filterChain) throws IOException, ServletException {
 
+        // not sampled - streams through untouched
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            filterChain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+
         final HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
-        BufferedRequestWrapper bufferedRequest = new BufferedRequestWrapper(httpRequest);
+        final HttpServletResponse response = (HttpServletResponse) servletResponse;
+        final Capture requestCapture = dumpRequest ? new Capture(maxCaptureSize) : null;
+        final Capture responseCapture = dumpResponse ? new Capture(maxCaptureSize) : null;
+
+        final TeeResponseWrapper wrappedResp = responseCapture != null ?
+                new TeeResponseWrapper(response, responseCapture) : null;
+        filterChain.doFilter(requestCapture != null ? new TeeRequestWrapper(httpRequest, requestCapture) : httpRequest,
+                             wrappedResp != null ? wrappedResp : response);
+
+        // the response is completed first, the dump is formatted after it
+        if (wrappedResp != null)
+            wrappedResp.flushBuffer();
 
         if (dumpRequest) {
-//            log.info("REQUEST -> " + new String(bufferedRequest.getBuffer()));
             log.info("REQUEST URL: " + httpRequest.getServletPath());
-            log.info("REQUEST -> " + new String(bufferedRequest.getBuffer()));
+            log.info("REQUEST -> " + requestCapture.describe(httpRequest.getCharacterEncoding(),
+                                                             httpRequest.getHeader(CONTENT_ENCODING)));
         }
 
         if (dumpHeader) {
-//            log.info("  REQUEST HEADER:");
-            log.info("  REQUEST HEADER:");
-
+            final StringBuilder headersBuilder = new StringBuilder("  REQUEST HEADER:");
             Enumeration headers = httpRequest.getHeaderNames();
             while (headers.hasMoreElements()) {
                 String header = (String) headers.nextElement();
-                log.info(header + "=" + httpRequest.getHeader(header));
+                headersBuilder.append('\n').append(header).append('=').append(httpRequest.getHeader(header));
             }
+            log.info(headersBuilder.toString());
         }
 
-
-        final HttpServletResponse response = (HttpServletResponse) servletResponse;
-
-        final ByteArrayPrintWriter pw = new ByteArrayPrintWriter();
-        HttpServletResponse wrappedResp = new HttpServletResponseWrapper(response) {
-            public PrintWriter getWriter() {
-                return pw.getWriter();
-            }
-
-            public ServletOutputStream getOutputStream() {
-                return pw.getStream();
-            }
-
-        };
-
-        filterChain.doFilter(bufferedRequest, wrappedResp);
-
-        byte[] bytes = pw.toByteArray();
-        try
-        {
-            response.getOutputStream().write(bytes);
-        }
-        catch (IllegalStateException e)
-        {
-            e.printStackTrace();
-            response.getWriter().write(pw.toString());
-        }
-        if (dumpResponse) {
-//            log.info("RESPONSE -> " + new String(bytes));
-            log.info("RESPONSE -> " + new String(bytes));
-        }
+        if (dumpResponse)
+            log.info("RESPONSE -> " + responseCapture.describe(response.getCharacterEncoding(),
+                                                               wrappedResp.getContentEncoding()));
     }
 
     public void destroy() {
     }
 
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String CONTENT_ENCODING = "Content-Encoding";
 }
@@ -12,5 +12,17 @@ public final class LeanDefs {
      */
     public static class DataStore {
         public static final int RESULTS_LIMIT = 40;
+        public static final int MAX_PUT_BATCH_SIZE = 500; // entities per put call
+    }
+
+    /**
+     * Auth constants
+     */
+    public static class Auth {
+        public static final boolean SIGNED_TOKENS_ENABLED = true; // new logins get signed tokens
+        public static final long SIGNED_TOKEN_PERIOD = 30L * 24 * 60 * 60 * 1000; // millis
+        public static final int SIGNATURE_LENGTH = 16; // bytes, of the truncated HMAC
+        public static final int ACCOUNTS_CACHE_SIZE = 1024; // accounts, per instance
+        public static final long ACCOUNTS_CACHE_PERIOD = 5 * 60 * 1000; // millis
     }
 }
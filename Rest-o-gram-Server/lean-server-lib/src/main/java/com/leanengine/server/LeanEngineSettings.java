@@ -3,11 +3,18 @@ package com.leanengine.server;
 import com.google.appengine.api.datastore.*;
 import com.leanengine.server.appengine.ServerUtils;
 
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.Map;
 
 public class LeanEngineSettings {
 
+    private static final String AUTH_TOKENS_KEY = "authTokensKey";
+    private static final String CONTINUATION_TOKENS_KEY = "continuationTokensKey";
+    private static final String[] SIGNING_KEYS = {AUTH_TOKENS_KEY, CONTINUATION_TOKENS_KEY};
+
     private static Map<String, Object> settings;
 
     private static Map<String, Object> load() {
@@ -33,14 +40,24 @@ public class LeanEngineSettings {
     }
 
     public static void saveSettings(Map<String, Object> newSettings) {
+        // the caller's map is not changed
+        Map<String, Object> savedSettings = new HashMap<>(newSettings);
         // there is only one instance of LeanEngineSettings so the same ID=1 is always used
         Entity leanEntity = new Entity("_settings", 1);
-        for (String propName : newSettings.keySet()) {
-            leanEntity.setUnindexedProperty(propName, newSettings.get(propName));
+        // the signing keys are not edited, issued tokens must stay valid
+        for (String keyName : SIGNING_KEYS) {
+            if (!savedSettings.containsKey(keyName)) {
+                if (settings == null) load();
+                if (settings.containsKey(keyName))
+                    savedSettings.put(keyName, settings.get(keyName));
+            }
+        }
+        for (String propName : savedSettings.keySet()) {
+            leanEntity.setUnindexedProperty(propName, savedSettings.get(propName));
         }
         DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
         datastore.put(leanEntity);
-        LeanEngineSettings.settings = newSettings;
+        LeanEngineSettings.settings = savedSettings;
     }
 
     public static boolean isFacebookLoginEnabled() {
@@ -66,6 +83,57 @@ public class LeanEngineSettings {
         return openIdLoginEnable == null ? false : (Boolean) openIdLoginEnable;
     }
 
+    /**
+     * Retrieves the key which auth tokens are signed with, created once per application.
+     *
+     * @return The auth tokens key.
+     */
+    public static String getAuthTokensKey() {
+        return getSigningKey(AUTH_TOKENS_KEY);
+    }
+
+    /**
+     * Retrieves the key which continuation (paging) tokens are signed with, created once per application.
+     *
+     * @return The continuation tokens key.
+     */
+    public static String getContinuationTokensKey() {
+        return getSigningKey(CONTINUATION_TOKENS_KEY);
+    }
+
+    private static String getSigningKey(String keyName) {
+        if (settings == null) load();
+        final Object key = settings.get(keyName);
+        if (key != null)
+            return (String) key;
+
+        // created in a transaction, so all instances agree on the key
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+        Transaction transaction = datastore.beginTransaction();
+        try {
+            Key settingsKey = KeyFactory.createKey("_settings", 1);
+            Entity leanEntity;
+            try {
+                leanEntity = datastore.get(transaction, settingsKey);
+            } catch (EntityNotFoundException e) {
+                leanEntity = new Entity(settingsKey);
+            }
+            if (!leanEntity.hasProperty(keyName)) {
+                leanEntity.setUnindexedProperty(keyName, new BigInteger(256, new SecureRandom()).toString(16));
+                datastore.put(transaction, leanEntity);
+            }
+            transaction.commit();
+            settings = leanEntity.getProperties();
+            return (String) settings.get(keyName);
+        } catch (ConcurrentModificationException e) {
+            // created by another instance
+            load();
+            return (String) settings.get(keyName);
+        } finally {
+            if (transaction.isActive()) transaction.rollback();
+        }
+    }
+
     /**
      * Retrieves application settings.
      *
@@ -2,14 +2,18 @@ package com.leanengine.server.appengine;
 
 import com.google.appengine.api.datastore.*;
 import com.google.appengine.api.memcache.ErrorHandlers;
+import com.google.appengine.api.memcache.Expiration;
 import com.google.appengine.api.memcache.MemcacheService;
 import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.leanengine.server.LeanDefs;
 import com.leanengine.server.LeanException;
 import com.leanengine.server.auth.AuthToken;
 import rest.o.gram.lean.LeanAccount;
 
 import java.util.ConcurrentModificationException;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -59,6 +63,29 @@ public class AccountUtils {
         return toLeanAccount(accountEntity);
     }
 
+    /**
+     * Gets the account through an in-instance cache, accounts are re-read after the cache period
+     */
+    public static LeanAccount getCachedAccount(long accountID) {
+        final long now = System.currentTimeMillis();
+        synchronized (accountsCache)
+        {
+            final CachedAccount cached = accountsCache.get(accountID);
+            if (cached != null && now - cached.loadedAt < LeanDefs.Auth.ACCOUNTS_CACHE_PERIOD)
+                return cached.account;
+        }
+
+        final LeanAccount account = getAccount(accountID);
+        if (account != null)
+        {
+            synchronized (accountsCache)
+            {
+                accountsCache.put(accountID, new CachedAccount(account, now));
+            }
+        }
+        return account;
+    }
+
     public static LeanAccount findAccountByProvider(String providerID, String provider) {
         if (providerID == null)
         {
@@ -160,6 +187,76 @@ public class AccountUtils {
         return createAuthToken(token, tokenEntity);
     }
 
+    /**
+     * Revokes a signed token until it expires - other signed tokens of its account are still valid.
+     * Signed tokens are not stored, so the revoked ones are - and remembered in memcache, so they are rarely looked up
+     */
+    public static void revokeSignedToken(AuthToken token) throws LeanException {
+        final long expiration = getExpiration(token);
+        Entity revokedEntity = new Entity(revokedTokenKind, token.token);
+        revokedEntity.setUnindexedProperty("account", token.accountID);
+        revokedEntity.setProperty("expiration", expiration); // indexed, expired ones can be cleaned up
+        try
+        {
+            datastore.put(revokedEntity);
+        }
+        catch (DatastoreTimeoutException|ConcurrentModificationException e)
+        {
+            log.warning("a recoverable data store error has occured, retries");
+            // non transaction - retry
+            try
+            {
+                datastore.put(revokedEntity);
+            }
+            catch (Exception|Error e2)
+            {
+                log.severe("a fatal data store error has occured, cannot retry");
+                throw new LeanException(LeanException.Error.FatalDataStoreError);
+            }
+        }
+        catch (Exception|Error e)
+        {
+            log.severe("a fatal data store error has occured, cannot retry");
+            throw new LeanException(LeanException.Error.FatalDataStoreError);
+        }
+
+        getMemcacheService().put(revokedTokenPrefix + token.token, Boolean.TRUE,
+                                 Expiration.onDate(new Date(expiration)));
+    }
+
+    public static boolean isSignedTokenRevoked(AuthToken token) {
+        final Boolean cached = (Boolean) getMemcacheService().get(revokedTokenPrefix + token.token);
+        if (cached != null)
+            return cached;
+
+        boolean isRevoked;
+        try
+        {
+            datastore.get(KeyFactory.createKey(revokedTokenKind, token.token));
+            isRevoked = true;
+        } catch (EntityNotFoundException e)
+        {
+            isRevoked = false;
+        }
+        catch (Exception|Error e)
+        {
+            log.severe("a data store error has occured, cannot check the token's revocation");
+            return false;
+        }
+
+        // a revocation overwrites an unrevoked entry, so it is only added if there is none
+        final Expiration expiration = isRevoked ?
+                Expiration.onDate(new Date(getExpiration(token))) :
+                Expiration.byDeltaMillis((int) LeanDefs.Auth.ACCOUNTS_CACHE_PERIOD);
+        getMemcacheService().put(revokedTokenPrefix + token.token, isRevoked, expiration,
+                                 MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+        return isRevoked;
+    }
+
+    private static long getExpiration(AuthToken signedToken) {
+        return signedToken.timeCreated + LeanDefs.Auth.SIGNED_TOKEN_PERIOD;
+    }
+
     private static AuthToken createAuthToken(String token, Entity tokenEntity) {
         return new AuthToken(
                 token,
@@ -270,6 +367,10 @@ public class AccountUtils {
             throw new LeanException(LeanException.Error.FatalDataStoreError);
         }
         leanAccount.id = accountKey.getId();
+        synchronized (accountsCache)
+        {
+            accountsCache.remove(leanAccount.id);
+        }
     }
 
     public static LeanAccount toLeanAccount(Entity entity) {
@@ -297,10 +398,29 @@ public class AccountUtils {
         return  cache;
     }
 
+    private static final class CachedAccount {
+        CachedAccount(LeanAccount account, long loadedAt) {
+            this.account = account;
+            this.loadedAt = loadedAt;
+        }
+
+        final LeanAccount account;
+        final long loadedAt;
+    }
+
     private static MemcacheService cache = null;
+    private static final Map<Long, CachedAccount> accountsCache =
+            new LinkedHashMap<Long, CachedAccount>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, CachedAccount> eldest) {
+                    return size() > LeanDefs.Auth.ACCOUNTS_CACHE_SIZE;
+                }
+            };
     private static final Logger log = Logger.getLogger(AccountUtils.class.getName());
     private static final DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
 
     private static final String authTokenKind = "_auth_tokens";
     private static final String accountsKind = "_accounts";
+    private static final String revokedTokenKind = "_revoked_tokens";
+    private static final String revokedTokenPrefix = "revoked-token:";
 }
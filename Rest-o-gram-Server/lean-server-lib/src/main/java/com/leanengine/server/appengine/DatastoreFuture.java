@@ -0,0 +1,133 @@
+package com.leanengine.server.appengine;
+
+import com.google.appengine.api.datastore.DatastoreNeedIndexException;
+import com.google.appengine.api.datastore.DatastoreTimeoutException;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.leanengine.server.LeanException;
+
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * A pending datastore operation. Errors are translated to {@link LeanException} on {@link #get()},
+ * with the same single retry on recoverable errors as the synchronous {@link DatastoreUtils} methods.
+ * The call is observed once resolved, timed from its start.
+ */
+public final class DatastoreFuture<T> {
+
+    /**
+     * Starts the asynchronous datastore operation, called again on retry
+     */
+    interface Operation<T> {
+        Future<T> start();
+    }
+
+    DatastoreFuture(final String name, final Operation<T> operation, final boolean isInTransaction) {
+        m_name = name;
+        m_operation = operation;
+        m_isInTransaction = isInTransaction;
+        m_startNanos = System.nanoTime();
+        Future<T> future = null;
+        try
+        {
+            future = operation.start();
+        } catch (RuntimeException e)
+        {
+            m_startError = e; // reported on get, like any other failure
+        }
+        m_future = future;
+    }
+
+    /**
+     * Waits for the operation to complete
+     * @return the operation's result
+     * @throws LeanException thrown when the operation has failed
+     */
+    public synchronized T get() throws LeanException {
+        if (!m_isResolved)
+        {
+            try
+            {
+                m_result = resolve();
+            } catch (LeanException e)
+            {
+                m_error = e;
+            }
+            m_isResolved = true;
+            // a missing entity is an answer, not a failure
+            DatastoreUtils.onCall(m_name, m_startNanos,
+                    m_error != null && m_error.getErrorCode() != LeanException.Error.EntityNotFound.errorCode);
+        }
+
+        if (m_error != null)
+            throw m_error;
+        return m_result;
+    }
+
+    /**
+     * @return true if the operation has completed (successfully or not)
+     */
+    public boolean isDone() {
+        return m_future == null || m_future.isDone();
+    }
+
+    private T resolve() throws LeanException {
+        try
+        {
+            if (m_future == null)
+                throw new ExecutionException(m_startError);
+            return m_future.get();
+        }
+        catch (ExecutionException e)
+        {
+            final Throwable cause = e.getCause();
+            if (cause instanceof EntityNotFoundException)
+                throw new LeanException(LeanException.Error.EntityNotFound);
+            if (cause instanceof DatastoreNeedIndexException)
+                throw new LeanException(LeanException.Error.AppEngineMissingIndex);
+            if (!(cause instanceof DatastoreTimeoutException) && !(cause instanceof ConcurrentModificationException))
+            {
+                log.severe("a fatal data store error has occured, cannot retry");
+                throw new LeanException(LeanException.Error.FatalDataStoreError);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            log.severe("a fatal data store error has occured, cannot retry");
+            throw new LeanException(LeanException.Error.FatalDataStoreError);
+        }
+
+        // in transaction - no retry
+        if (m_isInTransaction)
+        {
+            log.warning("a recoverable data store error has occured while in transaction, delegates");
+            throw new LeanException(LeanException.Error.RecoverableDataStoreError);
+        }
+
+        log.warning("a recoverable data store error has occured, retries");
+        // non transaction - retry
+        try
+        {
+            return m_operation.start().get();
+        }
+        catch (Exception|Error e2)
+        {
+            log.severe("a fatal data store error has occured, cannot retry");
+            throw new LeanException(LeanException.Error.FatalDataStoreError);
+        }
+    }
+
+    private static final Logger log = Logger.getLogger(DatastoreFuture.class.getName());
+    private final String m_name;
+    private final Operation<T> m_operation;
+    private final boolean m_isInTransaction;
+    private final long m_startNanos;
+    private final Future<T> m_future;
+    private RuntimeException m_startError;
+    private boolean m_isResolved;
+    private T m_result;
+    private LeanException m_error;
+}
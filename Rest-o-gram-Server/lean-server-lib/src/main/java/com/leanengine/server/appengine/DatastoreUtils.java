@@ -1,6 +1,7 @@
 package com.leanengine.server.appengine;
 
 import com.google.appengine.api.datastore.*;
+import com.leanengine.server.LeanDefs;
 import com.leanengine.server.LeanException;
 import com.leanengine.server.appengine.datastore.PutBatchOperation;
 import com.leanengine.server.appengine.datastore.PutBatchOperationImpl;
@@ -13,6 +14,9 @@ import com.leanengine.server.entity.QuerySort;
 import rest.o.gram.lean.LeanAccount;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -20,7 +24,24 @@ public class DatastoreUtils {
 
     private static final Logger log = Logger.getLogger(DatastoreUtils.class.getName());
     private static final DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    private static final AsyncDatastoreService asyncDatastore = DatastoreServiceFactory.getAsyncDatastoreService();
     private static final Pattern pattern = Pattern.compile("^[A-Za-z][A-Za-z_0-9]*");
+    private static volatile CallObserver callObserver;
+
+    /**
+     * Observes the data store calls - gets, puts and queries, including their retries.
+     * Asynchronous calls are observed when their result is first awaited
+     */
+    public interface CallObserver {
+        void onCall(String operation, long nanos, boolean isFailed);
+    }
+
+    /**
+     * Sets the observer of data store calls, null to stop observing
+     */
+    public static void setCallObserver(CallObserver observer) {
+        callObserver = observer;
+    }
 
     public static Entity getPrivateEntity(String kind, String entityName) throws LeanException {
         return getPrivateEntity(kind, entityName, false);
@@ -53,6 +74,25 @@ public class DatastoreUtils {
     }
 
     private static Entity doGetEntitySafe(Key key, boolean isInTransaction) throws LeanException {
+        final long start = System.nanoTime();
+        boolean isFailed = true;
+        try
+        {
+            final Entity entity = doGetEntityUnobserved(key, isInTransaction);
+            isFailed = false;
+            return entity;
+        } catch (LeanException e)
+        {
+            // a missing entity is an answer, not a failure
+            isFailed = e.getErrorCode() != LeanException.Error.EntityNotFound.errorCode;
+            throw e;
+        } finally
+        {
+            onCall("get", start, isFailed);
+        }
+    }
+
+    private static Entity doGetEntityUnobserved(Key key, boolean isInTransaction) throws LeanException {
         Entity entity;
         try
         {
@@ -192,6 +232,21 @@ public class DatastoreUtils {
     }
 
     private static Map<Key,Entity> doGetEntitiesSafe(List<Key> keys, boolean isInTransaction) throws LeanException {
+        final long start = System.nanoTime();
+        boolean isFailed = true;
+        try
+        {
+            final Map<Key,Entity> result = doGetEntitiesUnobserved(keys, isInTransaction);
+            isFailed = false;
+            return result;
+        } finally
+        {
+            onCall("get", start, isFailed);
+        }
+    }
+
+    private static Map<Key,Entity> doGetEntitiesUnobserved(List<Key> keys, boolean isInTransaction)
+            throws LeanException {
         Map<Key,Entity> result = null;
         try
         {
@@ -266,6 +321,11 @@ public class DatastoreUtils {
         doPutEntitySafe(isInTransaction, entityEntity);
     }
 
+    public static void putPublicEntities(Collection<Entity> entities, boolean isInTransaction)
+            throws LeanException {
+        doPutEntitySafe(isInTransaction, entities.toArray(new Entity[entities.size()]));
+    }
+
     public static void putPublicEntity(String kind, String name, Map<String, PropertyDescription> properties)
                                         throws LeanException {
         putPublicEntity(kind, name, properties, false);
@@ -308,14 +368,35 @@ public class DatastoreUtils {
             return false;
 
         final List<Key> keys = new ArrayList<Key>(entitiesToKeys(operation.getEntities()));
-        final Map<Key,Entity> existing = doGetEntitiesSafe(keys,isInTransaction);
+        final Map<Key,Entity> existing = new HashMap<>(keys.size());
+        for (int i = 0; i < keys.size(); i += LeanDefs.DataStore.MAX_PUT_BATCH_SIZE)
+        {
+            final int end = Math.min(i + LeanDefs.DataStore.MAX_PUT_BATCH_SIZE, keys.size());
+            existing.putAll(doGetEntitiesSafe(keys.subList(i, end), isInTransaction));
+        }
         final List<Entity> merged = strategy.merge(operation, existing);
-        doPutEntitySafe(isInTransaction, merged.toArray(new Entity[]{}));
-        datastore.put(merged);
+        for (int i = 0; i < merged.size(); i += LeanDefs.DataStore.MAX_PUT_BATCH_SIZE)
+        {
+            final int end = Math.min(i + LeanDefs.DataStore.MAX_PUT_BATCH_SIZE, merged.size());
+            doPutEntitySafe(isInTransaction, merged.subList(i, end).toArray(new Entity[end - i]));
+        }
         return true;
     }
 
     private static void doPutEntitySafe(boolean isInTransaction, Entity... entityEntity) throws LeanException {
+        final long start = System.nanoTime();
+        boolean isFailed = true;
+        try
+        {
+            doPutEntityUnobserved(isInTransaction, entityEntity);
+            isFailed = false;
+        } finally
+        {
+            onCall("put", start, isFailed);
+        }
+    }
+
+    private static void doPutEntityUnobserved(boolean isInTransaction, Entity... entityEntity) throws LeanException {
         final List<Entity> entities = Arrays.asList(entityEntity);
         try
         {
@@ -369,6 +450,11 @@ public class DatastoreUtils {
         return queryEntity(leanQuery, query, isInTransaction);
     }
 
+    public static DatastoreFuture<QueryResult> queryEntityPublicAsync(LeanQuery leanQuery) {
+        Query query = new Query(leanQuery.getKind());
+        return queryEntityAsync(leanQuery, query);
+    }
+
     public static Transaction buildTransaction() {
         return buildTransaction(TransactionOptions.Builder.withDefaults());
     }
@@ -406,37 +492,23 @@ public class DatastoreUtils {
     }
 
     private static QueryResult queryEntity(LeanQuery leanQuery, Query query, boolean isInTransaction) throws LeanException {
-        if (leanQuery.getFilters() != null)
+        final long start = System.nanoTime();
+        boolean isFailed = true;
+        try
         {
-            if (leanQuery.getFilters().size() == 1)
-            {
-                final QueryFilter leanFilter =
-                        leanQuery.getFilters().get(0);
-                query.setFilter(leanFilterToFilter(leanFilter));
-            }
-            else //has several filters
-            {
-                final Collection<Query.Filter> subFilters = new ArrayList<>(leanQuery.getFilters().size());
-                for (final QueryFilter leanFilter : leanQuery.getFilters()) {
-                    subFilters.add(leanFilterToFilter(leanFilter));
-                }
-                query.setFilter(Query.CompositeFilterOperator.and(subFilters));
-            }
-        }
-        if (leanQuery.isKeysOnly())
-            query.setKeysOnly();
-
-        for (QuerySort querySort : leanQuery.getSorts()) {
-            query.addSort(querySort.getProperty(), querySort.getDirection().getSortDirection());
+            final QueryResult result = queryEntityUnobserved(leanQuery, query, isInTransaction);
+            isFailed = false;
+            return result;
+        } finally
+        {
+            onCall("query", start, isFailed);
         }
+    }
 
-        FetchOptions fetchOptions = FetchOptions.Builder.withDefaults();
-        if(leanQuery.getCursor() != null )
-            fetchOptions.startCursor(leanQuery.getCursor());
-        if(leanQuery.getOffset() != null)
-            fetchOptions.offset(leanQuery.getOffset());
-        if(leanQuery.getLimit() != null)
-            fetchOptions.limit(leanQuery.getLimit());
+    private static QueryResult queryEntityUnobserved(LeanQuery leanQuery, Query query, boolean isInTransaction)
+            throws LeanException {
+        prepareQuery(leanQuery, query);
+        FetchOptions fetchOptions = buildFetchOptions(leanQuery);
 
         PreparedQuery pq = datastore.prepare(query);
         QueryResultList<Entity> result =  null;
@@ -506,6 +578,109 @@ public class DatastoreUtils {
         }
     }
 
+    private static DatastoreFuture<QueryResult> queryEntityAsync(final LeanQuery leanQuery, final Query query) {
+        prepareQuery(leanQuery, query);
+        final FetchOptions fetchOptions = buildFetchOptions(leanQuery);
+
+        return new DatastoreFuture<>("query", new DatastoreFuture.Operation<QueryResult>() {
+            @Override
+            public Future<QueryResult> start() {
+                // the first batch is requested right away, the rest are fetched on get
+                return new QueryFuture(asyncDatastore.prepare(query).asQueryResultIterator(fetchOptions));
+            }
+        }, false);
+    }
+
+    private static void prepareQuery(LeanQuery leanQuery, Query query) {
+        if (leanQuery.getFilters() != null)
+        {
+            if (leanQuery.getFilters().size() == 1)
+            {
+                final QueryFilter leanFilter =
+                        leanQuery.getFilters().get(0);
+                query.setFilter(leanFilterToFilter(leanFilter));
+            }
+            else //has several filters
+            {
+                final Collection<Query.Filter> subFilters = new ArrayList<>(leanQuery.getFilters().size());
+                for (final QueryFilter leanFilter : leanQuery.getFilters()) {
+                    subFilters.add(leanFilterToFilter(leanFilter));
+                }
+                query.setFilter(Query.CompositeFilterOperator.and(subFilters));
+            }
+        }
+        if (leanQuery.isKeysOnly())
+            query.setKeysOnly();
+
+        for (QuerySort querySort : leanQuery.getSorts()) {
+            query.addSort(querySort.getProperty(), querySort.getDirection().getSortDirection());
+        }
+
+    }
+
+    private static FetchOptions buildFetchOptions(LeanQuery leanQuery) {
+        FetchOptions fetchOptions = FetchOptions.Builder.withDefaults();
+        if(leanQuery.getCursor() != null )
+            fetchOptions.startCursor(leanQuery.getCursor());
+        if(leanQuery.getOffset() != null)
+            fetchOptions.offset(leanQuery.getOffset());
+        if(leanQuery.getLimit() != null)
+            fetchOptions.limit(leanQuery.getLimit());
+        return fetchOptions;
+    }
+
+    /**
+     * Drains a pending query into a query result
+     */
+    private static final class QueryFuture implements Future<QueryResult> {
+
+        QueryFuture(final QueryResultIterator<Entity> iterator) {
+            m_iterator = iterator;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return m_result != null;
+        }
+
+        @Override
+        public synchronized QueryResult get() throws ExecutionException {
+            if (m_result == null)
+            {
+                try
+                {
+                    final List<Entity> entities = new ArrayList<>();
+                    while (m_iterator.hasNext())
+                        entities.add(m_iterator.next());
+                    m_result = new QueryResult(entities, m_iterator.getCursor());
+                }
+                catch (RuntimeException e)
+                {
+                    throw new ExecutionException(e);
+                }
+            }
+            return m_result;
+        }
+
+        @Override
+        public QueryResult get(long timeout, TimeUnit unit) throws ExecutionException {
+            return get();
+        }
+
+        private final QueryResultIterator<Entity> m_iterator;
+        private QueryResult m_result;
+    }
+
     private static Query.FilterPredicate leanFilterToFilter(QueryFilter queryFilter) {
         return new Query.FilterPredicate(
                 queryFilter.getProperty(),
@@ -513,6 +688,12 @@ public class DatastoreUtils {
                 queryFilter.getValue());
     }
 
+    static void onCall(final String operation, final long startNanos, final boolean isFailed) {
+        final CallObserver observer = callObserver;
+        if (observer != null)
+            observer.onCall(operation, System.nanoTime() - startNanos, isFailed);
+    }
+
     private static Key getCurrentAccountKey() {
         return AccountUtils.getAccountKey(AuthService.getCurrentAccount().id);
     }
@@ -1,5 +1,6 @@
 package com.leanengine.server.auth;
 
+import com.leanengine.server.LeanDefs;
 import com.leanengine.server.LeanException;
 import com.leanengine.server.appengine.AccountUtils;
 import rest.o.gram.lean.LeanAccount;
@@ -59,10 +60,19 @@ public class AuthService {
 
     private static LeanAccount getAccountByToken(String authToken) {
 
+        // signed tokens are self-contained, random tokens are looked up
+        if (SignedAuthTokens.isSigned(authToken))
+        {
+            AuthToken signedToken = SignedAuthTokens.getInstance().verify(authToken);
+            if (signedToken == null || AccountUtils.isSignedTokenRevoked(signedToken))
+                return null;
+            return AccountUtils.getCachedAccount(signedToken.accountID);
+        }
+
         AuthToken savedToken = AccountUtils.getAuthToken(authToken);
         if (savedToken == null)
             return null;
-        LeanAccount user = AccountUtils.getAccount(savedToken.accountID);
+        LeanAccount user = AccountUtils.getCachedAccount(savedToken.accountID);
         if (user == null)
             return null;
 
@@ -73,7 +83,13 @@ public class AuthService {
         String token = tlAuthToken.get();
         try
         {
-            if (token != null)
+            if (SignedAuthTokens.isSigned(token))
+            {
+                AuthToken signedToken = SignedAuthTokens.getInstance().verify(token);
+                if (signedToken != null)
+                    AccountUtils.revokeSignedToken(signedToken);
+            }
+            else if (token != null)
                 AccountUtils.removeAuthToken(token);
         }
         catch (LeanException e)
@@ -86,6 +102,9 @@ public class AuthService {
     }
 
     public static AuthToken createAuthToken(long accountID) {
+        if (LeanDefs.Auth.SIGNED_TOKENS_ENABLED)
+            return SignedAuthTokens.getInstance().create(accountID);
+
         AuthToken authToken = new AuthToken(accountID);
         try
         {
@@ -2,8 +2,6 @@ package com.leanengine.server.auth;
 
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.util.logging.Logger;
 
@@ -25,15 +23,7 @@ public class JsonAuthFilter implements Filter {
     public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
         HttpServletRequest httpServletRequest = (HttpServletRequest) servletRequest;
 
-        // check the session support
-        HttpSession session = httpServletRequest.getSession();
-        if (session.getId() == null) {
-            log.severe("Session support NOT enabled.");
-            HttpServletResponse httpResponse = (HttpServletResponse) servletResponse;
-            httpResponse.sendError(500, "Server not properly configured: sessions not enabled");
-            return;
-        }
-
+        // JSON requests carry their token in a header, so no session is created for them
         String token = httpServletRequest.getHeader("lean_token");
 
         if (token != null)
@@ -0,0 +1,126 @@
+package com.leanengine.server.auth;
+
+import com.leanengine.server.LeanDefs;
+import com.leanengine.server.LeanEngineSettings;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Self-contained auth tokens - "s1.account-id.expiration.signature", signed with the application's key.
+ * Verified without any data store work, unlike the random tokens which are looked up.
+ */
+public final class SignedAuthTokens {
+
+    /**
+     * @return true if the given token is a signed token (which may still be invalid)
+     */
+    public static boolean isSigned(final String token) {
+        return token != null && token.startsWith(PREFIX);
+    }
+
+    /**
+     * @return the tokens signed with the application's key
+     */
+    public static SignedAuthTokens getInstance() {
+        SignedAuthTokens result = instance;
+        if (result == null)
+        {
+            synchronized (SignedAuthTokens.class)
+            {
+                if (instance == null)
+                    instance = new SignedAuthTokens(LeanEngineSettings.getAuthTokensKey());
+                result = instance;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a signed token of the given account
+     */
+    public AuthToken create(final long accountID) {
+        return create(accountID, System.currentTimeMillis());
+    }
+
+    AuthToken create(final long accountID, final long timeCreated) {
+        final String payload = PREFIX + accountID + SEPARATOR + (timeCreated + LeanDefs.Auth.SIGNED_TOKEN_PERIOD);
+        return new AuthToken(payload + SEPARATOR + sign(payload), accountID, timeCreated);
+    }
+
+    /**
+     * Verifies the given signed token
+     * @return the token or null if it is malformed, forged or expired
+     */
+    public AuthToken verify(final String token) {
+        if (!isSigned(token))
+            return null;
+
+        final int signatureStart = token.lastIndexOf(SEPARATOR);
+        final String payload = token.substring(0, signatureStart);
+        final byte[] signature = sign(payload).getBytes(ASCII);
+        if (!MessageDigest.isEqual(signature, token.substring(signatureStart + 1).getBytes(ASCII)))
+            return null;
+
+        final String[] parts = payload.substring(PREFIX.length()).split("\\" + SEPARATOR);
+        if (parts.length != 2)
+            return null;
+        final long accountID;
+        final long expiration;
+        try
+        {
+            accountID = Long.parseLong(parts[0]);
+            expiration = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e)
+        {
+            return null;
+        }
+
+        if (expiration < System.currentTimeMillis())
+            return null;
+        return new AuthToken(token, accountID, expiration - LeanDefs.Auth.SIGNED_TOKEN_PERIOD);
+    }
+
+    private String sign(final String payload) {
+        final byte[] mac = Arrays.copyOf(m_macs.get().doFinal(payload.getBytes(ASCII)), LeanDefs.Auth.SIGNATURE_LENGTH);
+        final char[] hex = new char[mac.length * 2];
+        for (int i = 0; i < mac.length; ++i)
+        {
+            hex[2 * i] = HEX_DIGITS[(mac[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[mac[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * @param key the signing key - the application's, or another one in tests
+     */
+    SignedAuthTokens(final String key) {
+        m_key = key;
+    }
+
+    private static final String PREFIX = "s1.";
+    private static final char SEPARATOR = '.';
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static volatile SignedAuthTokens instance;
+    private final String m_key;
+    private final ThreadLocal<Mac> m_macs = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            try
+            {
+                final Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(m_key.getBytes(ASCII), "HmacSHA256"));
+                return mac;
+            } catch (GeneralSecurityException e)
+            {
+                throw new IllegalStateException("cannot initialize auth tokens signature", e);
+            }
+        }
+    };
+}
@@ -0,0 +1,66 @@
+package com.leanengine.server.auth;
+
+import com.leanengine.server.LeanDefs;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SignedAuthTokensTest {
+
+    @Test
+    public void verifiesCreatedToken() {
+        final AuthToken token = tokens.create(42);
+        assertTrue(SignedAuthTokens.isSigned(token.token));
+
+        final AuthToken verified = tokens.verify(token.token);
+        assertNotNull(verified);
+        assertEquals(42, verified.accountID);
+        assertEquals(token.timeCreated, verified.timeCreated);
+    }
+
+    @Test
+    public void rejectsTamperedSignature() {
+        final String token = tokens.create(42).token;
+        final char last = token.charAt(token.length() - 1);
+        final String tampered = token.substring(0, token.length() - 1) + (last == '0' ? '1' : '0');
+        assertNull(tokens.verify(tampered));
+    }
+
+    @Test
+    public void rejectsTamperedPayload() {
+        // another account with the original signature
+        final String token = tokens.create(42).token;
+        assertNull(tokens.verify(token.replaceFirst("^s1\\.42\\.", "s1.43.")));
+    }
+
+    @Test
+    public void rejectsTokenOfAnotherKey() {
+        final String token = tokens.create(42).token;
+        assertNull(new SignedAuthTokens("another-key").verify(token));
+    }
+
+    @Test
+    public void rejectsExpiredToken() {
+        final long timeCreated = System.currentTimeMillis() - LeanDefs.Auth.SIGNED_TOKEN_PERIOD - 1000;
+        final AuthToken token = tokens.create(42, timeCreated);
+        assertNull(tokens.verify(token.token));
+    }
+
+    @Test
+    public void rejectsWrongPrefix() {
+        final String token = tokens.create(42).token;
+        final String unsigned = "s2." + token.substring(3);
+        assertFalse(SignedAuthTokens.isSigned(unsigned));
+        assertNull(tokens.verify(unsigned));
+        assertNull(tokens.verify(null));
+    }
+
+    @Test
+    public void rejectsMalformedToken() {
+        assertNull(tokens.verify("s1."));
+        assertNull(tokens.verify("s1.42"));
+        assertNull(tokens.verify("s1.not-a-number.123.abc"));
+    }
+
+    private final SignedAuthTokens tokens = new SignedAuthTokens("test-key");
+}
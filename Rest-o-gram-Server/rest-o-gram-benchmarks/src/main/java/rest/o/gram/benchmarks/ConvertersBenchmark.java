@@ -0,0 +1,62 @@
+package rest.o.gram.benchmarks;
+
+import com.google.appengine.api.datastore.Entity;
+import org.jinstagram.entity.users.feed.MediaFeed;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import rest.o.gram.ApisConverters;
+import rest.o.gram.DataStoreConverters;
+import rest.o.gram.entities.RestogramPhoto;
+import rest.o.gram.service.InstagramServices.Entities.RestogramPhotos;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversions of a page of photos - instagram to restogram (helpers), and restogram to/from the data store
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConvertersBenchmark {
+
+    @Setup
+    public void setUp() {
+        m_services.setUp();
+        m_recentMedia = Fixtures.loadRecentMedia();
+        m_photos = Fixtures.loadPhotos();
+        m_entities = new Entity[m_photos.size()];
+        for (int i = 0; i < m_entities.length; ++i)
+            m_entities[i] = DataStoreConverters.photoToEntity(m_photos.get(i));
+    }
+
+    @TearDown
+    public void tearDown() {
+        m_services.tearDown();
+    }
+
+    @Benchmark
+    public RestogramPhotos convertToRestogramPhotos() {
+        return ApisConverters.convertToRestogramPhotos(m_recentMedia, Fixtures.VENUE_ID);
+    }
+
+    @Benchmark
+    public void photoToProps(final Blackhole blackhole) {
+        for (final RestogramPhoto currPhoto : m_photos)
+            blackhole.consume(DataStoreConverters.photoToProps(currPhoto));
+    }
+
+    @Benchmark
+    public void entityToPhoto(final Blackhole blackhole) {
+        for (final Entity currEntity : m_entities)
+            blackhole.consume(DataStoreConverters.entityToPhoto(currEntity));
+    }
+
+    private final LocalServices m_services = new LocalServices();
+    private MediaFeed m_recentMedia;
+    private List<RestogramPhoto> m_photos;
+    private Entity[] m_entities;
+}
@@ -0,0 +1,48 @@
+package rest.o.gram.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import rest.o.gram.Utils.EncodingUtils;
+import rest.o.gram.entities.RestogramPhoto;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Captions encoding of a page of photos, as done on each photo sent between the apps
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncodingBenchmark {
+
+    @Setup
+    public void setUp() {
+        final List<RestogramPhoto> photos = Fixtures.loadPhotos();
+        m_captions = new String[photos.size()];
+        m_encodedCaptions = new byte[photos.size()][];
+        for (int i = 0; i < m_captions.length; ++i)
+        {
+            m_captions[i] = photos.get(i).getCaption();
+            m_encodedCaptions[i] = EncodingUtils.encodeString(m_captions[i]);
+        }
+    }
+
+    @Benchmark
+    public void encodeString(final Blackhole blackhole) {
+        for (final String currCaption : m_captions)
+            blackhole.consume(EncodingUtils.encodeString(currCaption));
+    }
+
+    @Benchmark
+    public void decodeString(final Blackhole blackhole) {
+        for (final byte[] currCaption : m_encodedCaptions)
+            blackhole.consume(EncodingUtils.decodeString(currCaption));
+    }
+
+    private String[] m_captions;
+    private byte[][] m_encodedCaptions;
+}
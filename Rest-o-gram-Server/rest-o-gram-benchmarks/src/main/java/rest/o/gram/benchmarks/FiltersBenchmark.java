@@ -0,0 +1,45 @@
+package rest.o.gram.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rest.o.gram.entities.RestogramPhoto;
+import rest.o.gram.filters.HashtagRestogramFilter;
+import rest.o.gram.filters.RestogramFilter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tags filtering of a page of photos, with the built-in food dictionary (the local data store has none)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FiltersBenchmark {
+
+    @Setup
+    public void setUp() {
+        m_services.setUp();
+        m_photos = Fixtures.loadPhotos();
+        // loads the dictionary, outside of the measurement
+        m_filter.doFilter(m_photos);
+    }
+
+    @TearDown
+    public void tearDown() {
+        m_services.tearDown();
+    }
+
+    @Benchmark
+    public List<RestogramPhoto> hashtagFilter() {
+        // approval is idempotent, so the same page is filtered again
+        m_filter.doFilter(m_photos);
+        return m_photos;
+    }
+
+    private final LocalServices m_services = new LocalServices();
+    private final RestogramFilter m_filter = new HashtagRestogramFilter();
+    private List<RestogramPhoto> m_photos;
+}
@@ -0,0 +1,120 @@
+package rest.o.gram.benchmarks;
+
+import com.google.gson.Gson;
+import org.jinstagram.entity.users.feed.MediaFeed;
+import rest.o.gram.ApisConverters;
+import rest.o.gram.entities.RestogramPhoto;
+import rest.o.gram.tasks.TaskPayloadCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * The benchmarks' inputs, loaded from the fixtures resources - instagram responses as the helpers receive them.
+ * The responses are synthetic: hand-written in instagram's format, not recorded, so they approximate
+ * the size and mix of real pages but are not a sample of them.
+ */
+final class Fixtures {
+
+    static final String VENUE_ID = "4b5b1d41f964a520f0e128e3";
+
+    /**
+     * @return a synthetic page of recent media of a venue (20 photos, food and non-food, english and hebrew captions)
+     */
+    static MediaFeed loadRecentMedia() {
+        return load("recent-media-by-location.json", MediaFeed.class);
+    }
+
+    /**
+     * @return the photos of the recent media page, as converted by the helpers
+     */
+    static List<RestogramPhoto> loadPhotos() {
+        return ApisConverters.convertToRestogramPhotos(loadRecentMedia(), VENUE_ID).getPhotos();
+    }
+
+    /**
+     * @return a legacy text filter result of the given photos, as written by the worker for legacy tasks
+     */
+    static byte[] encodeLegacyFilterResult(final List<RestogramPhoto> photos) {
+        final StringBuilder builder = new StringBuilder(VENUE_ID).append(';');
+        for (int i = 0; i < photos.size(); ++i)
+        {
+            if (i != 0)
+                builder.append(',');
+            builder.append(photos.get(i).getInstagram_id()).append(',').append(isApproved(i));
+        }
+        return builder.toString().getBytes(UTF8);
+    }
+
+    /**
+     * @return a binary (deflated) filter result of the given photos
+     */
+    static byte[] encodeBinaryFilterResult(final List<RestogramPhoto> photos) {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        writeString(body, VENUE_ID);
+        writeVarint(body, photos.size());
+        for (int i = 0; i < photos.size(); ++i)
+        {
+            writeString(body, photos.get(i).getInstagram_id());
+            body.write(isApproved(i) ? 1 : 0);
+        }
+
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(body.toByteArray());
+        deflater.finish();
+        final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.write(TaskPayloadCodec.BINARY_VERSION);
+        payload.write(FLAG_DEFLATED);
+        final byte[] buffer = new byte[1024];
+        while (!deflater.finished())
+            payload.write(buffer, 0, deflater.deflate(buffer));
+        deflater.end();
+        return payload.toByteArray();
+    }
+
+    private static <T> T load(final String name, final Class<T> type) {
+        final InputStream stream = Fixtures.class.getResourceAsStream("/fixtures/" + name);
+        if (stream == null)
+            throw new IllegalStateException("missing fixture: " + name);
+
+        try (final Reader reader = new InputStreamReader(stream, UTF8))
+        {
+            // as jinstagram parses the responses
+            return new Gson().fromJson(reader, type);
+        } catch (IOException e)
+        {
+            throw new IllegalStateException("cannot read fixture: " + name, e);
+        }
+    }
+
+    private static boolean isApproved(final int index) {
+        return index % 3 != 0;
+    }
+
+    private static void writeString(final ByteArrayOutputStream out, final String value) {
+        final byte[] bytes = value.getBytes(UTF8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarint(final ByteArrayOutputStream out, final int value) {
+        int remaining = value;
+        while ((remaining & ~0x7f) != 0)
+        {
+            out.write((remaining & 0x7f) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write(remaining);
+    }
+
+    private Fixtures() {}
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int FLAG_DEFLATED = 1;
+}
@@ -0,0 +1,22 @@
+package rest.o.gram.benchmarks;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+
+/**
+ * In-memory app engine services for the benchmarked thread - the environment is per thread,
+ * so set up from a trial level setup of a single threaded benchmark
+ */
+final class LocalServices {
+
+    void setUp() {
+        m_helper.setUp();
+    }
+
+    void tearDown() {
+        m_helper.tearDown();
+    }
+
+    private final LocalServiceTestHelper m_helper =
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+}
@@ -0,0 +1,38 @@
+package rest.o.gram.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rest.o.gram.entities.RestogramPhoto;
+import rest.o.gram.results.PhotosResult;
+import rest.o.gram.service.PhotosResults;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merging of cached photos with a page of instagram photos, as done by the photos service
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PhotosResultsBenchmark {
+
+    @Setup
+    public void setUp() {
+        final List<RestogramPhoto> photos = Fixtures.loadPhotos();
+        final int cachedCount = photos.size() / 3;
+        m_cached = new PhotosResult(photos.subList(0, cachedCount).toArray(new RestogramPhoto[0]), "cache-token");
+        m_instagram = new PhotosResult(photos.subList(cachedCount, photos.size()).toArray(new RestogramPhoto[0]),
+                                       "instagram-token");
+    }
+
+    @Benchmark
+    public PhotosResult merge() {
+        return PhotosResults.merge(m_cached, m_instagram);
+    }
+
+    private PhotosResult m_cached;
+    private PhotosResult m_instagram;
+}
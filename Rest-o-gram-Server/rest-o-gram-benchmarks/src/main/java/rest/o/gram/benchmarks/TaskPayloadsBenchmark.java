@@ -0,0 +1,46 @@
+package rest.o.gram.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rest.o.gram.entities.RestogramPhoto;
+import rest.o.gram.tasks.TaskPayloadCodec;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The filter queues payloads - encoding a filter task of a page, and decoding its result in both formats
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskPayloadsBenchmark {
+
+    @Setup
+    public void setUp() {
+        m_photos = Fixtures.loadPhotos();
+        m_legacyResult = Fixtures.encodeLegacyFilterResult(m_photos);
+        m_binaryResult = Fixtures.encodeBinaryFilterResult(m_photos);
+    }
+
+    @Benchmark
+    public byte[] encodeFilterTask() {
+        return TaskPayloadCodec.encodeFilterTask(Fixtures.VENUE_ID, m_photos);
+    }
+
+    @Benchmark
+    public TaskPayloadCodec.FilterResult decodeLegacyFilterResult() {
+        return TaskPayloadCodec.decodeFilterResult(m_legacyResult);
+    }
+
+    @Benchmark
+    public TaskPayloadCodec.FilterResult decodeBinaryFilterResult() {
+        return TaskPayloadCodec.decodeFilterResult(m_binaryResult);
+    }
+
+    private List<RestogramPhoto> m_photos;
+    private byte[] m_legacyResult;
+    private byte[] m_binaryResult;
+}
@@ -0,0 +1,63 @@
+package rest.o.gram.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latency and errors injected into the responses of an upstream stub.
+ * Written as "latency:jitter:error-rate" - millis, millis and a fraction, e.g. "150:100:0.01"
+ */
+final class FaultProfile {
+
+    /**
+     * @throws IllegalArgumentException thrown when the given profile is malformed
+     */
+    static FaultProfile parse(final String profile) {
+        final String[] parts = profile.split(":");
+        if (parts.length != 3)
+            throw new IllegalArgumentException("expected latency:jitter:error-rate, got: " + profile);
+
+        try
+        {
+            return new FaultProfile(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Double.parseDouble(parts[2]));
+        } catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("malformed fault profile: " + profile, e);
+        }
+    }
+
+    FaultProfile(final long latency, final long jitter, final double errorRate) {
+        if (latency < 0 || jitter < 0 || errorRate < 0 || errorRate > 1)
+            throw new IllegalArgumentException("fault profile is out of range");
+        m_latency = latency;
+        m_jitter = jitter;
+        m_errorRate = errorRate;
+    }
+
+    /**
+     * @return the delay of the next response, in millis - the latency plus an exponential jitter,
+     *         so the tail is longer than the body as with the real services
+     */
+    long nextDelay() {
+        if (m_jitter == 0)
+            return m_latency;
+        final double jitter = -m_jitter * Math.log(1 - ThreadLocalRandom.current().nextDouble());
+        return m_latency + Math.min((long)jitter, m_jitter * MAX_JITTER_FACTOR);
+    }
+
+    /**
+     * @return true if the next response should fail
+     */
+    boolean nextIsFailed() {
+        return m_errorRate > 0 && ThreadLocalRandom.current().nextDouble() < m_errorRate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%dms+~%dms, %.1f%% errors", m_latency, m_jitter, m_errorRate * 100);
+    }
+
+    private static final long MAX_JITTER_FACTOR = 20;
+    private final long m_latency;
+    private final long m_jitter;
+    private final double m_errorRate;
+}
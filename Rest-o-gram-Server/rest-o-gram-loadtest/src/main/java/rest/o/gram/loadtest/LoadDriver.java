@@ -0,0 +1,156 @@
+package rest.o.gram.loadtest;
+
+import rest.o.gram.metrics.LatencyHistogram;
+import rest.o.gram.metrics.Metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Replays the workload at a target rate, open loop - requests are started on schedule whether or not
+ * earlier requests have completed, and latency is measured from the scheduled start. A server which
+ * falls behind therefore shows its queueing delay, instead of silently lowering the offered load.
+ */
+final class LoadDriver {
+
+    // the operations' latencies are kept apart from the server's stages in the metrics registry
+    static final String METRICS_PREFIX = "loadtest.";
+
+    /**
+     * The results of an operation during the measured period
+     */
+    static final class OperationStats {
+
+        OperationStats(final Operation operation) {
+            m_latencies = Metrics.histogram(METRICS_PREFIX + operation.getName());
+        }
+
+        long getCount() {
+            return m_latencies.getSnapshot().getCount();
+        }
+
+        long getFailures() {
+            return m_failures.get();
+        }
+
+        LatencyHistogram.Snapshot getLatencies() {
+            return m_latencies.getSnapshot();
+        }
+
+        private final LatencyHistogram m_latencies;
+        private final AtomicLong m_failures = new AtomicLong();
+    }
+
+    LoadDriver(final Workload workload, final LocalServices services, final Map<Operation, Integer> mix,
+               final double rps, final int workers) {
+        m_workload = workload;
+        m_mix = mix;
+        m_period = (long)(TimeUnit.SECONDS.toNanos(1) / rps);
+        m_executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                                            new LinkedBlockingQueue<Runnable>(),
+                                            services.createThreadFactory("driver"));
+        for (final Operation currOperation : Operation.values())
+            m_stats.put(currOperation, new OperationStats(currOperation));
+        for (final int currWeight : mix.values())
+            m_totalWeight += currWeight;
+    }
+
+    /**
+     * Runs the workload, blocks until the last scheduled request has completed
+     * @param warmup period before measuring, in secs
+     * @param duration measured period, in secs
+     */
+    void run(final long warmup, final long duration) throws InterruptedException {
+        final long start = System.nanoTime();
+        m_measureStart = start + TimeUnit.SECONDS.toNanos(warmup);
+        final long end = m_measureStart + TimeUnit.SECONDS.toNanos(duration);
+
+        for (long i = 0; ; ++i)
+        {
+            final long scheduled = start + i * m_period;
+            if (scheduled >= end)
+                break;
+            final long delay = scheduled - System.nanoTime();
+            if (delay > 0)
+                TimeUnit.NANOSECONDS.sleep(delay);
+            m_executor.execute(createRequest(pickOperation(), scheduled));
+        }
+
+        m_executor.shutdown();
+        if (!m_executor.awaitTermination(DRAIN_TIMEOUT, TimeUnit.SECONDS))
+        {
+            log.warning("requests are still running after the drain timeout, dropping them");
+            m_executor.shutdownNow();
+        }
+        m_measureEnd = Math.max(end, m_lastCompletion.get());
+    }
+
+    Map<Operation, OperationStats> getStats() {
+        return m_stats;
+    }
+
+    /**
+     * @return the measured period, from the first measured request to the last completion, in nanos
+     */
+    long getMeasuredPeriod() {
+        return m_measureEnd - m_measureStart;
+    }
+
+    private Runnable createRequest(final Operation operation, final long scheduled) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                boolean isSucceeded = false;
+                try
+                {
+                    isSucceeded = m_workload.execute(operation);
+                } catch (RuntimeException e)
+                {
+                    log.warning(String.format("%s has failed, error: %s", operation.getName(), e));
+                }
+
+                final long completed = System.nanoTime();
+                if (scheduled < m_measureStart)
+                    return; // warm-up
+
+                final OperationStats stats = m_stats.get(operation);
+                stats.m_latencies.record(completed - scheduled);
+                if (!isSucceeded)
+                    stats.m_failures.incrementAndGet();
+                long last = m_lastCompletion.get();
+                while (completed > last && !m_lastCompletion.compareAndSet(last, completed))
+                    last = m_lastCompletion.get();
+            }
+        };
+    }
+
+    private Operation pickOperation() {
+        int remaining = ThreadLocalRandom.current().nextInt(m_totalWeight);
+        for (final Map.Entry<Operation, Integer> currEntry : m_mix.entrySet())
+        {
+            remaining -= currEntry.getValue();
+            if (remaining < 0)
+                return currEntry.getKey();
+        }
+        throw new IllegalStateException("mix weights have changed");
+    }
+
+    private static final Logger log = Logger.getLogger(LoadDriver.class.getName());
+    private static final long DRAIN_TIMEOUT = 60; // secs
+    private final Workload m_workload;
+    private final Map<Operation, Integer> m_mix;
+    private final long m_period; // nanos between scheduled requests
+    private final ExecutorService m_executor;
+    private final Map<Operation, OperationStats> m_stats = new EnumMap<>(Operation.class);
+    private final AtomicLong m_lastCompletion = new AtomicLong(Long.MIN_VALUE);
+    private int m_totalWeight;
+    private volatile long m_measureStart;
+    private long m_measureEnd;
+}
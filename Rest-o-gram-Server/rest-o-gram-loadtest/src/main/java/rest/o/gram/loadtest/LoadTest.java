@@ -0,0 +1,149 @@
+package rest.o.gram.loadtest;
+
+import com.leanengine.server.LeanException;
+import com.leanengine.server.appengine.AccountUtils;
+import com.leanengine.server.auth.AuthService;
+import com.leanengine.server.auth.AuthToken;
+import rest.o.gram.lean.LeanAccount;
+import rest.o.gram.metrics.LatencyHistogram;
+import rest.o.gram.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An offline load test of the server - the services run in-process on the local app engine services,
+ * the helpers, foursquare and instagram are replaced by local stubs (with injected latency and errors),
+ * and a realistic mix of client operations is replayed at a target rate.
+ * Reports throughput and latency percentiles per operation, and the server's own stage latencies.
+ */
+public final class LoadTest {
+
+    public static void main(final String[] args) throws Exception {
+        final LoadTestOptions options;
+        try
+        {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e)
+        {
+            System.err.println(e.getMessage());
+            System.err.print(LoadTestOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        if (!options.isVerbose())
+            Logger.getLogger("").setLevel(Level.WARNING); // the server logs every request
+
+        final RecordedResponses responses = RecordedResponses.load();
+        final UpstreamStubs stubs = new UpstreamStubs(responses, options.getHelperFaults(),
+                                                      options.getFoursquareFaults(), options.getInstagramFaults());
+        stubs.start();
+        final UpstreamRouter router = new UpstreamRouter(stubs.getBaseUrl());
+        StubUrlHandlers.install(router);
+
+        final LocalServices services = new LocalServices(options.getQueueXml());
+        services.setUp();
+        try
+        {
+            UrlFetchRedirector.install(router);
+            final Workload workload = new Workload(responses.getVenueIds(), createAccounts(options.getAccounts()),
+                                                   options.getFilterType());
+            final LoadDriver driver = new LoadDriver(workload, services, options.getMix(),
+                                                     options.getRps(), options.getWorkers());
+
+            System.out.println(String.format("replaying %s at %.1f rps for %ds (after a %ds warm-up), stubs at %s",
+                                             options.getMix(), options.getRps(), options.getDuration(),
+                                             options.getWarmup(), stubs.getBaseUrl()));
+            driver.run(options.getWarmup(), options.getDuration());
+
+            System.out.print(formatReport(driver));
+            System.out.println("upstream stubs:");
+            System.out.print(stubs.getStats());
+            System.out.println("server stages (including the warm-up):");
+            System.out.print(formatStages());
+        } finally
+        {
+            services.tearDown();
+            stubs.stop();
+        }
+        System.exit(0); // the server's background threads are not stopped
+    }
+
+    /**
+     * Creates the accounts of the signed in clients
+     * @return an auth token per account
+     */
+    private static List<String> createAccounts(final int count) {
+        final List<String> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i)
+        {
+            final LeanAccount account = new LeanAccount(0, "load-test-" + i, "load-test-" + i, "load-test",
+                                                        new HashMap<String, Object>());
+            try
+            {
+                AccountUtils.saveAccount(account);
+            } catch (LeanException e)
+            {
+                throw new IllegalStateException("cannot save a load test account. code:" + e.getErrorCode());
+            }
+            final AuthToken token = AuthService.createAuthToken(account.id);
+            if (token == null)
+                throw new IllegalStateException("cannot create an auth token for a load test account");
+            tokens.add(token.token);
+        }
+        return tokens;
+    }
+
+    private static String formatReport(final LoadDriver driver) {
+        final double seconds = driver.getMeasuredPeriod() / (double)TimeUnit.SECONDS.toNanos(1);
+        final StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-10s %8s %8s %8s %9s %9s %9s %9s%n",
+                                     "operation", "count", "rps", "failed", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+
+        long total = 0;
+        long failures = 0;
+        for (final Map.Entry<Operation, LoadDriver.OperationStats> currEntry : driver.getStats().entrySet())
+        {
+            final LoadDriver.OperationStats stats = currEntry.getValue();
+            if (stats.getCount() == 0)
+                continue;
+            total += stats.getCount();
+            failures += stats.getFailures();
+            final LatencyHistogram.Snapshot latencies = stats.getLatencies();
+            builder.append(String.format("%-10s %8d %8.1f %7.1f%% %9.1f %9.1f %9.1f %9.1f%n",
+                                         currEntry.getKey().getName(), stats.getCount(), stats.getCount() / seconds,
+                                         100.0 * stats.getFailures() / stats.getCount(),
+                                         toMillis(latencies.getQuantile(0.5)), toMillis(latencies.getQuantile(0.9)),
+                                         toMillis(latencies.getQuantile(0.99)), toMillis(latencies.getMax())));
+        }
+        builder.append(String.format("%-10s %8d %8.1f %7.1f%%%n", "total", total, total / seconds,
+                                     total == 0 ? 0 : 100.0 * failures / total));
+        return builder.toString();
+    }
+
+    private static String formatStages() {
+        final StringBuilder builder = new StringBuilder();
+        for (final Map.Entry<String, LatencyHistogram.Snapshot> currEntry : Metrics.getHistograms().entrySet())
+        {
+            final LatencyHistogram.Snapshot snapshot = currEntry.getValue();
+            if (snapshot.getCount() == 0 || currEntry.getKey().startsWith(LoadDriver.METRICS_PREFIX))
+                continue;
+            builder.append(String.format("  %-32s %8d  p50 %8.1f  p99 %8.1f ms%n", currEntry.getKey(),
+                                         snapshot.getCount(), toMillis(snapshot.getQuantile(0.5)),
+                                         toMillis(snapshot.getQuantile(0.99))));
+        }
+        return builder.toString();
+    }
+
+    private static double toMillis(final long micros) {
+        return micros / 1000.0;
+    }
+
+    private LoadTest() {}
+}
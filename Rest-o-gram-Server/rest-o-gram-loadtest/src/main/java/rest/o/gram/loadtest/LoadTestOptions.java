@@ -0,0 +1,171 @@
+package rest.o.gram.loadtest;
+
+import rest.o.gram.filters.RestogramFilterType;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The load test's command line options, given as --name=value
+ */
+final class LoadTestOptions {
+
+    static final String USAGE =
+            "options (--name=value):\n" +
+            "  rps          target requests per second, open loop (default 20)\n" +
+            "  duration     measured seconds (default 60)\n" +
+            "  warmup       seconds before measuring (default 10)\n" +
+            "  workers      request threads (default 64)\n" +
+            "  mix          operation weights (default nearby=30,photos=40,next=20,favorites=10)\n" +
+            "  filter       photos filter type (default Simple)\n" +
+            "  accounts     signed in accounts for the favorites (default 20)\n" +
+            "  helper       helpers fault profile, latency:jitter:error-rate (default 120:80:0.01)\n" +
+            "  foursquare   foursquare fault profile (default 150:100:0.01)\n" +
+            "  instagram    instagram fault profile (default 200:150:0.02)\n" +
+            "  queue-xml    path of the webapp's queue.xml\n" +
+            "  verbose      keep the server's info logs (default false)\n";
+
+    /**
+     * @throws IllegalArgumentException thrown when an option is unknown or malformed
+     */
+    static LoadTestOptions parse(final String[] args) {
+        final Map<String, String> values = new HashMap<>(DEFAULTS);
+        values.put("queue-xml", System.getProperty(QUEUE_XML_PROPERTY, DEFAULT_QUEUE_XML));
+        for (final String currArg : args)
+        {
+            if (!currArg.startsWith("--"))
+                throw new IllegalArgumentException("unexpected argument: " + currArg);
+            final int separator = currArg.indexOf('=');
+            final String name = currArg.substring(2, separator < 0 ? currArg.length() : separator);
+            if (!values.containsKey(name))
+                throw new IllegalArgumentException("unknown option: " + name);
+            values.put(name, separator < 0 ? "true" : currArg.substring(separator + 1));
+        }
+
+        try
+        {
+            return new LoadTestOptions(values);
+        } catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("malformed option: " + e.getMessage(), e);
+        }
+    }
+
+    double getRps() {
+        return m_rps;
+    }
+
+    long getDuration() {
+        return m_duration;
+    }
+
+    long getWarmup() {
+        return m_warmup;
+    }
+
+    int getWorkers() {
+        return m_workers;
+    }
+
+    Map<Operation, Integer> getMix() {
+        return m_mix;
+    }
+
+    RestogramFilterType getFilterType() {
+        return m_filterType;
+    }
+
+    int getAccounts() {
+        return m_accounts;
+    }
+
+    FaultProfile getHelperFaults() {
+        return m_helperFaults;
+    }
+
+    FaultProfile getFoursquareFaults() {
+        return m_foursquareFaults;
+    }
+
+    FaultProfile getInstagramFaults() {
+        return m_instagramFaults;
+    }
+
+    String getQueueXml() {
+        return m_queueXml;
+    }
+
+    boolean isVerbose() {
+        return m_isVerbose;
+    }
+
+    private LoadTestOptions(final Map<String, String> values) {
+        m_rps = Double.parseDouble(values.get("rps"));
+        m_duration = Long.parseLong(values.get("duration"));
+        m_warmup = Long.parseLong(values.get("warmup"));
+        m_workers = Integer.parseInt(values.get("workers"));
+        m_mix = parseMix(values.get("mix"));
+        m_filterType = RestogramFilterType.valueOf(values.get("filter"));
+        m_accounts = Integer.parseInt(values.get("accounts"));
+        m_helperFaults = FaultProfile.parse(values.get("helper"));
+        m_foursquareFaults = FaultProfile.parse(values.get("foursquare"));
+        m_instagramFaults = FaultProfile.parse(values.get("instagram"));
+        m_queueXml = values.get("queue-xml");
+        m_isVerbose = Boolean.parseBoolean(values.get("verbose"));
+
+        if (m_rps <= 0 || m_duration <= 0 || m_warmup < 0 || m_workers <= 0 || m_accounts <= 0)
+            throw new IllegalArgumentException("rps, duration, workers and accounts must be positive");
+    }
+
+    private static Map<Operation, Integer> parseMix(final String mix) {
+        final Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        int total = 0;
+        for (final String currEntry : mix.split(","))
+        {
+            final String[] parts = currEntry.split("=");
+            if (parts.length != 2)
+                throw new IllegalArgumentException("expected operation=weight, got: " + currEntry);
+            final int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0)
+                throw new IllegalArgumentException("negative weight: " + currEntry);
+            weights.put(Operation.fromName(parts[0].trim()), weight);
+            total += weight;
+        }
+        if (total == 0)
+            throw new IllegalArgumentException("empty mix: " + mix);
+        return weights;
+    }
+
+    private static Map<String, String> createDefaults() {
+        final Map<String, String> defaults = new HashMap<>();
+        defaults.put("rps", "20");
+        defaults.put("duration", "60");
+        defaults.put("warmup", "10");
+        defaults.put("workers", "64");
+        defaults.put("mix", "nearby=30,photos=40,next=20,favorites=10");
+        defaults.put("filter", RestogramFilterType.Simple.name());
+        defaults.put("accounts", "20");
+        defaults.put("helper", "120:80:0.01");
+        defaults.put("foursquare", "150:100:0.01");
+        defaults.put("instagram", "200:150:0.02");
+        defaults.put("verbose", "false");
+        return defaults;
+    }
+
+    private static final Map<String, String> DEFAULTS = createDefaults();
+    private static final String QUEUE_XML_PROPERTY = "restogram.queueXml";
+    private static final String DEFAULT_QUEUE_XML = "../Rest-o-gram-Server-webapp/src/main/webapp/WEB-INF/queue.xml";
+    private final double m_rps;
+    private final long m_duration; // secs
+    private final long m_warmup; // secs
+    private final int m_workers;
+    private final Map<Operation, Integer> m_mix;
+    private final RestogramFilterType m_filterType;
+    private final int m_accounts;
+    private final FaultProfile m_helperFaults;
+    private final FaultProfile m_foursquareFaults;
+    private final FaultProfile m_instagramFaults;
+    private final String m_queueXml;
+    private final boolean m_isVerbose;
+}
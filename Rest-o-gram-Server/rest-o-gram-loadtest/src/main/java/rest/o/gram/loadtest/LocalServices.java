@@ -0,0 +1,79 @@
+package rest.o.gram.loadtest;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.appengine.tools.development.testing.LocalTaskQueueTestConfig;
+import com.google.appengine.tools.development.testing.LocalURLFetchServiceTestConfig;
+import com.google.apphosting.api.ApiProxy;
+
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The in-memory app engine services (data store, memcache, task queue and url fetch), shared by all threads -
+ * the environment is per thread, so every thread running server code is attached to the set up environment.
+ */
+final class LocalServices {
+
+    LocalServices(final String queueXmlPath) {
+        m_helper = new LocalServiceTestHelper(
+                new LocalDatastoreServiceTestConfig(),
+                new LocalMemcacheServiceTestConfig(),
+                // the server uses pull queues, tasks are only added
+                new LocalTaskQueueTestConfig().setQueueXmlPath(queueXmlPath).setDisableAutoTaskExecution(true),
+                new LocalURLFetchServiceTestConfig());
+    }
+
+    void setUp() {
+        m_helper.setUp();
+        m_environment = ApiProxy.getCurrentEnvironment();
+
+        // the threads of the server's executors (see ThreadManager) run in the same environment
+        final Map<String, Object> attributes = m_environment.getAttributes();
+        if (!attributes.containsKey(REQUEST_THREAD_FACTORY_ATTR))
+            attributes.put(REQUEST_THREAD_FACTORY_ATTR, createThreadFactory("request"));
+        if (!attributes.containsKey(BACKGROUND_THREAD_FACTORY_ATTR))
+            attributes.put(BACKGROUND_THREAD_FACTORY_ATTR, createThreadFactory("background"));
+    }
+
+    void tearDown() {
+        m_helper.tearDown();
+    }
+
+    /**
+     * Attaches the current thread to the services' environment
+     */
+    void attach() {
+        ApiProxy.setEnvironmentForCurrentThread(m_environment);
+    }
+
+    /**
+     * @return a thread factory of daemon threads attached to the services' environment
+     */
+    ThreadFactory createThreadFactory(final String name) {
+        final AtomicInteger counter = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        attach();
+                        runnable.run();
+                    }
+                }, name + '-' + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static final String REQUEST_THREAD_FACTORY_ATTR =
+            "com.google.appengine.api.ThreadManager.REQUEST_THREAD_FACTORY";
+    private static final String BACKGROUND_THREAD_FACTORY_ATTR =
+            "com.google.appengine.api.ThreadManager.BACKGROUND_THREAD_FACTORY";
+    private final LocalServiceTestHelper m_helper;
+    private ApiProxy.Environment m_environment;
+}
@@ -0,0 +1,34 @@
+package rest.o.gram.loadtest;
+
+/**
+ * The replayed client operations
+ */
+enum Operation
+{
+    Nearby("nearby"),
+    Photos("photos"),
+    NextPhotos("next"),
+    Favorites("favorites");
+
+    Operation(final String name) {
+        m_name = name;
+    }
+
+    /**
+     * @throws IllegalArgumentException thrown when there is no such operation
+     */
+    static Operation fromName(final String name) {
+        for (final Operation currOperation : values())
+        {
+            if (currOperation.m_name.equals(name))
+                return currOperation;
+        }
+        throw new IllegalArgumentException("unknown operation: " + name);
+    }
+
+    String getName() {
+        return m_name;
+    }
+
+    private final String m_name;
+}
@@ -0,0 +1,201 @@
+package rest.o.gram.loadtest;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The recorded foursquare and instagram responses, replayed per venue - every venue gets its own
+ * instagram location and every location its own pages of photos, so the caches see a realistic key space.
+ * Media ids are "<location><page><index>_<user>", so the page of a max_id is known without any state.
+ */
+final class RecordedResponses {
+
+    static RecordedResponses load() {
+        return new RecordedResponses(read("venues-search.json"),
+                                     read("location-search.json"),
+                                     read("recent-media-by-location.json"));
+    }
+
+    /**
+     * @return the foursquare venues search response
+     */
+    byte[] getVenuesSearch() {
+        return m_venuesSearch;
+    }
+
+    /**
+     * @return the ids of the venues in the venues search response
+     */
+    List<String> getVenueIds() {
+        return Collections.unmodifiableList(new ArrayList<>(m_venueNames.keySet()));
+    }
+
+    /**
+     * @return the instagram location of the given venue
+     */
+    long getLocationId(final String venueId) {
+        return FIRST_LOCATION_ID + (venueId.hashCode() & Integer.MAX_VALUE) % LOCATIONS_RANGE;
+    }
+
+    /**
+     * @return the instagram locations search response of the given foursquare venue, null if it is unknown
+     */
+    String getLocationSearch(final String venueId) {
+        final String name = m_venueNames.get(venueId);
+        if (name == null)
+            return null;
+
+        final JsonObject response = parse(m_locationSearch);
+        final JsonObject location = response.getAsJsonArray("data").get(0).getAsJsonObject();
+        location.addProperty("id", Long.toString(getLocationId(venueId)));
+        location.addProperty("name", name);
+        return response.toString();
+    }
+
+    /**
+     * @param maxId the last media id of the previous page, null for the first page
+     * @return the instagram recent media page of the given location, null if there are no more pages
+     */
+    String getRecentMedia(final long locationId, final String maxId) {
+        final int page = maxId == null ? 0 : getPage(maxId) + 1;
+        if (page < 0 || page >= PAGES_PER_LOCATION)
+            return null;
+
+        final JsonObject response = parse(m_recentMedia);
+        final JsonArray data = response.getAsJsonArray("data");
+        String lastId = null;
+        for (int i = 0; i < data.size(); ++i)
+            lastId = localize(data.get(i).getAsJsonObject(), locationId, page, i);
+
+        final JsonObject pagination = new JsonObject();
+        if (page + 1 < PAGES_PER_LOCATION && lastId != null)
+        {
+            pagination.addProperty("next_url", String.format(NEXT_URL, locationId, lastId));
+            pagination.addProperty("next_max_id", lastId);
+        }
+        response.add("pagination", pagination);
+        return response.toString();
+    }
+
+    /**
+     * @return the instagram media info response of the given media, null if it is not one of the replayed media
+     */
+    String getMediaInfo(final String mediaId) {
+        final long id;
+        try
+        {
+            id = Long.parseLong(mediaId.substring(0, Math.max(0, mediaId.indexOf('_'))));
+        } catch (NumberFormatException e)
+        {
+            return null;
+        }
+
+        final JsonArray data = parse(m_recentMedia).getAsJsonArray("data");
+        final int index = (int)(id % 100);
+        if (index >= data.size())
+            return null;
+
+        final JsonObject media = data.get(index).getAsJsonObject();
+        localize(media, id / 10000, (int)(id / 100 % 100), index);
+        final JsonObject response = new JsonObject();
+        response.add("meta", parse(META_OK));
+        response.add("data", media);
+        return response.toString();
+    }
+
+    /**
+     * @return the given JSON parsed into a jinstagram / foursquare entity, as the clients parse it
+     */
+    static <T> T fromJson(final String json, final Class<T> type) {
+        return gson.fromJson(json, type);
+    }
+
+    private RecordedResponses(final byte[] venuesSearch, final byte[] locationSearch, final byte[] recentMedia) {
+        m_venuesSearch = venuesSearch;
+        m_locationSearch = new String(locationSearch, UTF8);
+        m_recentMedia = new String(recentMedia, UTF8);
+
+        final JsonArray venues = parse(new String(venuesSearch, UTF8)).getAsJsonObject("response")
+                                                                        .getAsJsonArray("venues");
+        for (final JsonElement currVenue : venues)
+        {
+            final JsonObject venue = currVenue.getAsJsonObject();
+            m_venueNames.put(venue.get("id").getAsString(), venue.get("name").getAsString());
+        }
+    }
+
+    /**
+     * Rewrites the ids of the given recorded media to the given location and page
+     * @return the new media id
+     */
+    private static String localize(final JsonObject media, final long locationId, final int page, final int index) {
+        final String recordedId = media.get("id").getAsString();
+        final String user = recordedId.substring(recordedId.indexOf('_') + 1);
+        final String id = Long.toString(locationId * 10000 + page * 100 + index) + '_' + user;
+        media.addProperty("id", id);
+        if (media.has("location") && media.get("location").isJsonObject())
+            media.getAsJsonObject("location").addProperty("id", locationId);
+        return id;
+    }
+
+    private static int getPage(final String mediaId) {
+        try
+        {
+            final long id = Long.parseLong(mediaId.substring(0, Math.max(0, mediaId.indexOf('_'))));
+            return (int)(id / 100 % 100);
+        } catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    private static JsonObject parse(final String json) {
+        // parsed per response, the stubs hand out fresh copies
+        return new JsonParser().parse(json).getAsJsonObject();
+    }
+
+    private static byte[] read(final String name) {
+        final InputStream stream = RecordedResponses.class.getResourceAsStream("/fixtures/" + name);
+        if (stream == null)
+            throw new IllegalStateException("missing fixture: " + name);
+
+        try (final InputStream in = stream)
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+            return out.toByteArray();
+        } catch (IOException e)
+        {
+            throw new IllegalStateException("cannot read fixture: " + name, e);
+        }
+    }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Gson gson = new Gson();
+    private static final String META_OK = "{\"code\":200}";
+    private static final String NEXT_URL =
+            "https://api.instagram.com/v1/locations/%d/media/recent?max_id=%s&client_id=CLIENT_ID";
+    private static final int PAGES_PER_LOCATION = 5;
+    private static final long FIRST_LOCATION_ID = 100000000L;
+    private static final long LOCATIONS_RANGE = 800000000L;
+    private final byte[] m_venuesSearch;
+    private final String m_locationSearch;
+    private final String m_recentMedia;
+    private final Map<String, String> m_venueNames = new LinkedHashMap<>();
+}
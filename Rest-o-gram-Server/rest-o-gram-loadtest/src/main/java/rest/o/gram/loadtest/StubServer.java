@@ -0,0 +1,189 @@
+package rest.o.gram.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A local HTTP server standing in for the upstream services - each route replays recorded responses
+ * behind its own fault profile. Bound to the loopback on an ephemeral port.
+ */
+final class StubServer {
+
+    /**
+     * Builds the response body of a request
+     */
+    interface Responder {
+        /**
+         * @param path the request path, relative to the route
+         * @param query the raw query string, may be null
+         * @param body the request body
+         * @return the JSON response body or null if nothing is found
+         */
+        byte[] respond(String path, String query, byte[] body);
+    }
+
+    StubServer() throws IOException {
+        m_server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), BACKLOG);
+        m_server.setExecutor(m_executor);
+    }
+
+    /**
+     * Routes the requests under the given prefix
+     * @param headers extra headers of the successful responses
+     */
+    void route(final String prefix, final FaultProfile faults, final Map<String, String> headers,
+               final Responder responder) {
+        final Route route = new Route(prefix, faults, headers, responder);
+        m_routes.put(prefix, route);
+        m_server.createContext(prefix, route);
+    }
+
+    void start() {
+        m_server.start();
+    }
+
+    void stop() {
+        m_server.stop(0);
+        m_executor.shutdownNow();
+    }
+
+    /**
+     * @return the base URL of this server, e.g. "http://127.0.0.1:40123"
+     */
+    String getBaseUrl() {
+        final InetSocketAddress address = m_server.getAddress();
+        return "http://" + address.getAddress().getHostAddress() + ':' + address.getPort();
+    }
+
+    /**
+     * @return served requests and injected errors per route
+     */
+    String getStats() {
+        final StringBuilder builder = new StringBuilder();
+        for (final Route currRoute : m_routes.values())
+        {
+            builder.append(String.format("  %-12s %8d requests %6d injected errors  (%s)%n",
+                                         currRoute.m_prefix, currRoute.m_requests.get(),
+                                         currRoute.m_errors.get(), currRoute.m_faults));
+        }
+        return builder.toString();
+    }
+
+    private static final class Route implements HttpHandler {
+
+        Route(final String prefix, final FaultProfile faults, final Map<String, String> headers,
+              final Responder responder) {
+            m_prefix = prefix;
+            m_faults = faults;
+            m_headers = headers;
+            m_responder = responder;
+        }
+
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            try
+            {
+                m_requests.incrementAndGet();
+                final byte[] body = readFully(exchange.getRequestBody());
+                sleep(m_faults.nextDelay());
+
+                if (m_faults.nextIsFailed())
+                {
+                    m_errors.incrementAndGet();
+                    sendError(exchange, HttpURLConnection.HTTP_UNAVAILABLE);
+                    return;
+                }
+
+                final String path = exchange.getRequestURI().getPath().substring(m_prefix.length());
+                final byte[] response;
+                try
+                {
+                    response = m_responder.respond(path, exchange.getRequestURI().getRawQuery(), body);
+                } catch (RuntimeException e)
+                {
+                    log.severe(String.format("stub %s has failed on %s, error: %s",
+                                             m_prefix, exchange.getRequestURI(), e));
+                    sendError(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR);
+                    return;
+                }
+
+                if (response == null)
+                    sendError(exchange, HttpURLConnection.HTTP_NOT_FOUND);
+                else
+                {
+                    for (final Map.Entry<String, String> currHeader : m_headers.entrySet())
+                        exchange.getResponseHeaders().set(currHeader.getKey(), currHeader.getValue());
+                    send(exchange, HttpURLConnection.HTTP_OK, response);
+                }
+            } finally
+            {
+                exchange.close();
+            }
+        }
+
+        private static void send(final HttpExchange exchange, final int status,
+                                 final byte[] body) throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(status, body.length);
+            try (final OutputStream out = exchange.getResponseBody())
+            {
+                out.write(body);
+            }
+        }
+
+        private static void sendError(final HttpExchange exchange, final int status) throws IOException {
+            send(exchange, status, String.format("{\"meta\":{\"code\":%d}}", status).getBytes());
+        }
+
+        private static void sleep(final long millis) {
+            if (millis <= 0)
+                return;
+            try
+            {
+                TimeUnit.MILLISECONDS.sleep(millis);
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static byte[] readFully(final InputStream in) throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+            return out.toByteArray();
+        }
+
+        private final String m_prefix;
+        private final FaultProfile m_faults;
+        private final Map<String, String> m_headers;
+        private final Responder m_responder;
+        private final AtomicLong m_requests = new AtomicLong();
+        private final AtomicLong m_errors = new AtomicLong();
+    }
+
+    private static final Logger log = Logger.getLogger(StubServer.class.getName());
+    private static final int BACKLOG = 256;
+    private final HttpServer m_server;
+    // handlers sleep for the injected latency, so each request gets its own thread
+    private final ExecutorService m_executor = Executors.newCachedThreadPool();
+    private final Map<String, Route> m_routes = new TreeMap<>();
+}
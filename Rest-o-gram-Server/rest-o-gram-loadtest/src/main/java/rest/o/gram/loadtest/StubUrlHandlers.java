@@ -0,0 +1,208 @@
+package rest.o.gram.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.net.URLStreamHandlerFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends the HTTPS connections to the stubs - jinstagram reaches instagram with plain url connections
+ * (the next pages of a venue), not through url fetch. Connections to upstreams which are not stubbed are refused.
+ */
+final class StubUrlHandlers implements URLStreamHandlerFactory {
+
+    /**
+     * Installs the handlers, must be called before any HTTPS URL is created (once per JVM)
+     */
+    static void install(final UpstreamRouter router) {
+        URL.setURLStreamHandlerFactory(new StubUrlHandlers(router));
+    }
+
+    @Override
+    public URLStreamHandler createURLStreamHandler(final String protocol) {
+        if (!HTTPS.equals(protocol))
+            return null; // the default handler
+
+        return new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(final URL url) throws IOException {
+                final String stubUrl = m_router.rewrite(url);
+                if (stubUrl == null)
+                    throw new IOException("not stubbed, refused: " + url);
+                return new StubConnection(url, (HttpURLConnection)new URL(stubUrl).openConnection());
+            }
+
+            @Override
+            protected int getDefaultPort() {
+                return 443;
+            }
+        };
+    }
+
+    private StubUrlHandlers(final UpstreamRouter router) {
+        m_router = router;
+    }
+
+    /**
+     * A connection to a stub, seen as a connection to the upstream. The stub server lower-cases
+     * header names, so they are given back in their canonical form (jinstagram reads "X-Ratelimit-Remaining")
+     */
+    private static final class StubConnection extends HttpURLConnection {
+
+        StubConnection(final URL url, final HttpURLConnection connection) {
+            super(url);
+            m_connection = connection;
+        }
+
+        @Override
+        public void connect() throws IOException {
+            m_connection.connect();
+        }
+
+        @Override
+        public void disconnect() {
+            m_connection.disconnect();
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+
+        @Override
+        public void setConnectTimeout(final int timeout) {
+            m_connection.setConnectTimeout(timeout);
+        }
+
+        @Override
+        public int getConnectTimeout() {
+            return m_connection.getConnectTimeout();
+        }
+
+        @Override
+        public void setReadTimeout(final int timeout) {
+            m_connection.setReadTimeout(timeout);
+        }
+
+        @Override
+        public int getReadTimeout() {
+            return m_connection.getReadTimeout();
+        }
+
+        @Override
+        public void setRequestMethod(final String method) throws ProtocolException {
+            m_connection.setRequestMethod(method);
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return m_connection.getRequestMethod();
+        }
+
+        @Override
+        public void setRequestProperty(final String key, final String value) {
+            m_connection.setRequestProperty(key, value);
+        }
+
+        @Override
+        public void addRequestProperty(final String key, final String value) {
+            m_connection.addRequestProperty(key, value);
+        }
+
+        @Override
+        public String getRequestProperty(final String key) {
+            return m_connection.getRequestProperty(key);
+        }
+
+        @Override
+        public void setDoOutput(final boolean doOutput) {
+            m_connection.setDoOutput(doOutput);
+        }
+
+        @Override
+        public boolean getDoOutput() {
+            return m_connection.getDoOutput();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return m_connection.getOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return m_connection.getInputStream();
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return m_connection.getErrorStream();
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            return m_connection.getResponseCode();
+        }
+
+        @Override
+        public String getResponseMessage() throws IOException {
+            return m_connection.getResponseMessage();
+        }
+
+        @Override
+        public String getContentType() {
+            return m_connection.getContentType();
+        }
+
+        @Override
+        public String getHeaderField(final String name) {
+            return m_connection.getHeaderField(name);
+        }
+
+        @Override
+        public String getHeaderFieldKey(final int n) {
+            final String key = m_connection.getHeaderFieldKey(n);
+            return key == null ? null : canonicalize(key);
+        }
+
+        @Override
+        public String getHeaderField(final int n) {
+            return m_connection.getHeaderField(n);
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields() {
+            final Map<String, List<String>> headers = new LinkedHashMap<>();
+            for (final Map.Entry<String, List<String>> currHeader : m_connection.getHeaderFields().entrySet())
+            {
+                final String key = currHeader.getKey();
+                headers.put(key == null ? null : canonicalize(key), currHeader.getValue());
+            }
+            return Collections.unmodifiableMap(headers);
+        }
+
+        private static String canonicalize(final String name) {
+            final char[] chars = name.toLowerCase().toCharArray();
+            for (int i = 0; i < chars.length; ++i)
+            {
+                if (i == 0 || chars[i - 1] == '-')
+                    chars[i] = Character.toUpperCase(chars[i]);
+            }
+            return new String(chars);
+        }
+
+        private final HttpURLConnection m_connection;
+    }
+
+    private static final String HTTPS = "https";
+    private final UpstreamRouter m_router;
+}
@@ -0,0 +1,51 @@
+package rest.o.gram.loadtest;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.regex.Pattern;
+
+/**
+ * Maps the production upstream URLs to the stubs - nothing leaves the machine during a load test.
+ */
+final class UpstreamRouter {
+
+    UpstreamRouter(final String stubsBaseUrl) {
+        m_stubsBaseUrl = stubsBaseUrl;
+    }
+
+    /**
+     * @return the stub URL of the given upstream URL or null if the upstream is not stubbed
+     */
+    String rewrite(final String url) {
+        final URL parsed;
+        try
+        {
+            parsed = new URL(url);
+        } catch (MalformedURLException e)
+        {
+            return null;
+        }
+        return rewrite(parsed);
+    }
+
+    /**
+     * @return the stub URL of the given upstream URL or null if the upstream is not stubbed
+     */
+    String rewrite(final URL url) {
+        final String host = url.getHost();
+        final String file = url.getFile();
+        if (HELPER_HOST.matcher(host).matches())
+            return m_stubsBaseUrl + UpstreamStubs.HELPER_PREFIX + file.substring(1);
+        if (host.equals(FOURSQUARE_HOST) && file.startsWith(UpstreamStubs.FOURSQUARE_PREFIX))
+            return m_stubsBaseUrl + file;
+        if (host.equals(INSTAGRAM_HOST) && file.startsWith(UpstreamStubs.INSTAGRAM_PREFIX))
+            return m_stubsBaseUrl + file;
+        return null;
+    }
+
+    // see Defs.Transport.HELPERS_HOST_NAME_SCHEME
+    private static final Pattern HELPER_HOST = Pattern.compile("rest-o-helper\\d+\\.appspot\\.com");
+    private static final String FOURSQUARE_HOST = "api.foursquare.com";
+    private static final String INSTAGRAM_HOST = "api.instagram.com";
+    private final String m_stubsBaseUrl;
+}
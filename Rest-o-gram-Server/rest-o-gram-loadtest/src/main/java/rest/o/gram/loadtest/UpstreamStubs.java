@@ -0,0 +1,149 @@
+package rest.o.gram.loadtest;
+
+import org.jinstagram.entity.locations.LocationSearchFeed;
+import org.jinstagram.entity.media.MediaInfoFeed;
+import org.jinstagram.entity.users.feed.MediaFeed;
+import rest.o.gram.ApisConverters;
+import rest.o.gram.Defs;
+import rest.o.gram.json.JsonCodecs;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The stubbed upstreams, all served by a single local server:
+ * the helper workers under /helper, foursquare under /v2 and instagram under /v1.
+ * The helpers' responses are built as the helper servlets build them, from the recorded instagram responses.
+ */
+final class UpstreamStubs {
+
+    static final String HELPER_PREFIX = "/helper/";
+    static final String FOURSQUARE_PREFIX = "/v2/";
+    static final String INSTAGRAM_PREFIX = "/v1/";
+
+    UpstreamStubs(final RecordedResponses responses, final FaultProfile helperFaults,
+                  final FaultProfile foursquareFaults, final FaultProfile instagramFaults) throws IOException {
+        m_responses = responses;
+        m_server = new StubServer();
+        final Map<String, String> noHeaders = Collections.emptyMap();
+        m_server.route(HELPER_PREFIX, helperFaults, noHeaders, new StubServer.Responder() {
+            @Override
+            public byte[] respond(final String path, final String query, final byte[] body) {
+                return respondAsHelper(path, new String(body, UTF8).trim());
+            }
+        });
+        m_server.route(FOURSQUARE_PREFIX, foursquareFaults, noHeaders, new StubServer.Responder() {
+            @Override
+            public byte[] respond(final String path, final String query, final byte[] body) {
+                return path.equals("venues/search") ? m_responses.getVenuesSearch() : null;
+            }
+        });
+        m_server.route(INSTAGRAM_PREFIX, instagramFaults, INSTAGRAM_HEADERS, new StubServer.Responder() {
+            @Override
+            public byte[] respond(final String path, final String query, final byte[] body) {
+                return toBytes(respondAsInstagram(path, query));
+            }
+        });
+    }
+
+    void start() {
+        m_server.start();
+    }
+
+    void stop() {
+        m_server.stop();
+    }
+
+    String getBaseUrl() {
+        return m_server.getBaseUrl();
+    }
+
+    String getStats() {
+        return m_server.getStats();
+    }
+
+    /**
+     * @param type the helper request type, see {@link Defs.Instagram.RequestType}
+     * @param payload the helper request payload - a venue, location or media id
+     */
+    private byte[] respondAsHelper(final String type, final String payload) {
+        final Object result;
+        if (type.equals(Defs.Instagram.RequestType.GetLocation.getType()))
+        {
+            final String locationSearch = m_responses.getLocationSearch(payload);
+            result = locationSearch == null ? null :
+                    RecordedResponses.fromJson(locationSearch, LocationSearchFeed.class);
+        }
+        else if (type.equals(Defs.Instagram.RequestType.GetMediaByLocation.getType()))
+        {
+            final String recentMedia = m_responses.getRecentMedia(Long.parseLong(payload), null);
+            result = recentMedia == null ? null :
+                    ApisConverters.convertToRestogramPhotos(RecordedResponses.fromJson(recentMedia, MediaFeed.class))
+                                  .encodeStrings();
+        }
+        else if (type.equals(Defs.Instagram.RequestType.GetPhoto.getType()))
+        {
+            final String mediaInfo = m_responses.getMediaInfo(payload);
+            result = mediaInfo == null ? null :
+                    ApisConverters.convertToRestogramPhoto(RecordedResponses.fromJson(mediaInfo, MediaInfoFeed.class))
+                                  .encodeStrings();
+        }
+        else
+            return null;
+
+        return result == null ? null : toBytes(JsonCodecs.getGson().toJson(result));
+    }
+
+    private String respondAsInstagram(final String path, final String query) {
+        final Matcher recentMedia = RECENT_MEDIA_PATH.matcher(path);
+        if (!recentMedia.matches())
+            return null;
+        return m_responses.getRecentMedia(Long.parseLong(recentMedia.group(1)), getParameter(query, "max_id"));
+    }
+
+    private static String getParameter(final String query, final String name) {
+        if (query == null)
+            return null;
+
+        for (final String currParameter : query.split("&"))
+        {
+            final int separator = currParameter.indexOf('=');
+            if (separator > 0 && currParameter.substring(0, separator).equals(name))
+            {
+                try
+                {
+                    return URLDecoder.decode(currParameter.substring(separator + 1), "UTF-8");
+                } catch (UnsupportedEncodingException e)
+                {
+                    throw new IllegalStateException(e); // UTF-8 is always supported
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> createInstagramHeaders() {
+        // a quota which is never exhausted, the stubs test the server and not the credentials governor
+        final Map<String, String> headers = new HashMap<>();
+        headers.put("X-Ratelimit-Limit", "5000");
+        headers.put("X-Ratelimit-Remaining", "4999");
+        return headers;
+    }
+
+    private static byte[] toBytes(final String json) {
+        return json == null ? null : json.getBytes(UTF8);
+    }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Map<String, String> INSTAGRAM_HEADERS = createInstagramHeaders();
+    private static final Pattern RECENT_MEDIA_PATH = Pattern.compile("locations/(\\d+)/media/recent/?");
+    private final RecordedResponses m_responses;
+    private final StubServer m_server;
+}
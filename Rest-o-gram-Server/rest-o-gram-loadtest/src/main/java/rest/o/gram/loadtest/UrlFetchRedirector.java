@@ -0,0 +1,90 @@
+package rest.o.gram.loadtest;
+
+import com.google.appengine.api.urlfetch.URLFetchServicePb.URLFetchRequest;
+import com.google.appengine.api.urlfetch.URLFetchServicePb.URLFetchServiceError;
+import com.google.apphosting.api.ApiProxy;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * An API proxy delegate which sends the url fetch calls to the stubs - the helpers and foursquare
+ * are reached through url fetch, so the production code runs unchanged. Other calls pass through.
+ */
+final class UrlFetchRedirector implements ApiProxy.Delegate<ApiProxy.Environment> {
+
+    /**
+     * Wraps the current delegate, must be called after the local services are set up
+     */
+    @SuppressWarnings("unchecked")
+    static void install(final UpstreamRouter router) {
+        ApiProxy.setDelegate(new UrlFetchRedirector((ApiProxy.Delegate<ApiProxy.Environment>)ApiProxy.getDelegate(),
+                                                    router));
+    }
+
+    @Override
+    public byte[] makeSyncCall(final ApiProxy.Environment environment, final String packageName,
+                               final String methodName, final byte[] request) throws ApiProxy.ApiProxyException {
+        return m_delegate.makeSyncCall(environment, packageName, methodName,
+                                       redirect(packageName, methodName, request));
+    }
+
+    @Override
+    public Future<byte[]> makeAsyncCall(final ApiProxy.Environment environment, final String packageName,
+                                        final String methodName, final byte[] request,
+                                        final ApiProxy.ApiConfig apiConfig) {
+        return m_delegate.makeAsyncCall(environment, packageName, methodName,
+                                        redirect(packageName, methodName, request), apiConfig);
+    }
+
+    @Override
+    public void log(final ApiProxy.Environment environment, final ApiProxy.LogRecord record) {
+        m_delegate.log(environment, record);
+    }
+
+    @Override
+    public void flushLogs(final ApiProxy.Environment environment) {
+        m_delegate.flushLogs(environment);
+    }
+
+    @Override
+    public List<Thread> getRequestThreads(final ApiProxy.Environment environment) {
+        return m_delegate.getRequestThreads(environment);
+    }
+
+    private UrlFetchRedirector(final ApiProxy.Delegate<ApiProxy.Environment> delegate, final UpstreamRouter router) {
+        m_delegate = delegate;
+        m_router = router;
+    }
+
+    /**
+     * @return the request with its URL pointing at the stubs
+     * @throws ApiProxy.ApplicationException thrown when the URL is not stubbed, as url fetch fails
+     */
+    private byte[] redirect(final String packageName, final String methodName, final byte[] request) {
+        if (!URL_FETCH_PACKAGE.equals(packageName) || !FETCH_METHOD.equals(methodName))
+            return request;
+
+        final URLFetchRequest fetchRequest;
+        try
+        {
+            fetchRequest = URLFetchRequest.parseFrom(request);
+        } catch (IOException e)
+        {
+            throw new ApiProxy.ApplicationException(URLFetchServiceError.ErrorCode.INVALID_URL_VALUE,
+                                                    "malformed fetch request");
+        }
+
+        final String url = m_router.rewrite(fetchRequest.getUrl());
+        if (url == null)
+            throw new ApiProxy.ApplicationException(URLFetchServiceError.ErrorCode.FETCH_ERROR_VALUE,
+                                                    "not stubbed, refused: " + fetchRequest.getUrl());
+        return fetchRequest.toBuilder().setUrl(url).build().toByteArray();
+    }
+
+    private static final String URL_FETCH_PACKAGE = "urlfetch";
+    private static final String FETCH_METHOD = "Fetch";
+    private final ApiProxy.Delegate<ApiProxy.Environment> m_delegate;
+    private final UpstreamRouter m_router;
+}
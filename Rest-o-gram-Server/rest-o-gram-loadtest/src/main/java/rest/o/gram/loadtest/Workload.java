@@ -0,0 +1,152 @@
+package rest.o.gram.loadtest;
+
+import com.leanengine.server.auth.AuthService;
+import rest.o.gram.entities.RestogramPhoto;
+import rest.o.gram.filters.RestogramFilterType;
+import rest.o.gram.results.PhotosResult;
+import rest.o.gram.results.VenuesResult;
+import rest.o.gram.service.RestogramAuthServiceImpl;
+import rest.o.gram.service.RestogramServiceImpl;
+import rest.o.gram.shared.CommonDefs;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The replayed client behavior - browsing around a city center, opening venues (popular venues more often),
+ * scrolling to their next photos and managing favorites. Next pages continue the tokens of earlier
+ * responses, as the clients do. Thread safe.
+ */
+final class Workload {
+
+    Workload(final List<String> venueIds, final List<String> accountTokens, final RestogramFilterType filterType) {
+        m_venueIds = venueIds;
+        m_accountTokens = accountTokens;
+        m_filterType = filterType;
+    }
+
+    /**
+     * Executes the given operation against the services, in the calling thread
+     * @return true if the operation has succeeded
+     */
+    boolean execute(final Operation operation) {
+        switch (operation)
+        {
+            case Nearby: return getNearby();
+            case Photos: return getPhotos();
+            case NextPhotos: return getNextPhotos();
+            case Favorites: return updateFavorites();
+            default: throw new IllegalArgumentException("unknown operation: " + operation);
+        }
+    }
+
+    private boolean getNearby() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final double latitude = CENTER_LATITUDE + (random.nextDouble() * 2 - 1) * AREA_SPAN;
+        final double longitude = CENTER_LONGITUDE + (random.nextDouble() * 2 - 1) * AREA_SPAN;
+        final VenuesResult result = m_service.getNearby(latitude, longitude, NEARBY_RADIUS);
+        return result != null && result.getResult() != null && result.getResult().length != 0;
+    }
+
+    private boolean getPhotos() {
+        final String venueId = pickVenue();
+        return onPhotos(venueId, m_service.getPhotos(venueId, m_filterType));
+    }
+
+    /**
+     * Falls back to a first page when no page is pending (at the beginning of the warm-up)
+     */
+    private boolean getNextPhotos() {
+        final PendingPage page = m_pendingPages.poll();
+        if (page == null)
+            return getPhotos();
+        return onPhotos(page.venueId, m_service.getNextPhotos(page.token, m_filterType, page.venueId));
+    }
+
+    /**
+     * Adds a recently seen photo to the favorites of an account, or lists the account's favorites
+     */
+    private boolean updateFavorites() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (!AuthService.startAuthSession(m_accountTokens.get(random.nextInt(m_accountTokens.size()))))
+            return false;
+
+        try
+        {
+            final SeenPhoto photo = m_seenPhotos.get(random.nextInt(m_seenPhotos.length()));
+            if (photo != null && random.nextBoolean())
+                return m_authService.addPhotoToFavorites(photo.photoId, photo.venueId);
+            return m_authService.getFavoritePhotos(null) != null;
+        } finally
+        {
+            AuthService.finishAuthSession();
+        }
+    }
+
+    private boolean onPhotos(final String venueId, final PhotosResult result) {
+        if (result == null)
+            return false;
+
+        final String token = result.getToken();
+        if (token != null && !token.equals(CommonDefs.Tokens.FINISHED_FETCHING_FROM_INSTAGRAM))
+            m_pendingPages.offer(new PendingPage(token, venueId)); // dropped when enough pages are pending
+
+        if (result.getPhotos() != null)
+        {
+            for (final RestogramPhoto currPhoto : result.getPhotos())
+            {
+                final int index = (m_seenPhotosCounter.getAndIncrement() & Integer.MAX_VALUE) % m_seenPhotos.length();
+                m_seenPhotos.set(index, new SeenPhoto(currPhoto.getInstagram_id(), venueId));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a venue id, skewed towards the first (popular) venues
+     */
+    private String pickVenue() {
+        final double random = ThreadLocalRandom.current().nextDouble();
+        return m_venueIds.get((int)(random * random * m_venueIds.size()));
+    }
+
+    private static final class PendingPage {
+        PendingPage(final String token, final String venueId) {
+            this.token = token;
+            this.venueId = venueId;
+        }
+
+        final String token;
+        final String venueId;
+    }
+
+    private static final class SeenPhoto {
+        SeenPhoto(final String photoId, final String venueId) {
+            this.photoId = photoId;
+            this.venueId = venueId;
+        }
+
+        final String photoId;
+        final String venueId;
+    }
+
+    // tel aviv, where the recorded venues are
+    private static final double CENTER_LATITUDE = 32.0646;
+    private static final double CENTER_LONGITUDE = 34.7726;
+    private static final double AREA_SPAN = 0.02; // degrees, about 2 km
+    private static final double NEARBY_RADIUS = 1000; // meters
+    private static final int MAX_PENDING_PAGES = 512;
+    private static final int SEEN_PHOTOS = 1024;
+    private final RestogramServiceImpl m_service = new RestogramServiceImpl();
+    private final RestogramAuthServiceImpl m_authService = new RestogramAuthServiceImpl();
+    private final List<String> m_venueIds;
+    private final List<String> m_accountTokens;
+    private final RestogramFilterType m_filterType;
+    private final BlockingQueue<PendingPage> m_pendingPages = new ArrayBlockingQueue<>(MAX_PENDING_PAGES);
+    private final AtomicReferenceArray<SeenPhoto> m_seenPhotos = new AtomicReferenceArray<>(SEEN_PHOTOS);
+    private final AtomicInteger m_seenPhotosCounter = new AtomicInteger();
+}
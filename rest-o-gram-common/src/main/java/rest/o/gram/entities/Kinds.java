@@ -9,5 +9,8 @@ public final class Kinds {
     public static final String VENUE = "venue";
     public static final String PHOTO = "photo";
     public static final String PHOTO_REFERENCE = "photo_ref";
+    public static final String VENUE_LOCATION = "venue_location";
+    public static final String YUMMIES_SHARD = "yummies_shard";
+    public static final String TAGS_DICTIONARY = "tags_dictionary";
     //public static final String PHOTO_META = "photo_meta";
 }
@@ -60,6 +60,20 @@ public final class Props {
         public final static String IS_FAVORITE = "is_fav";
     }
 
+    public static class VenueLocation {
+        public final static String LOCATION_ID = "location_id";
+        public final static String UPDATED = "updated";
+    }
+
+    public static class YummiesShard {
+        public final static String DELTA = "delta";
+        public final static String DIRTY = "dirty";
+    }
+
+    public static class TagsDictionary {
+        public final static String TAGS = "tags";
+    }
+
 //    public static  class PhotoMeta {
 //        public final static String INSTAGRAM_ID = "instagram_id";
 //        public final static String APPROVED = "approved";
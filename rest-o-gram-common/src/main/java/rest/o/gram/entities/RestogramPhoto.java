@@ -100,6 +100,10 @@ public class RestogramPhoto implements Serializable {
         this.caption = caption;
     }
 
+    public void setEncodedCaption(byte[] encodedCaption) {
+        this.encodedCaption = encodedCaption;
+    }
+
     public void setCreatedTime(String createdTime) {
         this.createdTime = createdTime;
     }
@@ -0,0 +1,181 @@
+﻿using System;
+using System.Collections.Generic;
+using System.IO;
+using System.IO.Compression;
+using System.Linq;
+using System.Text;
+
+namespace restogram.NET
+{
+    /// <summary>
+    /// Decodes filter tasks and encodes their results, as the server's TaskPayloadCodec does.
+    /// Binary payloads start with a version byte and a flags byte, followed by the (optionally deflated) body:
+    /// the venue id and a count, then photo-id/url pairs (tasks) or photo-id/approval pairs (results).
+    /// Strings are length-prefixed UTF-8, lengths and counts are varints.
+    /// Legacy text payloads (venue-id;id,value,id,value) are still read, and a result is written in its task's version.
+    /// </summary>
+    static class TaskPayloadCodec
+    {
+        public const byte LEGACY_VERSION = 0;
+        public const byte BINARY_VERSION = 1;
+
+        public class FilterTask
+        {
+            public byte Version { get; set; }
+            public string VenueId { get; set; }
+            public IDictionary<string, string> IdToUrlMapping { get; set; }
+        }
+
+        /// <returns>the decoded task or null if the payload is malformed</returns>
+        public static FilterTask DecodeFilterTask(byte[] payload)
+        {
+            if (payload == null || payload.Length == 0)
+                return null;
+
+            if (payload[0] != BINARY_VERSION)
+                return DecodeLegacyFilterTask(Encoding.UTF8.GetString(payload));
+
+            var body = Unwrap(payload);
+            if (body == null)
+                return null;
+
+            var position = 0;
+            var venueId = ReadString(body, ref position);
+            var count = ReadVarint(body, ref position);
+            if (venueId == null || count < 0)
+                return null;
+
+            var idToUrlMapping = new Dictionary<string, string>();
+            for (var i = 0; i < count; ++i)
+            {
+                var photoId = ReadString(body, ref position);
+                var url = ReadString(body, ref position);
+                if (photoId == null || url == null)
+                    return null;
+                idToUrlMapping[photoId] = url;
+            }
+            return new FilterTask { Version = BINARY_VERSION, VenueId = venueId, IdToUrlMapping = idToUrlMapping };
+        }
+
+        public static byte[] EncodeFilterResult(byte version, string venueId, IDictionary<string, bool> idToRuleMapping)
+        {
+            if (version == LEGACY_VERSION)
+            {
+                var pairs = idToRuleMapping.Select(idToRule => idToRule.Key + "," + idToRule.Value);
+                return Encoding.UTF8.GetBytes(venueId + ";" + String.Join(",", pairs));
+            }
+
+            using (var payload = new MemoryStream())
+            {
+                // results are small, so they are not deflated
+                payload.WriteByte(BINARY_VERSION);
+                payload.WriteByte(0);
+                WriteString(payload, venueId);
+                WriteVarint(payload, idToRuleMapping.Count);
+                foreach (var idToRule in idToRuleMapping)
+                {
+                    WriteString(payload, idToRule.Key);
+                    payload.WriteByte(idToRule.Value ? (byte)1 : (byte)0);
+                }
+                return payload.ToArray();
+            }
+        }
+
+        private static FilterTask DecodeLegacyFilterTask(string payload)
+        {
+            var sections = payload.Split(new char[] {';'}, StringSplitOptions.RemoveEmptyEntries);
+            if (sections.Length != 2)
+                return null;
+
+            var idUrlPairs = sections[1].Split(new char[] {','}, StringSplitOptions.RemoveEmptyEntries);
+            var idToUrlMapping = new Dictionary<string, string>();
+            for (var i = 0; i < idUrlPairs.Length - 1; i += 2)
+                idToUrlMapping[idUrlPairs[i]] = idUrlPairs[i + 1];
+            return new FilterTask { Version = LEGACY_VERSION, VenueId = sections[0], IdToUrlMapping = idToUrlMapping };
+        }
+
+        private static byte[] Unwrap(byte[] payload)
+        {
+            if (payload.Length < HEADER_LENGTH)
+                return null;
+
+            if ((payload[1] & FLAG_DEFLATED) == 0)
+                return payload.Skip(HEADER_LENGTH).ToArray();
+
+            // the server deflates with a zlib wrapper, DeflateStream reads the raw data after its header
+            if (payload.Length < HEADER_LENGTH + ZLIB_HEADER_LENGTH)
+                return null;
+            var offset = HEADER_LENGTH + ZLIB_HEADER_LENGTH;
+            try
+            {
+                using (var deflated = new MemoryStream(payload, offset, payload.Length - offset))
+                using (var inflater = new DeflateStream(deflated, CompressionMode.Decompress))
+                using (var body = new MemoryStream())
+                {
+                    var buffer = new byte[BUFFER_SIZE];
+                    int read;
+                    while ((read = inflater.Read(buffer, 0, buffer.Length)) > 0)
+                    {
+                        body.Write(buffer, 0, read);
+                        if (body.Length > MAX_INFLATED_SIZE)
+                            return null;
+                    }
+                    return body.ToArray();
+                }
+            }
+            catch (InvalidDataException)
+            {
+                return null;
+            }
+        }
+
+        private static void WriteString(Stream output, string value)
+        {
+            var bytes = Encoding.UTF8.GetBytes(value);
+            WriteVarint(output, bytes.Length);
+            output.Write(bytes, 0, bytes.Length);
+        }
+
+        private static void WriteVarint(Stream output, int value)
+        {
+            var remaining = (uint)value;
+            while ((remaining & ~0x7fu) != 0)
+            {
+                output.WriteByte((byte)((remaining & 0x7f) | 0x80));
+                remaining >>= 7;
+            }
+            output.WriteByte((byte)remaining);
+        }
+
+        /// <returns>the string or null if the data is malformed</returns>
+        private static string ReadString(byte[] data, ref int position)
+        {
+            var length = ReadVarint(data, ref position);
+            if (length < 0 || length > data.Length - position)
+                return null;
+            var value = Encoding.UTF8.GetString(data, position, length);
+            position += length;
+            return value;
+        }
+
+        /// <returns>the value or -1 if the data is malformed</returns>
+        private static int ReadVarint(byte[] data, ref int position)
+        {
+            var value = 0;
+            for (var shift = 0; shift < 32 && position < data.Length; shift += 7)
+            {
+                var curr = data[position++];
+                value |= (curr & 0x7f) << shift;
+                if ((curr & 0x80) == 0)
+                    return value;
+            }
+            return -1;
+        }
+
+        private const int HEADER_LENGTH = 2;
+        private const int ZLIB_HEADER_LENGTH = 2;
+        private const byte FLAG_DEFLATED = 1;
+        private const int BUFFER_SIZE = 4 * 1024;
+        private const int MAX_INFLATED_SIZE = 1024 * 1024; // bytes, a task's payload limit
+    }
+}
@@ -49,10 +49,10 @@ namespace restogram.NET
                 foreach (var task in tasks.Items)
                 {
                     Trace.WriteLine("handling a task");
-                    string decodedPayload = null;
+                    TaskPayloadCodec.FilterTask filterTask = null;
                     try
                     {
-                        decodedPayload = task.PayloadBase64.DecodeFrom64();
+                        filterTask = TaskPayloadCodec.DecodeFilterTask(Convert.FromBase64String(task.PayloadBase64));
                     }
                     catch (FormatException e)
                     {
@@ -60,16 +60,10 @@ namespace restogram.NET
                         Trace.TraceError(e.Message);
                         continue;
                     }
-                    var sections = decodedPayload.Split(new char[] {';'}, 
-                                                        StringSplitOptions.RemoveEmptyEntries);
-                    if (sections.Length != 2)
+                    if (filterTask == null)
                         continue;
-                    var venueId = sections[0];
-                    var photoTasks = sections[1];
-                    var idUrlPairs = photoTasks.Split(new char[] {','}, StringSplitOptions.RemoveEmptyEntries);
-                    var rulesResult = new StringBuilder(venueId + ";");
-                    var idToUrlMapping = Enumerable.Range(0, idUrlPairs.Length / 2)
-                                            .ToDictionary(x => idUrlPairs[2 * x], x => idUrlPairs[2 * x + 1]);
+                    var venueId = filterTask.VenueId;
+                    var idToUrlMapping = filterTask.IdToUrlMapping;
 
                     // parallel/sequential handling code
                     var idToRuleMapping = 
@@ -96,15 +90,8 @@ namespace restogram.NET
                                 }
                             });
 
-                    // construct payload string
-                    foreach (var idToRule in idToRuleMapping)
-                    {
-                        rulesResult.Append(idToRule.Key);
-                        rulesResult.Append(",");
-                        rulesResult.Append(idToRule.Value);
-                        rulesResult.Append(",");
-                    }
-                    rulesResult = rulesResult.Remove(rulesResult.Length - 1, 1);
+                    // construct payload, in the task's version
+                    var rulesResult = TaskPayloadCodec.EncodeFilterResult(filterTask.Version, venueId, idToRuleMapping);
 
                     Trace.WriteLine("task executed");
 
@@ -141,7 +128,7 @@ namespace restogram.NET
                     Trace.WriteLine("inserting result to queue");
                     var resultTask = new Task();
                     resultTask.QueueName = Defs.Resources.RESULTS_QUEUE_NAME;
-                    resultTask.PayloadBase64 = rulesResult.ToString().EncodeTo64();
+                    resultTask.PayloadBase64 = Convert.ToBase64String(rulesResult);
                     var insertResult = taskqueueService.Tasks.Insert(resultTask, Defs.Resources.PROJECT_NAME, 
                                                                         Defs.Resources.RESULTS_QUEUE_NAME);
 